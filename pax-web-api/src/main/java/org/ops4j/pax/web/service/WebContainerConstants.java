@@ -152,6 +152,14 @@ public interface WebContainerConstants {
 	String PROPERTY_IDLE_TIMEOUT = "org.ops4j.pax.web.server.idleTimeout";
 	String PROPERTY_CONNECTOR_IDLE_TIMEOUT = "org.ops4j.pax.web.server.connector.idleTimeout";
 	String PROPERTY_SHOW_STACKS = "org.ops4j.pax.web.server.showStacks";
+	String PROPERTY_ROUTE_CACHE_SIZE = "org.ops4j.pax.web.server.routeCacheSize";
+	String PROPERTY_RESOURCE_CACHE_MAX_ENTRIES = "org.ops4j.pax.web.server.resourceCache.maxEntries";
+	String PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE = "org.ops4j.pax.web.server.resourceCache.maxEntrySize";
+	String PROPERTY_RESOURCE_CACHE_MAX_SIZE = "org.ops4j.pax.web.server.resourceCache.maxSize";
+	String PROPERTY_RESOURCE_CACHE_DIRECT_BUFFERS = "org.ops4j.pax.web.server.resourceCache.directBuffers";
+	String PROPERTY_STRONG_ETAGS = "org.ops4j.pax.web.server.strongETags";
+	String PROPERTY_EXTRACTED_RESOURCE_CACHE = "org.ops4j.pax.web.server.extractedResourceCache";
+	String PROPERTY_EXTRACTED_RESOURCE_CACHE_MIN_SIZE = "org.ops4j.pax.web.server.extractedResourceCache.minSize";
 
 	/**
 	 * Servlet context attribute containing the bundle context of the bundle
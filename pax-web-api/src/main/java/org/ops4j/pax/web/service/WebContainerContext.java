@@ -64,6 +64,16 @@ public interface WebContainerContext extends HttpContext {
 	 */
 	String getContextId();
 
+	/**
+	 * Tells whether {@link #handleSecurity} always returns {@code true} without looking at the request or
+	 * response. Containers may then skip the call (and preparing request/response wrappers for it).
+	 *
+	 * @return {@code true} if this context doesn't secure its resources
+	 */
+	default boolean hasTrivialSecurity() {
+		return false;
+	}
+
 	default boolean isDefaultOrSharedContext() {
 		return DefaultContextIds.DEFAULT.getValue().equals(getContextId())
 				|| DefaultContextIds.SHARED.getValue().equals(getContextId());
@@ -0,0 +1,463 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+
+import org.apache.xbean.osgi.bundle.util.BundleResourceFinder;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.service.packageadmin.PackageAdmin;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Index of classes found on the Bundle-ClassPath of a bundle and its fragments (the same classes which are
+ * scanned by xbean's {@code BundleAnnotationFinder}). Class files are read only once and only the facts needed
+ * to find annotated classes ({@code @WebServlet}, {@code @HandlesTypes}, ...) and subtypes of given types are
+ * kept - class level annotations, super class and interfaces.</p>
+ *
+ * <p>The index is stored in the data area of pax-web-api bundle and reused until symbolic name, version or
+ * last modification time of the bundle (or its fragments) change, so restarts of the bundle (or the whole
+ * container) don't scan its classes again. Stored index is deleted when its bundle is uninstalled.</p>
+ */
+public final class BundleClassIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BundleClassIndex.class);
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String INDEX_DIRECTORY = "class-index";
+
+	private static final String[] NO_NAMES = new String[0];
+
+	// bundle ID -> recently used index
+	private static final Map<Long, SoftReference<BundleClassIndex>> INDEXES = new ConcurrentHashMap<>();
+
+	private final Bundle bundle;
+
+	private final String key;
+
+	// internal class name -> class information, in the order of scanning
+	private final Map<String, ClassInfo> classes;
+
+	private BundleClassIndex(Bundle bundle, String key, Map<String, ClassInfo> classes) {
+		this.bundle = bundle;
+		this.key = key;
+		this.classes = classes;
+	}
+
+	/**
+	 * Returns an index of classes of given bundle - recently used one, the one stored in the data area of
+	 * pax-web-api bundle or (if neither is valid for current revision of the bundle) new one.
+	 *
+	 * @param packageAdmin used to find fragments of the bundle, may be {@code null}
+	 * @param bundle       bundle, which classes should be indexed
+	 * @return index of classes
+	 * @throws IOException if the classes can't be scanned
+	 */
+	public static BundleClassIndex getIndex(PackageAdmin packageAdmin, Bundle bundle) throws IOException {
+		return getIndex(packageAdmin, bundle, getIndexDirectory());
+	}
+
+	static BundleClassIndex getIndex(PackageAdmin packageAdmin, Bundle bundle, File directory) throws IOException {
+		String key = getKey(packageAdmin, bundle);
+
+		SoftReference<BundleClassIndex> ref = INDEXES.get(bundle.getBundleId());
+		BundleClassIndex index = ref == null ? null : ref.get();
+		if (index != null && index.key.equals(key)) {
+			return index;
+		}
+
+		File file = directory == null ? null : getIndexFile(directory, bundle.getBundleId());
+		index = file == null ? null : read(bundle, key, file);
+		if (index == null) {
+			long start = System.currentTimeMillis();
+			index = new BundleClassIndex(bundle, key, scan(packageAdmin, bundle));
+			LOG.debug("Indexed {} classes of {} in {}ms", index.classes.size(), bundle,
+					System.currentTimeMillis() - start);
+			if (file != null) {
+				index.write(file);
+			}
+		}
+		INDEXES.put(bundle.getBundleId(), new SoftReference<>(index));
+		return index;
+	}
+
+	/**
+	 * Finds classes annotated (directly, on class level) with given annotation. The classes are loaded using
+	 * the bundle - those, which can't be loaded or which have different annotation of the same name, are skipped.
+	 *
+	 * @param annotation annotation type
+	 * @return annotated classes
+	 */
+	public List<Class<?>> findAnnotatedClasses(Class<? extends Annotation> annotation) {
+		String name = Type.getInternalName(annotation);
+		List<Class<?>> annotated = new ArrayList<>();
+		for (ClassInfo info : classes.values()) {
+			for (String a : info.annotations) {
+				if (a.equals(name)) {
+					Class<?> c = loadClass(info.name);
+					if (c != null && c.isAnnotationPresent(annotation)) {
+						annotated.add(c);
+					}
+					break;
+				}
+			}
+		}
+		return annotated;
+	}
+
+	/**
+	 * Finds classes (and interfaces), which are assignable to given type, including the type itself, if it's
+	 * part of the bundle. Hierarchy of indexed classes is taken from the index, other super types are loaded
+	 * using the bundle.
+	 *
+	 * @param type class or interface
+	 * @return assignable classes
+	 */
+	public Set<Class<?>> findAssignableClasses(Class<?> type) {
+		String name = Type.getInternalName(type);
+		Map<String, Boolean> assignable = new HashMap<>();
+		Set<Class<?>> found = new LinkedHashSet<>();
+		for (ClassInfo info : classes.values()) {
+			if (isAssignable(info.name, type, name, assignable)) {
+				Class<?> c = loadClass(info.name);
+				if (c != null) {
+					found.add(c);
+				}
+			}
+		}
+		return found;
+	}
+
+	private boolean isAssignable(String className, Class<?> type, String typeName, Map<String, Boolean> assignable) {
+		if (className == null || "java/lang/Object".equals(className)) {
+			return false;
+		}
+		if (className.equals(typeName)) {
+			return true;
+		}
+		Boolean result = assignable.get(className);
+		if (result != null) {
+			return result;
+		}
+		// prevents endless recursion in case of (invalid) cyclic hierarchy
+		assignable.put(className, Boolean.FALSE);
+
+		ClassInfo info = classes.get(className);
+		boolean isAssignable = false;
+		if (info != null) {
+			for (String i : info.interfaces) {
+				if (isAssignable(i, type, typeName, assignable)) {
+					isAssignable = true;
+					break;
+				}
+			}
+			if (!isAssignable) {
+				isAssignable = isAssignable(info.superName, type, typeName, assignable);
+			}
+		} else {
+			// class imported or loaded from parent class loader
+			Class<?> c = loadClass(className);
+			isAssignable = c != null && type.isAssignableFrom(c);
+		}
+		assignable.put(className, isAssignable);
+		return isAssignable;
+	}
+
+	private Class<?> loadClass(String internalName) {
+		String className = internalName.replace('/', '.');
+		try {
+			return bundle.loadClass(className);
+		} catch (ClassNotFoundException | LinkageError e) {
+			LOG.debug("Can't load class {} from {}: {}", className, bundle, e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Index is valid only for the same bundle revision with the same fragments attached.
+	 */
+	private static String getKey(PackageAdmin packageAdmin, Bundle bundle) {
+		StringBuilder key = new StringBuilder();
+		key.append(bundle.getSymbolicName()).append(';').append(bundle.getVersion())
+				.append(';').append(bundle.getLastModified());
+		Bundle[] fragments = packageAdmin == null ? null : packageAdmin.getFragments(bundle);
+		if (fragments != null) {
+			for (Bundle fragment : fragments) {
+				key.append(';').append(fragment.getBundleId()).append(':').append(fragment.getLastModified());
+			}
+		}
+		return key.toString();
+	}
+
+	private static File getIndexDirectory() {
+		Bundle bundle = FrameworkUtil.getBundle(BundleClassIndex.class);
+		BundleContext bundleContext = bundle == null ? null : bundle.getBundleContext();
+		if (bundleContext == null) {
+			return null;
+		}
+		try {
+			File directory = bundleContext.getDataFile(INDEX_DIRECTORY);
+			if (directory != null) {
+				UninstallListener.listen(bundleContext, directory);
+			}
+			return directory;
+		} catch (IllegalStateException e) {
+			return null;
+		}
+	}
+
+	private static File getIndexFile(File directory, long bundleId) {
+		return new File(directory, bundleId + ".idx");
+	}
+
+	private static Map<String, ClassInfo> scan(PackageAdmin packageAdmin, final Bundle bundle) throws IOException {
+		final Map<String, ClassInfo> classes = new LinkedHashMap<>();
+		BundleResourceFinder finder = new BundleResourceFinder(packageAdmin, bundle, "", ".class");
+		try {
+			finder.find(new BundleResourceFinder.ResourceFinderCallback() {
+				@Override
+				public boolean foundInDirectory(Bundle b, String basePath, URL url) throws Exception {
+					try (InputStream in = url.openStream()) {
+						index(in, url.toString());
+					}
+					return true;
+				}
+
+				@Override
+				public boolean foundInJar(Bundle b, String jarName, ZipEntry entry, InputStream in) throws Exception {
+					index(in, jarName + "!/" + entry.getName());
+					return true;
+				}
+
+				private void index(InputStream in, String location) {
+					try {
+						ClassInfo info = ClassInfo.read(new ClassReader(in));
+						if (!classes.containsKey(info.name)) {
+							classes.put(info.name, info);
+						}
+					} catch (IOException | RuntimeException e) {
+						LOG.debug("Can't read class {} from {}: {}", location, bundle, e.getMessage());
+					}
+				}
+			});
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Can't scan classes of " + bundle, e);
+		}
+		return classes;
+	}
+
+	private static BundleClassIndex read(Bundle bundle, String key, File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+			if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+				LOG.debug("Class index {} of {} is outdated", file, bundle);
+				return null;
+			}
+			int count = in.readInt();
+			Map<String, ClassInfo> classes = new LinkedHashMap<>();
+			for (int i = 0; i < count; i++) {
+				ClassInfo info = ClassInfo.read(in);
+				classes.put(info.name, info);
+			}
+			LOG.debug("Read class index of {} from {}", bundle, file);
+			return new BundleClassIndex(bundle, key, classes);
+		} catch (IOException e) {
+			LOG.warn("Can't read class index {} of {}: {}", file, bundle, e.getMessage());
+			return null;
+		}
+	}
+
+	private void write(File file) {
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			LOG.warn("Can't create directory {} for class indexes", dir);
+			return;
+		}
+		Path tmp = null;
+		try {
+			// unique name - the same bundle may be indexed concurrently
+			tmp = Files.createTempFile(dir.toPath(), file.getName(), ".tmp");
+			try (OutputStream os = Files.newOutputStream(tmp);
+				 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(key);
+				out.writeInt(classes.size());
+				for (ClassInfo info : classes.values()) {
+					info.write(out);
+				}
+			}
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			LOG.warn("Can't write class index {} of {}: {}", file, bundle, e.getMessage());
+			if (tmp != null && tmp.toFile().isFile() && !tmp.toFile().delete()) {
+				tmp.toFile().deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * Forgets recently used indexes (the stored ones are kept).
+	 */
+	static void clear() {
+		INDEXES.clear();
+	}
+
+	/**
+	 * Deletes stored indexes of uninstalled bundles. It's registered using context of pax-web-api bundle when
+	 * its data area is used for the first time (again after each restart of pax-web-api).
+	 */
+	static final class UninstallListener implements SynchronousBundleListener {
+
+		// guarded by UninstallListener.class
+		private static BundleContext registeredWith;
+
+		private final File directory;
+
+		UninstallListener(File directory) {
+			this.directory = directory;
+		}
+
+		static synchronized void listen(BundleContext bundleContext, File directory) {
+			if (registeredWith == bundleContext) {
+				return;
+			}
+			try {
+				bundleContext.addBundleListener(new UninstallListener(directory));
+				registeredWith = bundleContext;
+			} catch (SecurityException e) {
+				LOG.debug("Can't listen for bundle events, class indexes won't be deleted: {}", e.getMessage());
+				registeredWith = bundleContext;
+			}
+		}
+
+		@Override
+		public void bundleChanged(BundleEvent event) {
+			if (event.getType() != BundleEvent.UNINSTALLED) {
+				return;
+			}
+			long bundleId = event.getBundle().getBundleId();
+			INDEXES.remove(bundleId);
+			File file = getIndexFile(directory, bundleId);
+			if (file.isFile() && !file.delete()) {
+				LOG.debug("Can't delete class index {} of uninstalled bundle {}", file, event.getBundle());
+			}
+		}
+	}
+
+	/**
+	 * Information about single class. All names are internal names (i.e. with slashes).
+	 */
+	private static final class ClassInfo {
+
+		private final String name;
+		private final String superName;
+		private final String[] interfaces;
+		// runtime visible class level annotations
+		private final String[] annotations;
+
+		private ClassInfo(String name, String superName, String[] interfaces, String[] annotations) {
+			this.name = name;
+			this.superName = superName;
+			this.interfaces = interfaces;
+			this.annotations = annotations;
+		}
+
+		static ClassInfo read(ClassReader reader) {
+			final List<String> annotations = new ArrayList<>();
+			reader.accept(new ClassVisitor(Opcodes.ASM9) {
+				@Override
+				public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+					if (visible) {
+						annotations.add(Type.getType(descriptor).getInternalName());
+					}
+					return null;
+				}
+			}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			return new ClassInfo(reader.getClassName(), reader.getSuperName(), reader.getInterfaces(),
+					annotations.isEmpty() ? NO_NAMES : annotations.toArray(new String[0]));
+		}
+
+		static ClassInfo read(DataInputStream in) throws IOException {
+			String name = in.readUTF();
+			String superName = in.readUTF();
+			return new ClassInfo(name, superName.isEmpty() ? null : superName, readNames(in), readNames(in));
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeUTF(name);
+			out.writeUTF(superName == null ? "" : superName);
+			writeNames(out, interfaces);
+			writeNames(out, annotations);
+		}
+
+		private static String[] readNames(DataInputStream in) throws IOException {
+			int count = in.readUnsignedShort();
+			if (count == 0) {
+				return NO_NAMES;
+			}
+			String[] names = new String[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = in.readUTF();
+			}
+			return names;
+		}
+
+		private static void writeNames(DataOutputStream out, String[] names) throws IOException {
+			out.writeShort(names.length);
+			for (String name : names) {
+				out.writeUTF(name);
+			}
+		}
+	}
+
+}
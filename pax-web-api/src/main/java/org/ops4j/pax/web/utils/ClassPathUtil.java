@@ -19,15 +19,27 @@ package org.ops4j.pax.web.utils;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.FrameworkListener;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.SynchronousBundleListener;
 import org.osgi.framework.wiring.BundleWire;
 import org.osgi.framework.wiring.BundleWiring;
 import org.slf4j.Logger;
@@ -44,6 +56,16 @@ public class ClassPathUtil {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(ClassPathUtil.class);
 
+	/**
+	 * Class spaces of bundles by bundle ID.
+	 */
+	private static final Map<Long, ClassSpace> CLASS_SPACES = new ConcurrentHashMap<>();
+
+	/**
+	 * Maximal number of distinct resource lookups cached for single class space.
+	 */
+	static final int MAX_CACHED_LOOKUPS = 64;
+
 	private ClassPathUtil() {
 		// munch
 	}
@@ -136,79 +158,289 @@ public class ClassPathUtil {
 
 	private static Set<Bundle> getBundlesInClassSpace(BundleContext context,
 													  Bundle bundle, Set<Bundle> bundleSet) {
-		Set<Bundle> bundles = new HashSet<>(); // The set containing the
-		// bundles either being
-		// imported or required
 		if (bundle == null) {
 			LOG.error("Incoming bundle is null");
-			return bundles;
+			return new HashSet<>();
 		}
 		if (context == null) {
 			LOG.error("Incoming context is null");
-			return bundles;
+			return new HashSet<>();
+		}
+
+		ClassSpace classSpace = getClassSpace(bundle);
+		if (classSpace == null) {
+			return new HashSet<>();
+		}
+		bundleSet.addAll(classSpace.getTransitiveBundles());
+
+		// Sanity checkpoint to remove uninstalled bundles
+		Iterator<Bundle> bundleIterator = bundleSet.iterator();
+		while (bundleIterator.hasNext()) {
+			Bundle auxBundle = bundleIterator.next();
+			if (auxBundle.getState() == Bundle.UNINSTALLED) {
+				bundleIterator.remove();
+			}
+		}
+
+		return bundleSet;
+	}
+
+	public static List<URL> findResources(Iterable<Bundle> bundles,
+										  String path,
+										  String pattern, boolean recurse) {
+		List<URL> resources = new ArrayList<>();
+		for (Bundle bundle : bundles) {
+			ClassSpace classSpace = getClassSpace(bundle);
+			if (classSpace != null) {
+				resources.addAll(classSpace.findResources(path, pattern, recurse));
+			}
 		}
+		return resources;
+	}
 
+	/**
+	 * Returns (possibly cached) class space of a bundle. Cached class space is used only if it was computed
+	 * for current {@link BundleWiring} of the bundle (i.e. its current revision) and no bundle was
+	 * (un)resolved, updated or refreshed since then.
+	 *
+	 * @param bundle the bundle for which to get the class space
+	 * @return class space or {@code null} if the bundle isn't resolved
+	 */
+	private static ClassSpace getClassSpace(Bundle bundle) {
 		BundleWiring bundleWiring = bundle.adapt(BundleWiring.class);
 		if (bundleWiring == null) {
 			LOG.error("BundleWiring is null for: " + bundle);
-			return bundles;
+			return null;
+		}
+		int generation = WiringListener.listen();
+		ClassSpace classSpace = CLASS_SPACES.get(bundle.getBundleId());
+		if (classSpace != null && classSpace.isValid(bundleWiring, generation)) {
+			return classSpace;
 		}
 
 		// This will give us all required Wires (including require-bundle)
-		List<BundleWire> requiredWires = bundleWiring.getRequiredWires(null);
-		for (BundleWire bundleWire : requiredWires) {
+		Set<Bundle> bundles = new LinkedHashSet<>();
+		for (BundleWire bundleWire : bundleWiring.getRequiredWires(null)) {
 			Bundle exportingBundle = bundleWire.getCapability().getRevision()
 					.getBundle();
+			if (exportingBundle.getBundleId() != 0) {
+				// system bundle is skipped this one isn't needed
+				bundles.add(exportingBundle);
+			}
+		}
+		classSpace = new ClassSpace(bundle, bundleWiring, bundles, generation);
+		CLASS_SPACES.put(bundle.getBundleId(), classSpace);
+		return classSpace;
+	}
+
+	/**
+	 * Forgets all cached class spaces.
+	 */
+	static void clear() {
+		CLASS_SPACES.clear();
+	}
+
+	/**
+	 * Bundles wired to single revision of a bundle, together with lazily computed transitive closure of these
+	 * bundles and entries found in the bundle.
+	 */
+	private static class ClassSpace {
+
+		private final Bundle bundle;
+		private final BundleWiring bundleWiring;
+		private final Set<Bundle> wiredBundles;
+		private final int generation;
+
+		private volatile Set<Bundle> transitiveBundles;
+		// "path:pattern:recurse" -> resources
+		private final Map<String, List<URL>> resources = new ConcurrentHashMap<>();
+
+		ClassSpace(Bundle bundle, BundleWiring bundleWiring, Set<Bundle> wiredBundles, int generation) {
+			this.bundle = bundle;
+			this.bundleWiring = bundleWiring;
+			this.wiredBundles = wiredBundles;
+			this.generation = generation;
+		}
+
+		boolean isValid(BundleWiring currentWiring, int currentGeneration) {
+			return bundleWiring == currentWiring && generation == currentGeneration;
+		}
 
-			if (exportingBundle.getBundleId() == 0) {
-				continue; // system bundle is skipped this one isn't needed
+		/**
+		 * Only the wires of this bundle are tied to its revision - transitive closure is cached only if
+		 * we're notified about changes of other bundles.
+		 */
+		private boolean isCacheable() {
+			return WiringListener.isListening() && WiringListener.generation() == generation;
+		}
+
+		Set<Bundle> getTransitiveBundles() {
+			Set<Bundle> bundles = transitiveBundles;
+			if (bundles != null) {
+				return bundles;
 			}
-			if (!bundles.contains(exportingBundle)) {
-				bundles.add(exportingBundle);
+			bundles = new LinkedHashSet<>();
+			Deque<Bundle> toVisit = new ArrayDeque<>(wiredBundles);
+			while (!toVisit.isEmpty()) {
+				Bundle wiredBundle = toVisit.poll();
+				if (bundles.add(wiredBundle)) {
+					ClassSpace classSpace = getClassSpace(wiredBundle);
+					if (classSpace != null) {
+						toVisit.addAll(classSpace.wiredBundles);
+					}
+				}
+			}
+			bundles = Collections.unmodifiableSet(bundles);
+			if (isCacheable()) {
+				transitiveBundles = bundles;
+			}
+			return bundles;
+		}
+
+		List<URL> findResources(String path, String pattern, boolean recurse) {
+			String key = path + ":" + pattern + ":" + recurse;
+			List<URL> urls = resources.get(key);
+			if (urls != null) {
+				return urls;
 			}
+			Collection<String> names = bundleWiring.listResources(
+					path,
+					pattern,
+					BundleWiring.LISTRESOURCES_LOCAL
+							| (recurse ? BundleWiring.LISTRESOURCES_RECURSE
+							: 0));
+			urls = new ArrayList<>(names.size());
+			for (String name : names) {
+				urls.add(bundle.getResource(name));
+			}
+			urls = Collections.unmodifiableList(urls);
+			// lookups with arbitrary patterns shouldn't fill the memory
+			if (WiringListener.generation() == generation && resources.size() < MAX_CACHED_LOOKUPS) {
+				resources.put(key, urls);
+			}
+			return urls;
 		}
+	}
 
-		Set<Bundle> transitiveBundles = new HashSet<>();
+	/**
+	 * Invalidates all cached class spaces when any bundle is (un)resolved, updated or uninstalled and when
+	 * packages are refreshed. It's registered using context of the bundle containing this class - until it's
+	 * registered, only wires of single bundle revisions are cached.
+	 */
+	static class WiringListener implements SynchronousBundleListener, FrameworkListener {
+
+		private static final AtomicInteger GENERATION = new AtomicInteger();
+
+		private static volatile WiringListener instance;
+
+		/**
+		 * Set when the listener can't be registered at all - outside of OSGi framework or without permission.
+		 */
+		private static volatile boolean unavailable;
+
+		/**
+		 * The bundle containing this class, looked up once. Guarded by {@code WiringListener.class}.
+		 */
+		private static Bundle ownBundle;
+
+		private final BundleContext bundleContext;
+
+		WiringListener(BundleContext bundleContext) {
+			this.bundleContext = bundleContext;
+		}
+
+		static boolean isListening() {
+			return instance != null;
+		}
+
+		static int generation() {
+			return GENERATION.get();
+		}
 
-		if (!bundleSet.containsAll(bundles)) { // now let's scan transitively
-			bundles.removeAll(bundleSet);
-			bundleSet.addAll(bundles);
-			for (Bundle importedBundle : bundles) {
-				transitiveBundles.addAll(getBundlesInClassSpace(context,
-						importedBundle, bundleSet));
+		/**
+		 * Registers the listener if it's not registered yet.
+		 *
+		 * @return current generation of cached class spaces
+		 */
+		static int listen() {
+			if (instance == null && !unavailable) {
+				synchronized (WiringListener.class) {
+					if (instance == null && !unavailable) {
+						register();
+					}
+				}
 			}
+			return GENERATION.get();
 		}
 
-		// Sanity checkpoint to remove uninstalled bundles
-		Iterator<Bundle> bundleIterator = bundleSet.iterator();
-		while (bundleIterator.hasNext()) {
-			Bundle auxBundle = bundleIterator.next();
-			if (auxBundle.getState() == Bundle.UNINSTALLED) {
-				bundleIterator.remove();
+		private static void register() {
+			if (ownBundle == null) {
+				ownBundle = FrameworkUtil.getBundle(ClassPathUtil.class);
+				if (ownBundle == null) {
+					// not running in OSGi framework - there's nothing to listen to
+					unavailable = true;
+					return;
+				}
 			}
+			// the bundle may not be started yet - we'll try again with the next lookup
+			BundleContext bundleContext = ownBundle.getBundleContext();
+			if (bundleContext == null) {
+				return;
+			}
+			WiringListener listener = new WiringListener(bundleContext);
+			try {
+				bundleContext.addBundleListener(listener);
+				bundleContext.addFrameworkListener(listener);
+			} catch (SecurityException e) {
+				LOG.debug("Can't listen for bundle events, class spaces won't be cached: {}", e.getMessage());
+				unavailable = true;
+				return;
+			} catch (IllegalStateException e) {
+				LOG.debug("Can't listen for bundle events, class spaces won't be cached: {}", e.getMessage());
+				return;
+			}
+			// class spaces computed so far might have been changed before we started listening
+			GENERATION.incrementAndGet();
+			CLASS_SPACES.clear();
+			instance = listener;
 		}
 
-		return bundleSet;
-	}
+		private void invalidate() {
+			GENERATION.incrementAndGet();
+			CLASS_SPACES.clear();
+		}
 
-	public static List<URL> findResources(Iterable<Bundle> bundles,
-										  String path,
-										  String pattern, boolean recurse) {
-		List<URL> resources = new ArrayList<>();
-		for (Bundle bundle : bundles) {
-			Collection<String> names = bundle
-					.adapt(BundleWiring.class)
-					.listResources(
-							path,
-							pattern,
-							BundleWiring.LISTRESOURCES_LOCAL
-									| (recurse ? BundleWiring.LISTRESOURCES_RECURSE
-									: 0));
-			for (String name : names) {
-				resources.add(bundle.getResource(name));
+		@Override
+		public void bundleChanged(BundleEvent event) {
+			switch (event.getType()) {
+				case BundleEvent.RESOLVED:
+				case BundleEvent.UNRESOLVED:
+				case BundleEvent.UPDATED:
+				case BundleEvent.UNINSTALLED:
+					invalidate();
+					break;
+				case BundleEvent.STOPPING:
+					if (event.getBundle() == bundleContext.getBundle()) {
+						// our listeners are going to be removed - stop caching until we're started again
+						synchronized (WiringListener.class) {
+							if (instance == this) {
+								instance = null;
+							}
+						}
+						invalidate();
+					}
+					break;
+				default:
+					break;
+			}
+		}
+
+		@Override
+		public void frameworkEvent(FrameworkEvent event) {
+			if (event.getType() == FrameworkEvent.PACKAGES_REFRESHED) {
+				invalidate();
 			}
 		}
-		return resources;
 	}
 
 }
@@ -24,15 +24,12 @@ import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.ServletContainerInitializer;
 import javax.servlet.annotation.HandlesTypes;
 
-import org.apache.xbean.finder.BundleAnnotationFinder;
-import org.apache.xbean.finder.BundleAssignableClassFinder;
 import org.osgi.framework.Bundle;
 import org.osgi.service.packageadmin.PackageAdmin;
 import org.slf4j.Logger;
@@ -62,6 +59,7 @@ public class ServletContainerInitializerScanner {
 			ClassPathUtil.getBundlesInClassSpace(serverBundle, bundlesInClassSpace);
 		}
 
+		BundleClassIndex classIndex = null;
 		for (URL u : ClassPathUtil.findResources(bundlesInClassSpace, "/META-INF/services",
 				"javax.servlet.ServletContainerInitializer", true)) {
 			try {
@@ -98,35 +96,16 @@ public class ServletContainerInitializerScanner {
 				if (handlesTypes != null) {
 					Class<?>[] classes = handlesTypes.value();
 
+					if (classIndex == null) {
+						// all the handled types are found using single index of bundle's classes
+						classIndex = BundleClassIndex.getIndex(packageAdminService, bundle);
+					}
 					for (Class<?> klass : classes) {
-						boolean isAnnotation = klass.isAnnotation();
-						boolean isInteraface = klass.isInterface();
-
-						if (isAnnotation) {
-							try {
-								BundleAnnotationFinder baf = new BundleAnnotationFinder(
-										packageAdminService, bundle);
-								List<Class<?>> annotatedClasses = baf
-										.findAnnotatedClasses((Class<? extends Annotation>) klass);
-								setOfClasses.addAll(annotatedClasses);
-							} catch (Exception e) {
-								log.warn("Failed to find annotated classes for ServletContainerInitializer");
-							}
-						} else if (isInteraface) {
-							BundleAssignableClassFinder basf = new BundleAssignableClassFinder(
-									packageAdminService, new Class[]{klass}, bundle);
-							Set<String> interfaces = basf.find();
-							for (String interfaceName : interfaces) {
-								setOfClasses.add(bundle.loadClass(interfaceName));
-							}
+						if (klass.isAnnotation()) {
+							setOfClasses.addAll(classIndex.findAnnotatedClasses((Class<? extends Annotation>) klass));
 						} else {
-							// class
-							BundleAssignableClassFinder basf = new BundleAssignableClassFinder(
-									packageAdminService, new Class[]{klass}, bundle);
-							Set<String> classNames = basf.find();
-							for (String klassName : classNames) {
-								setOfClasses.add(bundle.loadClass(klassName));
-							}
+							// interface or class
+							setOfClasses.addAll(classIndex.findAssignableClasses(klass));
 						}
 					}
 				}
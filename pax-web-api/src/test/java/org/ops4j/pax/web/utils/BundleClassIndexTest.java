@@ -0,0 +1,178 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.EventListener;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Version;
+
+public class BundleClassIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void cleanUp() {
+		BundleClassIndex.clear();
+	}
+
+	@Test
+	public void annotatedAndAssignableClasses() throws Exception {
+		Bundle bundle = bundle(1L, 42L, 1);
+		replay(bundle);
+
+		BundleClassIndex index = BundleClassIndex.getIndex(null, bundle, null);
+		assertEquals(Collections.<Class<?>>singletonList(AnnotatedServlet.class), index.findAnnotatedClasses(WebServlet.class));
+		assertTrue(index.findAnnotatedClasses(WebFilter.class).isEmpty());
+		assertEquals(new HashSet<>(Arrays.asList(Marker.class, SubMarker.class, MarkerImpl.class)),
+				index.findAssignableClasses(Marker.class));
+		assertEquals(Collections.<Class<?>>singleton(MarkerImpl.class), index.findAssignableClasses(EventListener.class));
+		assertEquals(Collections.<Class<?>>singleton(AnnotatedServlet.class), index.findAssignableClasses(HttpServlet.class));
+
+		verify(bundle);
+	}
+
+	@Test
+	public void storedIndexIsUsedForSameRevision() throws Exception {
+		File directory = folder.newFolder();
+		Bundle bundle = bundle(2L, 42L, 1);
+		replay(bundle);
+		BundleClassIndex index = BundleClassIndex.getIndex(null, bundle, directory);
+		assertTrue(new File(directory, "2.idx").isFile());
+		verify(bundle);
+
+		// e.g. after restart - no scanning
+		BundleClassIndex.clear();
+		Bundle restarted = bundle(2L, 42L, 0);
+		replay(restarted);
+		BundleClassIndex stored = BundleClassIndex.getIndex(null, restarted, directory);
+		assertNotSame(index, stored);
+		assertEquals(index.findAssignableClasses(Marker.class), stored.findAssignableClasses(Marker.class));
+		assertEquals(index.findAnnotatedClasses(WebServlet.class), stored.findAnnotatedClasses(WebServlet.class));
+		verify(restarted);
+
+		// updated bundle has to be scanned again
+		BundleClassIndex.clear();
+		Bundle updated = bundle(2L, 43L, 1);
+		replay(updated);
+		BundleClassIndex.getIndex(null, updated, directory);
+		verify(updated);
+	}
+
+	@Test
+	public void storedIndexIsDeletedWhenBundleIsUninstalled() throws Exception {
+		File directory = folder.newFolder();
+		Bundle bundle = bundle(3L, 42L, 1);
+		replay(bundle);
+		BundleClassIndex.getIndex(null, bundle, directory);
+		// temporary file was moved to its final name
+		assertArrayEquals(new String[] { "3.idx" }, directory.list());
+
+		BundleClassIndex.UninstallListener listener = new BundleClassIndex.UninstallListener(directory);
+		listener.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+		assertTrue(new File(directory, "3.idx").isFile());
+		listener.bundleChanged(new BundleEvent(BundleEvent.UNINSTALLED, bundle));
+		assertFalse(new File(directory, "3.idx").exists());
+		verify(bundle);
+	}
+
+	/**
+	 * Mocks a bundle, which contains the nested classes of this test.
+	 *
+	 * @param scans number of expected scans of the bundle - if {@code 0}, scanning fails
+	 */
+	private Bundle bundle(long id, long lastModified, int scans) throws Exception {
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.getSymbolicName()).andReturn("test.bundle").anyTimes();
+		expect(bundle.getVersion()).andReturn(new Version(1, 0, 0)).anyTimes();
+		expect(bundle.getLastModified()).andReturn(lastModified).anyTimes();
+		if (scans > 0) {
+			expect(bundle.getHeaders()).andReturn(new Hashtable<>()).times(scans);
+			expect(bundle.findEntries((String) anyObject(), (String) anyObject(), anyBoolean()))
+					.andAnswer(new IAnswer<Enumeration<URL>>() {
+						@Override
+						public Enumeration<URL> answer() {
+							return Collections.enumeration(classes());
+						}
+					}).times(scans);
+		}
+		bundle.loadClass((String) anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override
+			public Object answer() throws Throwable {
+				return Class.forName((String) getCurrentArguments()[0]);
+			}
+		}).anyTimes();
+		return bundle;
+	}
+
+	private List<URL> classes() {
+		return Arrays.asList(classFile(AnnotatedServlet.class), classFile(Marker.class),
+				classFile(SubMarker.class), classFile(MarkerImpl.class));
+	}
+
+	private URL classFile(Class<?> c) {
+		return c.getResource(c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class");
+	}
+
+	@WebServlet("/test")
+	public static class AnnotatedServlet extends HttpServlet {
+	}
+
+	public interface Marker {
+	}
+
+	public interface SubMarker extends Marker {
+	}
+
+	public static class MarkerImpl implements SubMarker, EventListener {
+	}
+
+}
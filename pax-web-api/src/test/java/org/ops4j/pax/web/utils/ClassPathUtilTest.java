@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.utils;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.FrameworkEvent;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class ClassPathUtilTest {
+
+	private static final int OPTIONS = BundleWiring.LISTRESOURCES_LOCAL | BundleWiring.LISTRESOURCES_RECURSE;
+
+	@After
+	public void cleanUp() {
+		ClassPathUtil.clear();
+	}
+
+	@Test
+	public void resourcesAreCachedForSameWiring() throws Exception {
+		BundleWiring wiring = wiring(1);
+		Bundle bundle = bundle(1L);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		replay(wiring, bundle);
+
+		List<URL> found = findTlds(bundle);
+		assertEquals(Collections.singletonList(new URL("file:/META-INF/test.tld")), found);
+		assertEquals(found, findTlds(bundle));
+
+		verify(wiring, bundle);
+	}
+
+	@Test
+	public void resourcesOfNewWiringAreNotCached() throws Exception {
+		BundleWiring wiring = wiring(1);
+		BundleWiring updated = wiring(1);
+		Bundle bundle = bundle(2L);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(updated).anyTimes();
+		replay(wiring, updated, bundle);
+
+		findTlds(bundle);
+		findTlds(bundle);
+
+		verify(wiring, updated, bundle);
+	}
+
+	@Test
+	public void wiringChangesInvalidateCache() throws Exception {
+		BundleWiring wiring = wiring(4);
+		Bundle bundle = bundle(3L);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		replay(wiring, bundle);
+		ClassPathUtil.WiringListener listener = new ClassPathUtil.WiringListener(createNiceMock(BundleContext.class));
+
+		findTlds(bundle);
+		listener.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+		findTlds(bundle);
+		listener.bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle));
+		findTlds(bundle);
+		listener.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle));
+		findTlds(bundle);
+		listener.frameworkEvent(new FrameworkEvent(FrameworkEvent.PACKAGES_REFRESHED, bundle, null));
+		findTlds(bundle);
+
+		verify(wiring, bundle);
+	}
+
+	@Test
+	public void numberOfCachedLookupsIsBounded() throws Exception {
+		BundleWiring wiring = createMock(BundleWiring.class);
+		expect(wiring.getRequiredWires(null)).andReturn(Collections.<BundleWire>emptyList()).anyTimes();
+		// each pattern once, then the last one again
+		expect(wiring.listResources(eq("/"), (String) anyObject(), anyInt()))
+				.andReturn(Collections.<String>emptyList()).times(ClassPathUtil.MAX_CACHED_LOOKUPS + 2);
+		Bundle bundle = bundle(4L);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		replay(wiring, bundle);
+
+		for (int i = 0; i <= ClassPathUtil.MAX_CACHED_LOOKUPS; i++) {
+			ClassPathUtil.findResources(Collections.singletonList(bundle), "/", "*." + i, false);
+		}
+		ClassPathUtil.findResources(Collections.singletonList(bundle), "/", "*.0", false);
+		ClassPathUtil.findResources(Collections.singletonList(bundle), "/", "*." + ClassPathUtil.MAX_CACHED_LOOKUPS, false);
+
+		verify(wiring, bundle);
+	}
+
+	private List<URL> findTlds(Bundle bundle) {
+		return ClassPathUtil.findResources(Collections.singletonList(bundle), "/META-INF", "*.tld", true);
+	}
+
+	/**
+	 * Mocks a wiring without required wires, which contains single TLD.
+	 *
+	 * @param lookups number of expected listings of the TLDs
+	 */
+	private BundleWiring wiring(int lookups) {
+		BundleWiring wiring = createMock(BundleWiring.class);
+		expect(wiring.getRequiredWires(null)).andReturn(Collections.<BundleWire>emptyList()).anyTimes();
+		expect(wiring.listResources("/META-INF", "*.tld", OPTIONS))
+				.andReturn(Collections.singletonList("META-INF/test.tld")).times(lookups);
+		return wiring;
+	}
+
+	private Bundle bundle(long id) throws Exception {
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.getResource("META-INF/test.tld")).andReturn(new URL("file:/META-INF/test.tld")).anyTimes();
+		return bundle;
+	}
+
+}
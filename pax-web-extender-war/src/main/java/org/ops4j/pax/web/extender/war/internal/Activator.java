@@ -25,6 +25,7 @@ import org.ops4j.pax.web.extender.war.internal.parser.WebAppParser;
 import org.ops4j.pax.web.service.spi.WarManager;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
 import org.osgi.framework.Filter;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -77,6 +78,23 @@ public class Activator extends AbstractExtender {
 		logger.debug("Pax Web WAR Extender - Stopped");
 	}
 
+	@Override
+	public void bundleChanged(BundleEvent event) {
+		super.bundleChanged(event);
+		switch (event.getType()) {
+			case BundleEvent.UPDATED:
+			case BundleEvent.RESOLVED:
+			case BundleEvent.UNRESOLVED:
+				WebObserver observer = webObserver;
+				if (observer != null) {
+					observer.bundleChanged(event.getBundle());
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
 	@Override
 	protected Extension doCreateExtension(Bundle bundle) throws Exception {
 		return webObserver.createExtension(bundle);
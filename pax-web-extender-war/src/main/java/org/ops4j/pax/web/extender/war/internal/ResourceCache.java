@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of resource lookups of a {@link WebAppHttpContext}.
+ *
+ * Found resources and failed lookups are kept in separate regions, each holding at most {@code maxSize}
+ * entries, so requests for random (non existing) paths can't push out the resources that are actually served.
+ * Entries are evicted using second-chance (CLOCK) policy - an entry read since the last eviction run survives
+ * it. Reads are lock-free, eviction is done by a single thread at a time, in batches.
+ *
+ * Each invalidation starts new generation of the cache. Results of lookups which started in previous
+ * generation are not remembered.
+ */
+class ResourceCache {
+
+	/**
+	 * Default number of entries in each region of the cache.
+	 */
+	static final int DEFAULT_SIZE = 1024;
+
+	private final int maxSize;
+
+	private final Region<URL> found;
+	private final Region<Boolean> missing;
+
+	// incremented on invalidation, so lookups running at that time don't store stale results
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache with given number of entries per region. Non-positive size disables the cache.
+	 *
+	 * @param maxSize maximal number of found resources and (separately) of missing resources to remember
+	 */
+	ResourceCache(final int maxSize) {
+		this.maxSize = Math.max(maxSize, 0);
+		found = new Region<>(this.maxSize);
+		missing = new Region<>(this.maxSize);
+	}
+
+	/**
+	 * Returns cached lookup result.
+	 *
+	 * @param name normalized resource name
+	 * @return found {@link URL}, {@code missingValue} if the resource is known not to exist or {@code null}
+	 * if there's nothing cached for the name
+	 */
+	URL get(final String name, final URL missingValue) {
+		if (maxSize == 0) {
+			return null;
+		}
+		URL url = found.get(name);
+		if (url == null && missing.get(name) != null) {
+			url = missingValue;
+		}
+		if (url == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return url;
+	}
+
+	/**
+	 * Returns current generation - to be read before the lookup, which result is {@link #put} to the cache.
+	 *
+	 * @return generation of the cache
+	 */
+	int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Remembers the result of resource lookup, unless the cache was invalidated since the lookup started.
+	 *
+	 * @param name normalized resource name
+	 * @param url found resource or {@code null} if there's no such resource
+	 * @param gen {@link #getGeneration() generation} read before the lookup
+	 */
+	void put(final String name, final URL url, final int gen) {
+		if (maxSize == 0 || generation.get() != gen) {
+			return;
+		}
+		if (url != null) {
+			undoIfInvalidated(found, name, found.put(name, url), gen);
+		} else {
+			undoIfInvalidated(missing, name, missing.put(name, Boolean.TRUE), gen);
+		}
+	}
+
+	private <V> void undoIfInvalidated(final Region<V> region, final String name, final Entry<V> entry,
+			final int gen) {
+		if (entry != null && generation.get() != gen) {
+			// invalidated in the meantime
+			region.entries.remove(name, entry);
+		}
+	}
+
+	/**
+	 * Forgets all cached lookups. Statistics are preserved.
+	 */
+	void invalidate() {
+		generation.incrementAndGet();
+		found.clear();
+		missing.clear();
+	}
+
+	int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return number of found resources currently cached
+	 */
+	int getFoundSize() {
+		return found.entries.size();
+	}
+
+	/**
+	 * @return number of missing resources currently cached
+	 */
+	int getMissingSize() {
+		return missing.entries.size();
+	}
+
+	long getHitCount() {
+		return hits.sum();
+	}
+
+	long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return ratio of lookups served from the cache, {@code 0} if there were no lookups yet
+	 */
+	double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0L ? 0d : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ResourceCache{size=%d/%d, hits=%d, misses=%d, hitRatio=%.2f}",
+				getFoundSize(), getMissingSize(), getHitCount(), getMissCount(), getHitRatio());
+	}
+
+	/**
+	 * Single region of the cache - map of entries with "referenced" bit used for eviction.
+	 *
+	 * @param <V> cached value type
+	 */
+	private static class Region<V> {
+
+		private final int maxSize;
+		/**
+		 * Size to which the region is shrunk when it overflows.
+		 */
+		private final int targetSize;
+
+		private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+		private final ReentrantLock evictionLock = new ReentrantLock();
+
+		Region(final int maxSize) {
+			this.maxSize = maxSize;
+			this.targetSize = maxSize - Math.max(maxSize / 8, 1);
+		}
+
+		V get(final String key) {
+			Entry<V> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (!entry.referenced) {
+				entry.referenced = true;
+			}
+			return entry.value;
+		}
+
+		/**
+		 * @return new entry or {@code null} if there already was an entry for the key
+		 */
+		Entry<V> put(final String key, final V value) {
+			Entry<V> entry = new Entry<>(value);
+			if (entries.putIfAbsent(key, entry) != null) {
+				entry = null;
+			}
+			if (entries.size() > maxSize && evictionLock.tryLock()) {
+				try {
+					evict();
+				} finally {
+					evictionLock.unlock();
+				}
+			}
+			return entry;
+		}
+
+		void clear() {
+			entries.clear();
+		}
+
+		/**
+		 * Removes entries not read since previous eviction run until {@link #targetSize} is reached. At most
+		 * two passes are needed - the first one clears all "referenced" bits.
+		 */
+		private void evict() {
+			for (int pass = 0; pass < 2 && entries.size() > targetSize; pass++) {
+				Iterator<Entry<V>> it = entries.values().iterator();
+				while (it.hasNext() && entries.size() > targetSize) {
+					Entry<V> entry = it.next();
+					if (entry.referenced) {
+						entry.referenced = false;
+					} else {
+						it.remove();
+					}
+				}
+			}
+		}
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+		private volatile boolean referenced;
+
+		Entry(final V value) {
+			this.value = value;
+		}
+	}
+
+}
@@ -20,12 +20,11 @@ package org.ops4j.pax.web.extender.war.internal;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -49,6 +48,12 @@ import org.slf4j.LoggerFactory;
  */
 class WebAppHttpContext implements HttpContext {
 
+    /**
+     * Framework property with number of found (and separately - missing) resources remembered by each web
+     * application.
+     */
+    static final String PROPERTY_RESOURCE_CACHE_SIZE = "org.ops4j.pax.web.extender.war.resourceCacheSize";
+
     static final URL NO_URL;
 
     /**
@@ -74,7 +79,12 @@ class WebAppHttpContext implements HttpContext {
 	 */
 	private final Map<String, String> mimeMappings;
 
-	private final ConcurrentMap<String, URL> resourceCache = new ConcurrentHashMap<>();
+	private final ResourceCache resourceCache;
+
+	/**
+	 * Bundles in class space of {@link #bundle} - calculated on first cache miss and reset on invalidation.
+	 */
+	private volatile Set<Bundle> bundlesInClassSpace;
 
 	static {
 		try {
@@ -108,6 +118,21 @@ class WebAppHttpContext implements HttpContext {
 			mimeMappings.put(mimeMapping.getExtension(),
 					mimeMapping.getMimeType());
 		}
+		resourceCache = new ResourceCache(resourceCacheSize(bundle));
+	}
+
+	private static int resourceCacheSize(final Bundle bundle) {
+		String size = bundle.getBundleContext() == null ? null
+				: bundle.getBundleContext().getProperty(PROPERTY_RESOURCE_CACHE_SIZE);
+		if (size != null) {
+			try {
+				return Integer.parseInt(size.trim());
+			} catch (NumberFormatException e) {
+				LoggerFactory.getLogger(WebAppHttpContext.class).warn("Invalid value of {}: {}",
+						PROPERTY_RESOURCE_CACHE_SIZE, size);
+			}
+		}
+		return ResourceCache.DEFAULT_SIZE;
 	}
 
 	/**
@@ -134,15 +159,15 @@ class WebAppHttpContext implements HttpContext {
 						+ " for resource [{}], normalized to [{}]", name,
 				normalizedName);
 
-		URL url = resourceCache.get(normalizedName);
+		URL url = resourceCache.get(normalizedName, NO_URL);
 
 		if (url == null && !normalizedName.isEmpty()) {
+			int gen = resourceCache.getGeneration();
 			url = bundle.getEntry(normalizedName);
 			if (url == null) {
 				log.debug("getEntry failed, trying with /META-INF/resources/ in bundle class space");
 				// Search attached bundles for web-fragments
-				Set<Bundle> bundlesInClassSpace = ClassPathUtil.getBundlesInClassSpace(bundle, new HashSet<>());
-				for (Bundle bundleInClassSpace : bundlesInClassSpace) {
+				for (Bundle bundleInClassSpace : getBundlesInClassSpace(gen)) {
 					url = bundleInClassSpace.getEntry("/META-INF/resources/" + normalizedName);
 					if (url != null) {
 						break;
@@ -154,10 +179,7 @@ class WebAppHttpContext implements HttpContext {
 				log.debug("getEntry failed, fallback to getResource");
 				url = bundle.getResource(normalizedName);
 			}
-			if (url == null) {
-				url = NO_URL;
-			}
-			resourceCache.putIfAbsent(normalizedName, url);
+			resourceCache.put(normalizedName, url, gen);
 		}
 
 		if (url != null && url != NO_URL) {
@@ -169,6 +191,46 @@ class WebAppHttpContext implements HttpContext {
 		return url;
 	}
 
+	private Set<Bundle> getBundlesInClassSpace(final int gen) {
+		Set<Bundle> bundles = bundlesInClassSpace;
+		if (bundles == null) {
+			bundles = Collections.unmodifiableSet(
+					ClassPathUtil.getBundlesInClassSpace(bundle, new LinkedHashSet<>()));
+			bundlesInClassSpace = bundles;
+			if (resourceCache.getGeneration() != gen) {
+				// invalidated in the meantime
+				bundlesInClassSpace = null;
+			}
+		}
+		return bundles;
+	}
+
+	/**
+	 * Invalidates cached resources if the changed bundle is the web application bundle or is part of
+	 * its class space - resources may have been added, removed or (after refresh) come from different bundles.
+	 *
+	 * @param changed updated, refreshed or (un)resolved bundle
+	 */
+	void bundleChanged(final Bundle changed) {
+		Set<Bundle> bundles = bundlesInClassSpace;
+		if (changed.getBundleId() == bundle.getBundleId() || (bundles != null && bundles.contains(changed))) {
+			// new generation first - lookups, which compute the class space concurrently, don't keep it
+			resourceCache.invalidate();
+			bundlesInClassSpace = null;
+			log.debug("Resource cache of {} invalidated after change of {}, statistics: {}", this, changed,
+					resourceCache);
+		}
+	}
+
+	/**
+	 * Returns resource lookup cache - for size and hit ratio statistics.
+	 *
+	 * @return the cache
+	 */
+	ResourceCache getResourceCache() {
+		return resourceCache;
+	}
+
 	/**
 	 * Find the mime type in the mime mappings. If not found delegate to wrapped
 	 * http context.
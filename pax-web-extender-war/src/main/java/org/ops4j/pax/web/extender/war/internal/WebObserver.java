@@ -316,6 +316,24 @@ public class WebObserver implements WarManager {
 		return SUCCESS;
 	}
 
+	/**
+	 * Notifies deployed web applications about a bundle being updated, refreshed or (un)resolved, so
+	 * cached resources coming from this bundle are no longer used.
+	 *
+	 * @param bundle changed bundle
+	 */
+	public void bundleChanged(final Bundle bundle) {
+		List<WebApp> apps;
+		synchronized (webApps) {
+			apps = new ArrayList<>(webApps.values());
+		}
+		for (WebApp webApp : apps) {
+			if (webApp.getHttpContext() instanceof WebAppHttpContext) {
+				((WebAppHttpContext) webApp.getHttpContext()).bundleChanged(bundle);
+			}
+		}
+	}
+
 	public int stop(long bundleId) {
 		WebApp webApp;
 		synchronized (webApps) {
@@ -17,7 +17,6 @@
  */
 package org.ops4j.pax.web.extender.war.internal.parser;
 
-import org.apache.xbean.finder.BundleAnnotationFinder;
 import org.ops4j.pax.web.descriptor.gen.AuthConstraintType;
 import org.ops4j.pax.web.descriptor.gen.CookieConfigType;
 import org.ops4j.pax.web.descriptor.gen.DescriptionType;
@@ -71,6 +70,7 @@ import org.ops4j.pax.web.extender.war.internal.model.WebAppServletMapping;
 import org.ops4j.pax.web.extender.war.internal.model.WebAppTagLib;
 import org.ops4j.pax.web.extender.war.internal.util.ManifestUtil;
 import org.ops4j.pax.web.service.spi.model.ErrorPageModel;
+import org.ops4j.pax.web.utils.BundleClassIndex;
 import org.ops4j.pax.web.utils.ClassPathUtil;
 import org.ops4j.spi.SafeServiceLoader;
 import org.osgi.framework.Bundle;
@@ -370,10 +370,10 @@ public class WebAppParser {
 		LOG.debug("metadata-complete is either false or not set");
 
 		LOG.debug("scanning for annotated classes");
-		BundleAnnotationFinder baf = new BundleAnnotationFinder(packageAdmin.getService(), bundle);
-		Set<Class<?>> webServletClasses = new LinkedHashSet<>(baf.findAnnotatedClasses(WebServlet.class));
-		Set<Class<?>> webFilterClasses = new LinkedHashSet<>(baf.findAnnotatedClasses(WebFilter.class));
-		Set<Class<?>> webListenerClasses = new LinkedHashSet<>(baf.findAnnotatedClasses(WebListener.class));
+		BundleClassIndex classIndex = BundleClassIndex.getIndex(packageAdmin.getService(), bundle);
+		Set<Class<?>> webServletClasses = new LinkedHashSet<>(classIndex.findAnnotatedClasses(WebServlet.class));
+		Set<Class<?>> webFilterClasses = new LinkedHashSet<>(classIndex.findAnnotatedClasses(WebFilter.class));
+		Set<Class<?>> webListenerClasses = new LinkedHashSet<>(classIndex.findAnnotatedClasses(WebListener.class));
 
 		for (Class<?> webServletClass : webServletClasses) {
 			LOG.debug("found WebServlet annotation on class: {}", webServletClass);
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+
+import org.junit.Test;
+
+public class ResourceCacheTest {
+
+	private static final URL MISSING = WebAppHttpContext.NO_URL;
+
+	@Test
+	public void foundAndMissingResourcesAreCached() throws Exception {
+		ResourceCache cache = new ResourceCache(16);
+		URL url = new URL("file:/index.html");
+
+		assertNull(cache.get("/index.html", MISSING));
+		cache.put("/index.html", url, cache.getGeneration());
+		cache.put("/missing.html", null, cache.getGeneration());
+
+		assertSame(url, cache.get("/index.html", MISSING));
+		assertSame(MISSING, cache.get("/missing.html", MISSING));
+		assertEquals(1, cache.getFoundSize());
+		assertEquals(1, cache.getMissingSize());
+		assertEquals(2L, cache.getHitCount());
+		assertEquals(1L, cache.getMissCount());
+		assertEquals(2d / 3d, cache.getHitRatio(), 0.0001d);
+	}
+
+	/**
+	 * Requests for random paths don't grow the cache and don't evict found resources.
+	 */
+	@Test
+	public void missingResourcesDontEvictFoundOnes() throws Exception {
+		ResourceCache cache = new ResourceCache(64);
+		URL url = new URL("file:/index.html");
+		cache.put("/index.html", url, cache.getGeneration());
+
+		for (int i = 0; i < 100_000; i++) {
+			cache.put("/random/" + i, null, cache.getGeneration());
+			assertTrue(cache.getMissingSize() <= 64);
+		}
+		assertEquals(1, cache.getFoundSize());
+		assertSame(url, cache.get("/index.html", MISSING));
+	}
+
+	@Test
+	public void recentlyUsedEntriesSurviveEviction() throws Exception {
+		ResourceCache cache = new ResourceCache(8);
+		URL hot = new URL("file:/hot.html");
+		cache.put("/hot.html", hot, cache.getGeneration());
+
+		for (int i = 0; i < 1000; i++) {
+			assertSame(hot, cache.get("/hot.html", MISSING));
+			cache.put("/cold/" + i, new URL("file:/cold/" + i), cache.getGeneration());
+			assertTrue(cache.getFoundSize() <= 8);
+		}
+	}
+
+	@Test
+	public void invalidation() throws Exception {
+		ResourceCache cache = new ResourceCache(8);
+		cache.put("/index.html", new URL("file:/index.html"), cache.getGeneration());
+		cache.put("/missing.html", null, cache.getGeneration());
+
+		cache.invalidate();
+
+		assertNull(cache.get("/index.html", MISSING));
+		assertNull(cache.get("/missing.html", MISSING));
+		assertEquals(0, cache.getFoundSize());
+		assertEquals(0, cache.getMissingSize());
+	}
+
+	@Test
+	public void lookupStartedBeforeInvalidationIsNotCached() throws Exception {
+		ResourceCache cache = new ResourceCache(8);
+		int gen = cache.getGeneration();
+		// bundle changes while the lookup is running
+		cache.invalidate();
+		cache.put("/index.html", new URL("file:/index.html"), gen);
+		cache.put("/missing.html", null, gen);
+
+		assertNull(cache.get("/index.html", MISSING));
+		assertNull(cache.get("/missing.html", MISSING));
+		assertEquals(0, cache.getFoundSize());
+		assertEquals(0, cache.getMissingSize());
+
+		cache.put("/index.html", new URL("file:/index.html"), cache.getGeneration());
+		assertEquals(1, cache.getFoundSize());
+	}
+
+	@Test
+	public void disabledCache() throws Exception {
+		ResourceCache cache = new ResourceCache(0);
+		cache.put("/index.html", new URL("file:/index.html"), cache.getGeneration());
+
+		assertNull(cache.get("/index.html", MISSING));
+		assertEquals(0, cache.getFoundSize());
+		assertEquals(0L, cache.getMissCount());
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.extender.war.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.net.URL;
+
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.ops4j.pax.web.extender.war.internal.model.WebAppMimeMapping;
+import org.osgi.framework.Bundle;
+import org.osgi.service.http.HttpContext;
+
+public class WebAppHttpContextTest {
+
+	@Test
+	public void lookupRacingWithBundleChangeIsNotCached() throws Exception {
+		final URL stale = new URL("file:/stale/index.html");
+		final URL current = new URL("file:/current/index.html");
+		final WebAppHttpContext[] context = new WebAppHttpContext[1];
+
+		final Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getEntry((String) anyObject())).andAnswer(new IAnswer<URL>() {
+			@Override
+			public URL answer() {
+				// bundle is updated while the lookup is running
+				context[0].bundleChanged(bundle);
+				return stale;
+			}
+		});
+		expect(bundle.getEntry((String) anyObject())).andReturn(current);
+		replay(bundle);
+		HttpContext httpContext = createMock(HttpContext.class);
+		replay(httpContext);
+
+		context[0] = new WebAppHttpContext(httpContext, "", bundle, new WebAppMimeMapping[0]);
+		assertSame(stale, context[0].getResource("/index.html"));
+		assertEquals(0, context[0].getResourceCache().getFoundSize());
+		assertSame(current, context[0].getResource("/index.html"));
+		assertSame(current, context[0].getResource("/index.html"));
+		verify(bundle);
+	}
+
+}
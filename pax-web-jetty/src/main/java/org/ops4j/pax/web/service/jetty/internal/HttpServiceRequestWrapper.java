@@ -76,7 +76,11 @@ class HttpServiceRequestWrapper extends HttpServletRequestWrapper {
 			if (requestAttrValue != null && requestAttrValue instanceof Request) {
 				request = (Request) requestAttrValue;
 			} else {
-				request = null;
+				// the attribute is not set when the initial request was handled by a context
+				// without security - fall back to the request being handled by current thread
+				request = Request.getBaseRequest(servletRequest);
+			}
+			if (request == null) {
 				LOG.debug("HttpService specific authentication is disabled because the ServletRequest object cannot be used, "
 						+ "and "
 						+ JETTY_REQUEST_ATTR_NAME
@@ -26,6 +26,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.servlet.ServletHandler;
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.WebContainerContext;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +37,16 @@ class HttpServiceServletHandler extends ServletHandler {
 	private static final Logger LOG = LoggerFactory
 			.getLogger(HttpServiceServletHandler.class);
 	private final HttpContext httpContext;
+	/**
+	 * Whether {@link HttpContext#handleSecurity} may be skipped together with wrapping of request and response.
+	 */
+	private final boolean trivialSecurity;
 
 	HttpServiceServletHandler(final HttpContext httpContext) {
 		NullArgumentException.validateNotNull(httpContext, "Http context");
 		this.httpContext = httpContext;
+		this.trivialSecurity = httpContext instanceof WebContainerContext
+				&& ((WebContainerContext) httpContext).hasTrivialSecurity();
 		setEnsureDefaultServlet(false);
 	}
 
@@ -50,6 +57,11 @@ class HttpServiceServletHandler extends ServletHandler {
 		if (request.getMethod().equals(METHOD_TRACE)) {
 			throw new ServletException("HTTP TRACE method is disabled");
 		}
+		if (trivialSecurity) {
+			// nothing can set authentication attributes, so there's nothing to wrap
+			super.doHandle(target, baseRequest, request, response);
+			return;
+		}
 		// we have to set the jetty request as a request attribute if not
 		// already set in order to be able to handle the
 		// case that the request has been wrapped with a custom wrapper (case of
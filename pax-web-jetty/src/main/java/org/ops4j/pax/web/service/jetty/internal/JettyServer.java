@@ -31,6 +31,8 @@ import org.ops4j.pax.web.service.spi.model.FilterModel;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 import org.osgi.service.http.HttpContext;
 
 /**
@@ -126,6 +128,29 @@ public interface JettyServer {
 
 	String getDefaultRealmName() ;
 
+	/**
+	 * Sets the cache of static content used by default servlets created by the server.
+	 *
+	 * @param contentCache cache of resource content, may be {@code null}
+	 */
+	void setResourceContentCache(ResourceContentCache contentCache);
+
+	/**
+	 * Sets the cache of content based ETags used by default servlets created by the server.
+	 *
+	 * @param contentETags strong ETags of resources, {@code null} if ETags should be based on last
+	 *                     modification time
+	 */
+	void setContentETags(ContentETags contentETags);
+
+	/**
+	 * Sets the cache of extracted bundle entries used by default servlets created by the server.
+	 *
+	 * @param extractedResourceCache extracted resources, {@code null} if resources should be streamed from
+	 *                               bundles
+	 */
+	void setExtractedResourceCache(ExtractedResourceCache extractedResourceCache);
+
 	void addServletContainerInitializer(ContainerInitializerModel model);
 
 	Connector[] getConnectors();
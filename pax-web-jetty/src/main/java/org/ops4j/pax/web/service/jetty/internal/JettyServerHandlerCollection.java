@@ -17,6 +17,11 @@
 package org.ops4j.pax.web.service.jetty.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -30,6 +35,7 @@ import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,6 +54,15 @@ class JettyServerHandlerCollection extends HandlerCollection {
 
 	private final ServerModel serverModel;
 
+	/**
+	 * Immutable view of {@link HttpServiceContext contexts} and other handlers used by
+	 * {@link #handle(String, Request, HttpServletRequest, HttpServletResponse)}. Replaced whenever contexts
+	 * or handlers are added/removed.
+	 */
+	private volatile Routing routing = Routing.EMPTY;
+
+	private Map<HttpContext, HttpServiceContext> contexts = Collections.emptyMap();
+
 	JettyServerHandlerCollection(final ServerModel serverModel) {
 		super(true);
 		NullArgumentException.validateNotNull(serverModel, "Server model");
@@ -62,17 +77,15 @@ class JettyServerHandlerCollection extends HandlerCollection {
 			return;
 		}
 
+		final Routing routing = this.routing;
 		final ContextModel matched = serverModel.matchPathToContext(request.getServerName(),target);
 		if (matched != null) {
 			// check for nulls and start complaining
 			NullArgumentException.validateNotNull(matched.getHttpContext(),
 					"The http Context of " + matched.getContextName()
 							+ " is null");
-			NullArgumentException.validateNotNull(getServer(),
-					"The server is null!");
 
-			final ContextHandler context = ((JettyServerWrapper) getServer())
-					.getContext(matched.getHttpContext());
+			final ContextHandler context = routing.contexts.get(matched.getHttpContext());
 
 			try {
 				if (context == null) {
@@ -98,22 +111,36 @@ class JettyServerHandlerCollection extends HandlerCollection {
 		//  - Upon receipt of a client request, the Web container determines the Web application to which to forward it.
 		//  - The Web container next must locate the servlet to process the request using the path mapping procedure [...]
 		//  - The first successful match is used with no further matches attempted
-		Handler[] handlers = getHandlers();
-		if (handlers != null) {
-			for (Handler handler : handlers) {
-				if (matched != null
-						&& (handler instanceof ContextHandler || matchedContextEqualsHandler(matched, handler))) {
-					continue;
-				}
-				handler.handle(target, baseRequest, request, response);
-			}
+		for (Handler handler : matched != null ? routing.nonContextHandlers : routing.handlers) {
+			handler.handle(target, baseRequest, request, response);
 		}
 	}
 
-	private boolean matchedContextEqualsHandler(ContextModel matched,
-												Handler handler) {
-		return handler == ((JettyServerWrapper) getServer())
-				.getContext(matched.getHttpContext());
+	/**
+	 * Returns the context handler for given {@link HttpContext} without any locking.
+	 */
+	HttpServiceContext getContext(final HttpContext httpContext) {
+		return routing.contexts.get(httpContext);
+	}
+
+	/**
+	 * Publishes new set of {@link HttpServiceContext contexts} - has to be called after every change of
+	 * registered contexts.
+	 */
+	synchronized void setContexts(final Map<HttpContext, HttpServiceContext> contexts) {
+		this.contexts = contexts;
+		routing = new Routing(contexts, getHandlers());
+	}
+
+	@Override
+	protected boolean updateHandlers(final Handlers old, final Handlers handlers) {
+		if (!super.updateHandlers(old, handlers)) {
+			return false;
+		}
+		synchronized (this) {
+			routing = new Routing(contexts, getHandlers());
+		}
+		return true;
 	}
 
 	@Override
@@ -128,4 +155,26 @@ class JettyServerHandlerCollection extends HandlerCollection {
 		return addBean(o, false);
 	}
 
+	private static final class Routing {
+
+		private static final Routing EMPTY = new Routing(Collections.emptyMap(), null);
+
+		private final Map<HttpContext, HttpServiceContext> contexts;
+		private final Handler[] handlers;
+		/** Handlers called in addition to the matched context */
+		private final Handler[] nonContextHandlers;
+
+		private Routing(final Map<HttpContext, HttpServiceContext> contexts, final Handler[] handlers) {
+			this.contexts = Collections.unmodifiableMap(new IdentityHashMap<>(contexts));
+			this.handlers = handlers == null ? new Handler[0] : handlers;
+			List<Handler> others = new ArrayList<>(this.handlers.length);
+			for (Handler handler : this.handlers) {
+				if (!(handler instanceof ContextHandler)) {
+					others.add(handler);
+				}
+			}
+			this.nonContextHandlers = others.toArray(new Handler[0]);
+		}
+	}
+
 }
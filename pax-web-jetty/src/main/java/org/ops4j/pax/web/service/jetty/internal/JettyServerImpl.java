@@ -67,6 +67,8 @@ import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServerModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 import org.ops4j.pax.web.service.spi.util.ResourceDelegatingBundleClassLoader;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.wiring.BundleWiring;
@@ -86,6 +88,10 @@ class JettyServerImpl implements JettyServer {
 	private MBeanContainer mBeanContainer;
 
 	private Comparator<?> priorityComparator;
+
+	private ResourceContentCache resourceContentCache;
+	private ContentETags contentETags;
+	private ExtractedResourceCache extractedResourceCache;
 	
 	JettyServerImpl(final ServerModel serverModel, Bundle bundle) {
 		this(serverModel, bundle, null, null);
@@ -319,10 +325,12 @@ class JettyServerImpl implements JettyServer {
 				if (!context.isStarted()) {
 					// Fixfor PAXWEB-725
 					ClassLoader classLoader = context.getClassLoader();
-					List<Bundle> bundles = ((ResourceDelegatingBundleClassLoader) classLoader).getBundles();
+					ResourceDelegatingBundleClassLoader webAppClassLoader = (ResourceDelegatingBundleClassLoader) classLoader;
+					List<Bundle> bundles = webAppClassLoader.getBundles();
 					BundleClassLoader parentClassLoader
 							= new BundleClassLoader(bundle);
-					ResourceDelegatingBundleClassLoader containerSpecificClassLoader = new ResourceDelegatingBundleClassLoader(bundles, parentClassLoader);
+					ResourceDelegatingBundleClassLoader containerSpecificClassLoader = new ResourceDelegatingBundleClassLoader(
+							bundles, parentClassLoader, webAppClassLoader.getCacheSize());
 					context.setClassLoader(containerSpecificClassLoader);
 					context.start();
 				}
@@ -335,7 +343,8 @@ class JettyServerImpl implements JettyServer {
 					}
 				}
 				if (!hasDefault) {
-					ResourceServlet servlet = new ResourceServlet(model.getHttpContext(), model.getContextName(), "/", "default");
+					ResourceServlet servlet = new ResourceServlet(model.getHttpContext(), model.getContextName(), "/", "default",
+							resourceContentCache, contentETags, extractedResourceCache, model.getBundle());
 					ResourceModel resourceModel = new ResourceModel(model, servlet, "/", "default");
 					addServlet(resourceModel);
 				}
@@ -971,6 +980,21 @@ class JettyServerImpl implements JettyServer {
 		return server.getDefaultRealmName();
 	}
 
+	@Override
+	public void setResourceContentCache(ResourceContentCache contentCache) {
+		this.resourceContentCache = contentCache;
+	}
+
+	@Override
+	public void setContentETags(ContentETags contentETags) {
+		this.contentETags = contentETags;
+	}
+
+	@Override
+	public void setExtractedResourceCache(ExtractedResourceCache extractedResourceCache) {
+		this.extractedResourceCache = extractedResourceCache;
+	}
+
 	@Override
 	public JettyServerWrapper getServer() {
 		return server;
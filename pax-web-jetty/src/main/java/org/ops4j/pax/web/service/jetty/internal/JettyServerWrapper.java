@@ -133,7 +133,7 @@ class JettyServerWrapper extends Server {
 	private Bundle jettyBundle;
 	private ServiceTracker<PackageAdmin, PackageAdmin> packageAdminTracker;
 
-	private HandlerCollection rootCollections;
+	private JettyServerHandlerCollection rootCollections;
 
 	JettyServerWrapper(ServerModel serverModel, ThreadPool threadPool) {
 		super(threadPool);
@@ -183,16 +183,7 @@ class JettyServerWrapper extends Server {
 	}
 
 	HttpServiceContext getContext(final HttpContext httpContext) {
-		readLock.lock();
-		try {
-			ServletContextInfo servletContextInfo = contexts.get(httpContext);
-			if (servletContextInfo != null) {
-				return servletContextInfo.getHandler();
-			}
-			return null;
-		} finally {
-			readLock.unlock();
-		}
+		return rootCollections.getContext(httpContext);
 	}
 
 	HttpServiceContext getOrCreateContext(final Model model) {
@@ -217,6 +208,7 @@ class JettyServerWrapper extends Server {
 
 						context = new ServletContextInfo(this.addContext(model));
 						contexts.put(httpContext, context);
+						publishContexts();
 						// don't increment! - it's already == 1 after creation
 //						context.incrementRefCount();
 					} else {
@@ -249,6 +241,7 @@ class JettyServerWrapper extends Server {
 					writeLock.lock();
 					LOG.debug("Removing ServletContextHandler for HTTP context [{}].", httpContext);
 					context = contexts.remove(httpContext);
+					publishContexts();
 				} finally {
 					readLock.lock();
 					writeLock.unlock();
@@ -278,6 +271,17 @@ class JettyServerWrapper extends Server {
 		}
 	}
 
+	/**
+	 * Makes current contexts visible to request handling. Has to be called with write lock held.
+	 */
+	private void publishContexts() {
+		Map<HttpContext, HttpServiceContext> handlers = new IdentityHashMap<>();
+		for (Map.Entry<HttpContext, ServletContextInfo> entry : contexts.entrySet()) {
+			handlers.put(entry.getKey(), entry.getValue().getHandler());
+		}
+		rootCollections.setContexts(handlers);
+	}
+
 	@SuppressWarnings("unchecked")
 	private HttpServiceContext addContext(final ContextModel model) {
 		Bundle bundle = model.getBundle();
@@ -0,0 +1,359 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.osgi.framework.Bundle;
+
+/**
+ * In-memory cache of static content served by {@link ResourceServlet resource servlets} of single server.
+ *
+ * Entries are keyed by the http context, path of the resource within the context and content encoding of
+ * precompressed variant of the resource (if it's the variant which is cached). Entries of a bundle
+ * which was updated (or uninstalled) since the content was read are never returned. Content which doesn't
+ * come from indexed entries of the bundle (files served by custom http context, resources of other bundles)
+ * keeps the URL of the resource, so the servlet may check that the resource wasn't replaced or modified.
+ * The cache is bounded by number of entries and total size of content - entries which were not read since
+ * previous eviction run are removed first (second-chance/CLOCK policy).
+ *
+ * The cache is enabled by default ({@code org.ops4j.pax.web.server.resourceCache.maxEntries=1024}), setting maximal
+ * number of entries to {@code 0} disables it.
+ */
+class ResourceContentCache {
+
+	private final int maxEntries;
+	private final int maxEntrySize;
+	private final long maxSize;
+	private final boolean directBuffers;
+
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong size = new AtomicLong();
+
+	/**
+	 * Creates the cache.
+	 *
+	 * @param maxEntries    maximal number of cached resources, {@code 0} disables the cache
+	 * @param maxEntrySize  maximal size (in bytes) of single cached resource
+	 * @param maxSize       maximal total size (in bytes) of cached content
+	 * @param directBuffers whether to keep the content in direct buffers
+	 */
+	ResourceContentCache(final int maxEntries, final int maxEntrySize, final long maxSize,
+						 final boolean directBuffers) {
+		this.maxEntries = Math.max(maxEntries, 0);
+		this.maxEntrySize = Math.max(maxEntrySize, 0);
+		this.maxSize = Math.max(maxSize, 0L);
+		this.directBuffers = directBuffers;
+	}
+
+	/**
+	 * Checks whether the content of given size may be cached at all. Empty resources are not cached - these
+	 * may be directory entries of a bundle.
+	 *
+	 * @param length size of resource
+	 * @return {@code true} if the resource is not too big
+	 */
+	boolean accepts(final long length) {
+		return maxEntries > 0 && length > 0 && length <= maxEntrySize && length <= maxSize;
+	}
+
+	/**
+	 * Returns cached resource if it's still valid.
+	 *
+	 * @param context http context, the resource was obtained from
+	 * @param path    path of the resource within the context
+	 * @return cached resource or {@code null}
+	 */
+	Entry get(final Object context, final String path) {
+		return get(context, path, null);
+	}
+
+	/**
+	 * Returns cached variant of a resource if it's still valid.
+	 *
+	 * @param context  http context, the resource was obtained from
+	 * @param path     path of the resource within the context
+	 * @param encoding content encoding of precompressed variant, {@code null} for the resource itself
+	 * @return cached resource or {@code null}
+	 */
+	Entry get(final Object context, final String path, final String encoding) {
+		if (maxEntries == 0) {
+			return null;
+		}
+		Key key = new Key(context, path, encoding);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (!entry.isValid()) {
+			remove(key, entry);
+			return null;
+		}
+		if (!entry.referenced) {
+			entry.referenced = true;
+		}
+		return entry;
+	}
+
+	/**
+	 * Caches the content of a resource.
+	 *
+	 * @param context      http context, the resource was obtained from
+	 * @param path         path of the resource within the context
+	 * @param bundle       bundle owning the resource, its updates invalidate the entry
+	 * @param lastModified last modification time of the resource
+	 * @param mimeType     content type of the resource
+	 * @param content      content of the resource
+	 * @return new entry, or {@code null} if the content can't be cached
+	 */
+	Entry put(final Object context, final String path, final Bundle bundle, final long lastModified,
+			  final String mimeType, final byte[] content) {
+		return put(context, path, null, Collections.emptySet(), bundle, null, null, lastModified, mimeType,
+				null, content);
+	}
+
+	/**
+	 * Caches the content of a resource or its precompressed variant.
+	 *
+	 * @param encoding     content encoding of precompressed variant, {@code null} for the resource itself
+	 * @param variants     content encodings of existing precompressed variants of the resource
+	 * @param source       URL of the resource, which has to be checked on each hit, {@code null} if the
+	 *                     resource is an indexed bundle entry, which can't change without bundle update
+	 * @param sourcePath   path used to obtain {@code source} from the context
+	 * @param eTag         content based ETag of the resource, may be {@code null}
+	 * @see #put(Object, String, Bundle, long, String, byte[])
+	 */
+	Entry put(final Object context, final String path, final String encoding, final Set<String> variants,
+			  final Bundle bundle, final URL source, final String sourcePath, final long lastModified,
+			  final String mimeType, final String eTag, final byte[] content) {
+		if (!accepts(content.length)) {
+			return null;
+		}
+		ByteBuffer buffer = directBuffers ? ByteBuffer.allocateDirect(content.length)
+				: ByteBuffer.allocate(content.length);
+		buffer.put(content).flip();
+
+		Entry entry = new Entry(bundle, source, sourcePath, lastModified, mimeType, eTag, variants,
+				buffer.asReadOnlyBuffer());
+		Key key = new Key(context, path, encoding);
+		Entry previous = entries.put(key, entry);
+		size.addAndGet(content.length - (previous == null ? 0 : previous.getLength()));
+		if (entries.size() > maxEntries || size.get() > maxSize) {
+			evict();
+		}
+		return entry;
+	}
+
+	/**
+	 * Removes cached resource, which turned out to be stale.
+	 *
+	 * @param context  http context, the resource was obtained from
+	 * @param path     path of the resource within the context
+	 * @param encoding content encoding of precompressed variant, {@code null} for the resource itself
+	 * @param entry    entry returned by {@link #get(Object, String, String)}
+	 */
+	void remove(final Object context, final String path, final String encoding, final Entry entry) {
+		remove(new Key(context, path, encoding), entry);
+	}
+
+	/**
+	 * Removes all resources of given context - when its resource servlet is destroyed.
+	 *
+	 * @param context http context
+	 */
+	void invalidate(final Object context) {
+		for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+			if (e.getKey().context == context) {
+				remove(e.getKey(), e.getValue());
+			}
+		}
+	}
+
+	void clear() {
+		for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+			remove(e.getKey(), e.getValue());
+		}
+	}
+
+	int getEntryCount() {
+		return entries.size();
+	}
+
+	long getSize() {
+		return size.get();
+	}
+
+	private void remove(final Key key, final Entry entry) {
+		if (entries.remove(key, entry)) {
+			size.addAndGet(-entry.getLength());
+		}
+	}
+
+	private synchronized void evict() {
+		for (int pass = 0; pass < 2 && (entries.size() > maxEntries || size.get() > maxSize); pass++) {
+			Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+			while (it.hasNext() && (entries.size() > maxEntries || size.get() > maxSize)) {
+				Map.Entry<Key, Entry> e = it.next();
+				Entry entry = e.getValue();
+				if (entry.referenced && entry.isValid()) {
+					entry.referenced = false;
+				} else {
+					remove(e.getKey(), entry);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ResourceContentCache{entries=" + entries.size() + "/" + maxEntries
+				+ ", size=" + size.get() + "/" + maxSize + "}";
+	}
+
+	private static final class Key {
+
+		private final Object context;
+		private final String path;
+		private final String encoding;
+		private final int hash;
+
+		Key(final Object context, final String path, final String encoding) {
+			this.context = context;
+			this.path = path;
+			this.encoding = encoding;
+			int h = 31 * System.identityHashCode(context) + path.hashCode();
+			this.hash = encoding == null ? h : 31 * h + encoding.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return context == other.context && path.equals(other.path)
+					&& (encoding == null ? other.encoding == null : encoding.equals(other.encoding));
+		}
+	}
+
+	/**
+	 * Cached resource.
+	 */
+	static final class Entry {
+
+		private final Bundle bundle;
+		private final long bundleLastModified;
+		private final URL source;
+		private final String sourcePath;
+		private final long lastModified;
+		private final String mimeType;
+		private final String eTag;
+		private final Set<String> variants;
+		private final ByteBuffer content;
+		private volatile boolean referenced;
+
+		private Entry(final Bundle bundle, final URL source, final String sourcePath, final long lastModified,
+					  final String mimeType, final String eTag, final Set<String> variants,
+					  final ByteBuffer content) {
+			this.bundle = bundle;
+			this.bundleLastModified = bundle == null ? 0L : bundle.getLastModified();
+			this.source = source;
+			this.sourcePath = sourcePath;
+			this.lastModified = lastModified;
+			this.mimeType = mimeType;
+			this.eTag = eTag;
+			this.variants = variants;
+			this.content = content;
+		}
+
+		/**
+		 * Entry is valid as long as the bundle owning the resource isn't updated or uninstalled.
+		 *
+		 * @return {@code true} if the content may be served
+		 */
+		boolean isValid() {
+			return bundle == null || (bundle.getState() != Bundle.UNINSTALLED
+					&& bundle.getLastModified() == bundleLastModified);
+		}
+
+		/**
+		 * @return URL of the resource, which has to be revalidated before serving the content, {@code null}
+		 * for indexed bundle entries
+		 */
+		URL getSource() {
+			return source;
+		}
+
+		/**
+		 * @return path of the resource (or its variant) within the context
+		 */
+		String getSourcePath() {
+			return sourcePath;
+		}
+
+		long getLastModified() {
+			return lastModified;
+		}
+
+		String getMimeType() {
+			return mimeType;
+		}
+
+		/**
+		 * @return content based ETag, {@code null} if ETag should be based on last modification time
+		 */
+		String getETag() {
+			return eTag;
+		}
+
+		/**
+		 * @param encoding content encoding
+		 * @return {@code true} if there's precompressed variant of the resource with given encoding
+		 */
+		boolean hasVariant(final String encoding) {
+			return variants.contains(encoding);
+		}
+
+		int getLength() {
+			return content.remaining();
+		}
+
+		/**
+		 * Returns the content as new buffer, which may be consumed independently of other requests.
+		 *
+		 * @return read-only view of the content
+		 */
+		ByteBuffer getContent() {
+			return content.duplicate();
+		}
+	}
+
+}
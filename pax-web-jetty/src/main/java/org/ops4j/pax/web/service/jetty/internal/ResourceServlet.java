@@ -16,12 +16,20 @@
  */
 package org.ops4j.pax.web.service.jetty.internal;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -32,10 +40,21 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.InclusiveByteRange;
 import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.MultiPartOutputStream;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
+import org.ops4j.pax.web.service.spi.util.MimeTypeResolver;
+import org.ops4j.pax.web.service.spi.util.PrecompressedVariant;
+import org.ops4j.pax.web.service.spi.util.WelcomeFileCache;
+import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,28 +74,64 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 	@SuppressWarnings("unused")
 	private static final String IF_MATCH = "If-Match";
 	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
-	@SuppressWarnings("unused")
 	private static final String IF_RANGE = "If-Range";
 	private static final String IF_UNMODIFIED_SINCE = "If-Unmodified-Since";
 	@SuppressWarnings("unused")
 	private static final String KEEP_ALIVE = "Keep-Alive";
 	private static final String ETAG = "ETag";
+	private static final String RANGE = "Range";
+	private static final String ACCEPT_RANGES = "Accept-Ranges";
+	private static final String CONTENT_RANGE = "Content-Range";
 	// CHECKSTYLE:ON
 
 	private static final Logger LOG = LoggerFactory
 			.getLogger(ResourceServlet.class);
 
+	// default mappings of org.eclipse.jetty.http.MimeTypes
+	private static final Map<String, String> DEFAULT_MIME_TYPES = defaultMimeTypes();
+
 	private final HttpContext httpContext;
 	private final String contextName;
 	private final String alias;
 	private final String name;
-	private final MimeTypes mimeTypes = new MimeTypes();
+	private volatile MimeTypeResolver mimeTypeResolver = new MimeTypeResolver(DEFAULT_MIME_TYPES, null);
+	private final ResourceContentCache contentCache;
+	private final ContentETags contentETags;
+	private final ExtractedResourceCache extractedResources;
+	private final Bundle bundle;
 
 	private String[] welcomes;
+	private final WelcomeFileCache welcomeFileCache = new WelcomeFileCache();
 
 	ResourceServlet(final HttpContext httpContext, final String contextName,
 					final String alias, final String name) {
+		this(httpContext, contextName, alias, name, null, null, null);
+	}
+
+	ResourceServlet(final HttpContext httpContext, final String contextName,
+					final String alias, final String name,
+					final ResourceContentCache contentCache, final ContentETags contentETags,
+					final Bundle bundle) {
+		this(httpContext, contextName, alias, name, contentCache, contentETags, null, bundle);
+	}
+
+	/**
+	 * Creates resource servlet, which keeps content of served resources in memory.
+	 *
+	 * @param contentCache       cache of resource content, may be {@code null}
+	 * @param contentETags       strong ETags of resources, {@code null} if ETags are based on last modification time
+	 * @param extractedResources large bundle entries extracted to files, may be {@code null}
+	 * @param bundle             bundle owning the http context - cached content is not used after its update
+	 */
+	ResourceServlet(final HttpContext httpContext, final String contextName,
+					final String alias, final String name,
+					final ResourceContentCache contentCache, final ContentETags contentETags,
+					final ExtractedResourceCache extractedResources, final Bundle bundle) {
 		this.httpContext = httpContext;
+		this.contentCache = contentCache;
+		this.contentETags = contentETags;
+		this.extractedResources = extractedResources;
+		this.bundle = bundle;
 		this.contextName = "/" + contextName;
 		this.alias = alias;
 		if ("/".equals(name)) {
@@ -95,6 +150,9 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		if (welcomes == null) {
 			welcomes = new String[]{"index.html", "index.jsp"};
 		}
+		// init() is called again when welcome files change
+		welcomeFileCache.clear();
+		mimeTypeResolver = new MimeTypeResolver(DEFAULT_MIME_TYPES, contextHandler.getMimeTypes().getMimeMap());
 	}
 
 	/**
@@ -125,6 +183,15 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 	
 	
 
+	@Override
+	public void destroy() {
+		if (contentCache != null) {
+			contentCache.invalidate(httpContext);
+		}
+		welcomeFileCache.clear();
+		super.destroy();
+	}
+
 	@SuppressWarnings("deprecation")
 	@Override
 	protected void service(final HttpServletRequest request,
@@ -168,7 +235,43 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		boolean endsWithSlash = (mapping == null ? request.getServletPath()
 				: mapping).endsWith(URIUtil.SLASH);
 
-		final URL url = httpContext.getResource(mapping);
+		String encoding = null;
+		ResourceContentCache.Entry cached = null;
+		if (contentCache != null) {
+			List<PrecompressedVariant> variants = acceptedVariants(request, included, endsWithSlash);
+			for (PrecompressedVariant variant : variants) {
+				cached = cached(mapping, variant.getEncoding());
+				if (cached != null) {
+					encoding = variant.getEncoding();
+					break;
+				}
+			}
+			if (cached == null) {
+				cached = cached(mapping, null);
+				for (PrecompressedVariant variant : variants) {
+					if (cached != null && cached.hasVariant(variant.getEncoding())) {
+						// accepted variant exists, but it's not cached yet
+						cached = null;
+					}
+				}
+			}
+		}
+		if (cached != null) {
+			String eTag = cached.getETag() != null ? cached.getETag() : eTag(cached.getLastModified(), encoding);
+			if (checkConditions(request, response, cached.getLastModified(), eTag, encoding)) {
+				if (cached.getMimeType() != null) {
+					response.setContentType(cached.getMimeType());
+				}
+				ByteBuffer content = cached.getContent();
+				if (!sendRanges(request, response, included, cached.getMimeType(), cached.getLastModified(),
+						eTag, content.remaining(), new BufferRangeWriter(content))) {
+					sendContent(response, content);
+				}
+			}
+			return;
+		}
+
+		URL url = httpContext.getResource(mapping);
 		if (url == null) {
 			response.sendError(HttpServletResponse.SC_NOT_FOUND);
 			return;
@@ -183,9 +286,20 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 			resource = null;
 		}
 
+		// metadata of bundle entries is known without opening the URL
+		BundleEntryIndex index = entryIndex();
+		BundleEntryIndex.Entry indexed = index == null ? null : index.getCovered(mapping);
+		String resourcePath = mapping;
+
 		try {
 
-			if ((resource == null || (!resource.exists()) && getWelcomeFile(mapping) == null)) {
+			boolean exists = indexed != null || (resource != null && resource.exists());
+			String welcome = null;
+			if (resource != null && (!exists || indexed != null && indexed.isDirectory())) {
+				// single (usually cached) lookup for directory requests
+				welcome = getWelcomeFile(index, mapping);
+			}
+			if ((resource == null || !exists && welcome == null)) {
 				if (!response.isCommitted()) {
 					if (mapping.equals("/")) {
 						// root directory listing, but no "dir entry" from bundle
@@ -199,13 +313,19 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 
 			// let's check if this is maybe a directory. org.osgi.framework.Bundle.getResource()
 			// returns proper URL for directory entry and we can't tell if it's a directory or not
-			boolean possibleDirectoryBundleEntry = !resource.exists();
-			if (resource.exists()) {
+			boolean possibleDirectoryBundleEntry = !exists;
+			if (indexed != null) {
+				possibleDirectoryBundleEntry = indexed.isDirectory();
+			} else if (exists) {
 				try (InputStream peek = resource.getInputStream()) {
 					possibleDirectoryBundleEntry = peek.available() == 0;
 				}
 			}
-			String welcome = possibleDirectoryBundleEntry ? getWelcomeFile(mapping) : null;
+			if (!possibleDirectoryBundleEntry) {
+				welcome = null;
+			} else if (welcome == null && exists && indexed == null) {
+				welcome = getWelcomeFile(index, mapping);
+			}
 			boolean redirect = false;
 
 			// else look for a welcome file
@@ -243,51 +363,33 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 				return;
 			}
 
-			// if the request contains an etag and its the same for the
-			// resource, we deliver a NOT MODIFIED response
-			String eTag = "\"" + String.valueOf(resource.lastModified()) + "\"";
-			if ((request.getHeader(IF_NONE_MATCH) != null)
-					&& (eTag.equals(request.getHeader(IF_NONE_MATCH)))) {
-				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-				return;
-			} else if (request.getHeader(IF_MODIFIED_SINCE) != null) {
-				long ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
-				if (resource.lastModified() != -1) {
-					// resource.lastModified()/1000 <= ifmsl/1000
-					if (resource.lastModified() / SECOND <= ifModifiedSince / SECOND) {
-						response.reset();
-						response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-						response.flushBuffer();
-						return;
-					}
-				}
-			} else if (request.getHeader(IF_UNMODIFIED_SINCE) != null) {
-				long modifiedSince = request.getDateHeader(IF_UNMODIFIED_SINCE);
-
-				if (modifiedSince != -1) {
-					if (resource.lastModified() / SECOND > modifiedSince / SECOND) {
-						response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
-						return;
-					}
+			// serve precompressed variant of the resource if the client accepts it
+			for (PrecompressedVariant variant : acceptedVariants(request, included, endsWithSlash)) {
+				URL variantUrl = httpContext.getResource(variant.getPath(mapping));
+				Resource variantResource = variantUrl == null ? null : ResourceEx.newResource(variantUrl, true);
+				BundleEntryIndex.Entry indexedVariant = index == null ? null : index.getCovered(variant.getPath(mapping));
+				if (variantResource != null && (indexedVariant != null ? !indexedVariant.isDirectory()
+						: variantResource.exists() && !variantResource.isDirectory())) {
+					resource.release();
+					resource = variantResource;
+					url = variantUrl;
+					resourcePath = variant.getPath(mapping);
+					indexed = indexedVariant;
+					encoding = variant.getEncoding();
+					break;
 				}
 			}
 
-			// set the etag
-			response.setHeader(ETAG, eTag);
-			String mimeType = httpContext.getMimeType(mapping);
-			if (mimeType == null) {
-				mimeType = mimeTypes.getMimeByExtension(mapping);
+			long lastModified = indexed != null ? indexed.getLastModified() : resource.lastModified();
+			String eTag = contentETags != null ? contentETags.getETag(url, lastModified)
+					: eTag(lastModified, encoding);
+			if (!checkConditions(request, response, lastModified, eTag, encoding)) {
+				return;
 			}
 
+			String mimeType = httpContext.getMimeType(mapping);
 			if (mimeType == null) {
-				try {
-					mimeType = url.openConnection().getContentType();
-				} catch (IOException ignore) {
-					// we do not care about such an exception as the fact that
-					// we are using also the connection for
-					// finding the mime type is just a "nice to have" not an
-					// requirement
-				}
+				mimeType = mimeTypeResolver.getMimeType(mapping);
 			}
 
 			if (mimeType == null) {
@@ -300,13 +402,54 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 				response.setContentType(mimeType);
 			}
 
+			long length = indexed != null ? indexed.getSize() : resource.length();
+			// content of other resources than indexed bundle entries is cached only if it can be revalidated
+			if (contentCache != null && contentCache.accepts(length) && (indexed != null || lastModified > 0)) {
+				byte[] content;
+				try (InputStream in = resource.getInputStream()) {
+					content = IO.readBytes(in);
+				}
+				ResourceContentCache.Entry entry = contentCache.put(httpContext, mapping, encoding,
+						encoding == null ? existingVariants(mapping) : Collections.emptySet(), bundle,
+						indexed != null ? null : url, resourcePath, lastModified, mimeType,
+						contentETags != null ? eTag : null, content);
+				ByteBuffer buffer = entry == null ? ByteBuffer.wrap(content) : entry.getContent();
+				if (!sendRanges(request, response, included, mimeType, lastModified, eTag,
+						buffer.remaining(), new BufferRangeWriter(buffer))) {
+					sendContent(response, buffer);
+				}
+				return;
+			}
+
+			if (extractedResources != null && indexed != null && bundle != null
+					&& extractedResources.accepts(length)) {
+				// file mapped to memory is sent without copying it through heap buffers
+				ByteBuffer content = extractedResources.getContent(bundle, url, lastModified, length);
+				if (content != null) {
+					if (!sendRanges(request, response, included, mimeType, lastModified, eTag,
+							content.remaining(), new BufferRangeWriter(content))) {
+						sendContent(response, content);
+					}
+					return;
+				}
+			}
+
+			if (length > 0) {
+				try (StreamRangeWriter writer = new StreamRangeWriter(resource)) {
+					if (sendRanges(request, response, included, mimeType, lastModified, eTag,
+							length, writer)) {
+						return;
+					}
+				}
+			}
+
 			OutputStream out = response.getOutputStream();
 			if (out != null) { // null should be just in unit testing
 				if (out instanceof HttpOutput) {
 					((HttpOutput) out).sendContent(resource.getInputStream());
 				} else {
 					// Write content normally
-					resource.writeTo(out, 0, resource.length());
+					resource.writeTo(out, 0, length);
 				}
 			}
 			response.setStatus(HttpServletResponse.SC_OK);
@@ -315,6 +458,311 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 		}
 	}
 
+	private static Map<String, String> defaultMimeTypes() {
+		InputStream mappings = MimeTypes.class.getResourceAsStream("mime.properties");
+		if (mappings == null) {
+			return Collections.emptyMap();
+		}
+		try {
+			return MimeTypeResolver.readMappings(mappings);
+		} catch (IOException e) {
+			LOG.warn("Can't read default mime types: {}", e.getMessage());
+			return Collections.emptyMap();
+		}
+	}
+
+	/**
+	 * Returns cached content of the resource or of its precompressed variant. Content, which doesn't come from
+	 * indexed bundle entries, is served only if the context still returns the same, unmodified resource.
+	 */
+	private ResourceContentCache.Entry cached(final String mapping, final String encoding) throws IOException {
+		ResourceContentCache.Entry cached = contentCache.get(httpContext, mapping, encoding);
+		if (cached == null || cached.getSource() == null) {
+			return cached;
+		}
+		boolean valid = false;
+		URL url = httpContext.getResource(cached.getSourcePath());
+		if (url != null && url.toExternalForm().equals(cached.getSource().toExternalForm())) {
+			Resource resource = ResourceEx.newResource(url, true);
+			try {
+				valid = resource.lastModified() == cached.getLastModified()
+						&& resource.length() == cached.getLength();
+			} finally {
+				resource.release();
+			}
+		}
+		if (!valid) {
+			contentCache.remove(httpContext, mapping, encoding, cached);
+			return null;
+		}
+		return cached;
+	}
+
+	/**
+	 * Returns the index of bundle entries, if the resources of http context come directly from the bundle.
+	 */
+	private BundleEntryIndex entryIndex() {
+		if (httpContext instanceof BundleEntryIndex.Provider) {
+			return ((BundleEntryIndex.Provider) httpContext).getBundleEntryIndex();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns precompressed variants of requested resource, which may be sent to the client. Only complete
+	 * files may be sent compressed - ranges are always served from the resource itself.
+	 */
+	private static List<PrecompressedVariant> acceptedVariants(final HttpServletRequest request,
+			final boolean included, final boolean endsWithSlash) {
+		if (included || endsWithSlash || request.getHeader(RANGE) != null) {
+			return Collections.emptyList();
+		}
+		return PrecompressedVariant.accepted(request.getHeader(PrecompressedVariant.ACCEPT_ENCODING));
+	}
+
+	/**
+	 * Returns content encodings of all precompressed variants of a resource.
+	 */
+	private Set<String> existingVariants(final String mapping) {
+		Set<String> encodings = new HashSet<>();
+		for (PrecompressedVariant variant : PrecompressedVariant.values()) {
+			if (httpContext.getResource(variant.getPath(mapping)) != null) {
+				encodings.add(variant.getEncoding());
+			}
+		}
+		return encodings;
+	}
+
+	/**
+	 * Handles conditional headers and sets the ETag, {@code Vary} and {@code Content-Encoding} headers of
+	 * the resource.
+	 *
+	 * @param lastModified last modification time of the resource
+	 * @param eTag         ETag of the resource (or its variant)
+	 * @param encoding     content encoding of precompressed variant being sent, {@code null} if the resource
+	 *                     itself is sent
+	 * @return {@code false} if the response was already completed (not modified or precondition failed)
+	 */
+	private boolean checkConditions(final HttpServletRequest request, final HttpServletResponse response,
+			final long lastModified, final String eTag, final String encoding) throws IOException {
+		// the response depends on Accept-Encoding, even if the resource has no precompressed variants
+		response.setHeader(PrecompressedVariant.VARY, PrecompressedVariant.ACCEPT_ENCODING);
+		// if the request contains an etag and its the same for the
+		// resource, we deliver a NOT MODIFIED response
+		if (ContentETags.matches(request.getHeader(IF_NONE_MATCH), eTag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return false;
+		} else if (request.getHeader(IF_MODIFIED_SINCE) != null) {
+			long ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
+			if (lastModified != -1) {
+				// lastModified/1000 <= ifmsl/1000
+				if (lastModified / SECOND <= ifModifiedSince / SECOND) {
+					response.reset();
+					response.setHeader(PrecompressedVariant.VARY, PrecompressedVariant.ACCEPT_ENCODING);
+					response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					response.flushBuffer();
+					return false;
+				}
+			}
+		} else if (request.getHeader(IF_UNMODIFIED_SINCE) != null) {
+			long modifiedSince = request.getDateHeader(IF_UNMODIFIED_SINCE);
+
+			if (modifiedSince != -1) {
+				if (lastModified / SECOND > modifiedSince / SECOND) {
+					response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
+					return false;
+				}
+			}
+		}
+
+		// set the etag
+		response.setHeader(ETAG, eTag);
+		if (encoding != null) {
+			response.setHeader(PrecompressedVariant.CONTENT_ENCODING, encoding);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the ETag of the resource based on last modification time - each precompressed variant has own
+	 * ETag. Content based ETags of variants differ anyway.
+	 */
+	private static String eTag(final long lastModified, final String encoding) {
+		if (encoding != null) {
+			return "\"" + String.valueOf(lastModified) + "-" + encoding + "\"";
+		}
+		return "\"" + String.valueOf(lastModified) + "\"";
+	}
+
+	/**
+	 * Sends partial content (206) if the request is a GET with satisfiable {@code Range} header and (if
+	 * present) {@code If-Range} matches current version of the resource. Unsatisfiable ranges are answered
+	 * with 416 status.
+	 *
+	 * @param included     whether the resource is included - ranges are ignored then
+	 * @param mimeType     content type of the resource, used for parts of multipart/byteranges response
+	 * @param lastModified last modification time of the resource
+	 * @param eTag         ETag of the resource
+	 * @param length       length of the resource
+	 * @param writer       writer of the ranges of the resource
+	 * @return {@code false} if complete content should be sent instead
+	 */
+	private boolean sendRanges(final HttpServletRequest request, final HttpServletResponse response,
+			final boolean included, final String mimeType, final long lastModified, final String eTag,
+			final long length, final RangeWriter writer) throws IOException {
+		if (included) {
+			return false;
+		}
+		response.setHeader(ACCEPT_RANGES, "bytes");
+		Enumeration<String> rangeHeaders = request.getHeaders(RANGE);
+		if (!"GET".equals(request.getMethod()) || rangeHeaders == null || !rangeHeaders.hasMoreElements()
+				|| !ifRangeMatches(request, lastModified, eTag)) {
+			return false;
+		}
+
+		List<InclusiveByteRange> ranges = InclusiveByteRange.satisfiableRanges(rangeHeaders, length);
+		if (ranges == null || ranges.isEmpty()) {
+			response.setHeader(CONTENT_RANGE, InclusiveByteRange.to416HeaderRangeString(length));
+			response.setContentLength(0);
+			response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			return true;
+		}
+
+		response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		OutputStream out = response.getOutputStream();
+		if (ranges.size() == 1) {
+			InclusiveByteRange range = ranges.get(0);
+			response.setHeader(CONTENT_RANGE, range.toHeaderRangeString(length));
+			response.setContentLengthLong(range.getSize());
+			if (out != null) {
+				writer.write(out, range.getFirst(), range.getSize());
+			}
+			return true;
+		}
+
+		if (out != null) {
+			MultiPartOutputStream multi = new MultiPartOutputStream(out);
+			response.setContentType("multipart/byteranges; boundary=" + multi.getBoundary());
+			for (InclusiveByteRange range : ranges) {
+				multi.startPart(mimeType == null ? "application/octet-stream" : mimeType,
+						new String[] { CONTENT_RANGE + ": " + range.toHeaderRangeString(length) });
+				writer.write(multi, range.getFirst(), range.getSize());
+			}
+			multi.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Checks {@code If-Range} header, which may contain strong ETag or date of last modification.
+	 *
+	 * @return {@code true} if there's no {@code If-Range} header or the resource wasn't changed
+	 */
+	private boolean ifRangeMatches(final HttpServletRequest request, final long lastModified,
+			final String eTag) {
+		String ifRange = request.getHeader(IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return eTag.equals(ifRange);
+		}
+		try {
+			long date = request.getDateHeader(IF_RANGE);
+			return date != -1 && lastModified != -1 && lastModified / SECOND == date / SECOND;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a range of resource content.
+	 */
+	private interface RangeWriter {
+
+		void write(OutputStream out, long first, long size) throws IOException;
+	}
+
+	/**
+	 * Writes ranges of cached content.
+	 */
+	private static class BufferRangeWriter implements RangeWriter {
+
+		private final ByteBuffer content;
+
+		BufferRangeWriter(final ByteBuffer content) {
+			this.content = content;
+		}
+
+		@Override
+		public void write(OutputStream out, long first, long size) throws IOException {
+			ByteBuffer range = content.duplicate();
+			range.position(content.position() + (int) first);
+			range.limit(range.position() + (int) size);
+			BufferUtil.writeTo(range, out);
+		}
+	}
+
+	/**
+	 * Writes ranges of a {@link Resource} skipping over the content preceding the range. Ranges following each
+	 * other are read from single stream, the stream is reopened only if a range starts before previous one.
+	 */
+	private static class StreamRangeWriter implements RangeWriter, Closeable {
+
+		private final Resource resource;
+		private InputStream in;
+		private long position;
+
+		StreamRangeWriter(final Resource resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		public void write(OutputStream out, long first, long size) throws IOException {
+			if (in == null || first < position) {
+				close();
+				in = resource.getInputStream();
+				position = 0L;
+			}
+			while (position < first) {
+				long skipped = in.skip(first - position);
+				if (skipped <= 0) {
+					if (in.read() == -1) {
+						throw new IOException("Unexpected end of " + resource);
+					}
+					skipped = 1;
+				}
+				position += skipped;
+			}
+			IO.copy(in, out, size);
+			position += size;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+				in = null;
+			}
+		}
+	}
+
+	/**
+	 * Sends complete content of a resource.
+	 *
+	 * @param content content to send
+	 */
+	private void sendContent(final HttpServletResponse response, final ByteBuffer content) throws IOException {
+		response.setContentLength(content.remaining());
+		response.setStatus(HttpServletResponse.SC_OK);
+		OutputStream out = response.getOutputStream();
+		if (out instanceof HttpOutput) {
+			((HttpOutput) out).sendContent(content);
+		} else if (out != null) {
+			BufferUtil.writeTo(content, out);
+		}
+	}
+
 	/**
 	 * Finds a matching welcome file for the supplied {@link Resource}. This
 	 * will be the first entry in the list of configured {@link #_welcomes
@@ -325,20 +773,29 @@ class ResourceServlet extends HttpServlet implements ResourceFactory {
 	 * read from the {@link ContextHandler} for this servlet, or
 	 * <code>"index.jsp" , "index.html"</code> if that is <code>null</code>.
 	 *
-	 * @param resource
+	 * Welcome files of bundle entry directories are resolved only once.
+	 *
+	 * @param index         index of bundle entries, {@code null} if resources don't come from bundle entries
+	 * @param pathInContext path of the directory
 	 * @return The path of the matching welcome file in context or null.
 	 * @throws IOException
 	 * @throws MalformedURLException
 	 */
-	private String getWelcomeFile(String pathInContext)
+	private String getWelcomeFile(BundleEntryIndex index, String pathInContext)
 			throws MalformedURLException, IOException {
 		if (welcomes == null) {
 			return null;
 		}
+		return welcomeFileCache.resolve(index, pathInContext, directory -> findWelcomeFile(index, directory));
+	}
 
+	private String findWelcomeFile(BundleEntryIndex index, String pathInContext) throws IOException {
 		for (int i = 0; i < welcomes.length; i++) {
 			String welcomeInContext = URIUtil.addPaths(pathInContext,
 					welcomes[i]);
+			if (index != null && index.getCovered(welcomeInContext) != null) {
+				return welcomes[i];
+			}
 			final URL url = httpContext.getResource(welcomeInContext);
 			final Resource welcome = ResourceEx.newResource(url, true);
 			if (welcome != null && welcome.exists()) {
@@ -50,6 +50,8 @@ import org.ops4j.pax.web.service.spi.model.LoginConfigModel;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,6 +69,9 @@ class ServerControllerImpl implements ServerController {
 	private ServerConnector httpConnector;
 	private ServerConnector httpSecureConnector;
 	private final Comparator<?> priorityComparator;
+	private ResourceContentCache resourceContentCache;
+	private ContentETags contentETags;
+	private ExtractedResourceCache extractedResourceCache;
 
 	ServerControllerImpl(final JettyFactory jettyFactory, Comparator<?> priorityComparator) {
 		this.jettyFactory = jettyFactory;
@@ -95,6 +100,9 @@ class ServerControllerImpl implements ServerController {
 			throw new IllegalArgumentException("configuration == null");
 		}
 		configuration = config;
+		resourceContentCache = createResourceContentCache(config);
+		contentETags = Boolean.TRUE.equals(config.isStrongETags()) ? new ContentETags() : null;
+		extractedResourceCache = ExtractedResourceCache.create(config);
 		state.configure();
 	}
 
@@ -229,7 +237,22 @@ class ServerControllerImpl implements ServerController {
 	public Servlet createResourceServlet(ContextModel contextModel,
 										 String alias, String name) {
 		return new ResourceServlet(contextModel.getHttpContext(),
-				contextModel.getContextName(), alias, name);
+				contextModel.getContextName(), alias, name, resourceContentCache,
+				contentETags, extractedResourceCache, contextModel.getBundle());
+	}
+
+	private static ResourceContentCache createResourceContentCache(Configuration config) {
+		Integer maxEntries = config.getResourceCacheMaxEntries();
+		if (maxEntries == null || maxEntries <= 0) {
+			return null;
+		}
+		Integer maxEntrySize = config.getResourceCacheMaxEntrySize();
+		Integer maxSize = config.getResourceCacheMaxSize();
+		Boolean directBuffers = config.getResourceCacheDirectBuffers();
+		return new ResourceContentCache(maxEntries,
+				maxEntrySize == null ? 0 : maxEntrySize,
+				maxSize == null ? 0L : maxSize,
+				directBuffers != null && directBuffers);
 	}
 
 	void notifyListeners(ServerEvent event) {
@@ -462,6 +485,9 @@ class ServerControllerImpl implements ServerController {
 			jettyServer.setServerConfigURL(configuration.getConfigurationURL());
 			jettyServer.setDefaultAuthMethod(configuration.getDefaultAuthMethod());
 			jettyServer.setDefaultRealmName(configuration.getDefaultRealmName());
+			jettyServer.setResourceContentCache(resourceContentCache);
+			jettyServer.setContentETags(contentETags);
+			jettyServer.setExtractedResourceCache(extractedResourceCache);
 			jettyServer.configureContext(attributes,
 					configuration.getSessionTimeout(),
 					configuration.getSessionCookie(),
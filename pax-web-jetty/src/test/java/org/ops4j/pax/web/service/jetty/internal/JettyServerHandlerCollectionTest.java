@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.model.ServerModel;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.service.http.HttpContext;
+
+/**
+ * Requests have to be dispatched like before the routing snapshot was introduced - to the handler which
+ * {@link JettyServerWrapper#getContext(HttpContext)} returns for the context matched by
+ * {@link ServerModel#matchPathToContext(String, String)} and to all handlers which aren't contexts.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class JettyServerHandlerCollectionTest {
+
+	@Mock
+	private ServerModel serverModel;
+	@Mock
+	private ContextModel contextModel1;
+	@Mock
+	private ContextModel contextModel2;
+	@Mock
+	private WebContainerContext httpContext1;
+	@Mock
+	private WebContainerContext httpContext2;
+	@Mock
+	private Request baseRequest;
+	@Mock
+	private HttpServletRequest request;
+	@Mock
+	private HttpServletResponse response;
+
+	private JettyServerHandlerCollection collection;
+
+	@Before
+	public void setUp() {
+		when(contextModel1.getHttpContext()).thenReturn(httpContext1);
+		when(contextModel2.getHttpContext()).thenReturn(httpContext2);
+		when(request.getServerName()).thenReturn("localhost");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (collection != null) {
+			collection.stop();
+		}
+	}
+
+	@Test
+	public void matchedRequestIsDispatchedToItsContextAndOtherHandlers() throws Exception {
+		HttpServiceContext context1 = context();
+		HttpServiceContext context2 = context();
+		Handler other = mock(Handler.class);
+		collection = collection(context1, context2, other);
+		collection.setContexts(contexts(context1, context2));
+		when(serverModel.matchPathToContext("localhost", "/c2/test")).thenReturn(contextModel2);
+
+		collection.handle("/c2/test", baseRequest, request, response);
+
+		verify(context1, never()).doScope("/c2/test", baseRequest, request, response);
+		verify(context2).doScope("/c2/test", baseRequest, request, response);
+		verify(other).handle("/c2/test", baseRequest, request, response);
+	}
+
+	@Test
+	public void unmatchedRequestIsDispatchedToAllHandlers() throws Exception {
+		HttpServiceContext context1 = context();
+		Handler other = mock(Handler.class);
+		collection = collection(context1, other);
+		collection.setContexts(contexts(context1, null));
+
+		collection.handle("/unknown", baseRequest, request, response);
+
+		verify(context1).doScope("/unknown", baseRequest, request, response);
+		verify(other).handle("/unknown", baseRequest, request, response);
+	}
+
+	@Test
+	public void requestForRemovedContextIsNotFound() throws Exception {
+		HttpServiceContext context1 = context();
+		Handler other = mock(Handler.class);
+		collection = collection(context1, other);
+		collection.setContexts(contexts(context1, null));
+		when(serverModel.matchPathToContext("localhost", "/c1/test")).thenReturn(contextModel1);
+
+		collection.removeHandler(context1);
+		collection.setContexts(contexts(null, null));
+		collection.handle("/c1/test", baseRequest, request, response);
+
+		verify(context1, never()).doScope("/c1/test", baseRequest, request, response);
+		verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+		verify(other, never()).handle("/c1/test", baseRequest, request, response);
+	}
+
+	@Test
+	public void handlersChangedAfterContextsAreDispatched() throws Exception {
+		HttpServiceContext context1 = context();
+		collection = collection(context1);
+		collection.setContexts(contexts(context1, null));
+		when(serverModel.matchPathToContext("localhost", "/c1/test")).thenReturn(contextModel1);
+
+		Handler added = mock(Handler.class);
+		collection.addHandler(added);
+		collection.handle("/c1/test", baseRequest, request, response);
+		verify(added).handle("/c1/test", baseRequest, request, response);
+
+		collection.removeHandler(added);
+		collection.handle("/c1/test", baseRequest, request, response);
+		verify(added, times(1)).handle("/c1/test", baseRequest, request, response);
+		verify(context1, times(2)).doScope("/c1/test", baseRequest, request, response);
+	}
+
+	@Test
+	public void routingFollowsContextLifecycle() throws Exception {
+		Bundle bundle = mock(Bundle.class);
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundle.getHeaders()).thenReturn(new Hashtable<>());
+		when(bundle.getSymbolicName()).thenReturn("test");
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		when(bundleContext.getBundle()).thenReturn(bundle);
+		when(contextModel1.getContextName()).thenReturn("c1");
+		when(contextModel1.getBundle()).thenReturn(bundle);
+		when(serverModel.matchPathToContext("localhost", "/c1/test")).thenReturn(contextModel1);
+
+		JettyServerWrapper server = new JettyServerWrapper(serverModel, new QueuedThreadPool());
+		try {
+			server.start();
+			assertNull(server.getContext(httpContext1));
+
+			HttpServiceContext context = server.getOrCreateContext(contextModel1);
+			assertSame(context, server.getContext(httpContext1));
+			assertTrue(Arrays.asList(server.getRootHandlerCollection().getHandlers()).contains(context));
+
+			context.start();
+			assertSame(context, server.getContext(httpContext1));
+			context.stop();
+			assertSame(context, server.getContext(httpContext1));
+			context.start();
+			assertSame(context, server.getContext(httpContext1));
+
+			server.removeContext(httpContext1, false);
+			assertNull(server.getContext(httpContext1));
+			server.getRootHandlerCollection().handle("/c1/test", baseRequest, request, response);
+			verify(response).setStatus(HttpServletResponse.SC_NOT_FOUND);
+
+			// new handler for the same context
+			HttpServiceContext recreated = server.getOrCreateContext(contextModel1);
+			assertNotNull(recreated);
+			assertSame(recreated, server.getContext(httpContext1));
+		} finally {
+			server.stop();
+		}
+	}
+
+	private JettyServerHandlerCollection collection(Handler... handlers) throws Exception {
+		JettyServerHandlerCollection collection = new JettyServerHandlerCollection(serverModel);
+		collection.setHandlers(handlers);
+		collection.start();
+		return collection;
+	}
+
+	/**
+	 * Mocks started context without child handlers - {@link HttpServiceContext#handle} is final and calls
+	 * {@link HttpServiceContext#doScope}.
+	 */
+	private HttpServiceContext context() {
+		HttpServiceContext context = mock(HttpServiceContext.class);
+		when(context.isStarted()).thenReturn(true);
+		when(context.getChildHandlers()).thenReturn(new Handler[0]);
+		return context;
+	}
+
+	private Map<HttpContext, HttpServiceContext> contexts(HttpServiceContext context1, HttpServiceContext context2) {
+		Map<HttpContext, HttpServiceContext> contexts = new HashMap<>();
+		if (context1 != null) {
+			contexts.put(httpContext1, context1);
+		}
+		if (context2 != null) {
+			contexts.put(httpContext2, context2);
+		}
+		return contexts;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.jetty.internal;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+
+public class ResourceContentCacheTest {
+
+	private final Object context = new Object();
+
+	@Test
+	public void contentIsCached() {
+		ResourceContentCache cache = new ResourceContentCache(4, 16, 64, false);
+		assertNotNull(cache.put(context, "/a.css", null, 1L, "text/css", new byte[] { 1, 2, 3 }));
+
+		ResourceContentCache.Entry entry = cache.get(context, "/a.css");
+		assertNotNull(entry);
+		assertEquals("text/css", entry.getMimeType());
+		assertEquals(1L, entry.getLastModified());
+		ByteBuffer content = entry.getContent();
+		assertEquals(3, content.remaining());
+		content.get();
+		// each request gets own view of the content
+		assertEquals(3, cache.get(context, "/a.css").getContent().remaining());
+
+		assertNull(cache.get(new Object(), "/a.css"));
+		assertNull(cache.get(context, "/b.css"));
+	}
+
+	@Test
+	public void directBuffers() {
+		ResourceContentCache cache = new ResourceContentCache(4, 16, 64, true);
+		cache.put(context, "/a.css", null, 1L, "text/css", new byte[] { 1, 2, 3 });
+		assertTrue(cache.get(context, "/a.css").getContent().isDirect());
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		ResourceContentCache cache = new ResourceContentCache(4, 16, 40, false);
+		assertFalse(cache.accepts(0));
+		assertFalse(cache.accepts(17));
+		assertNull(cache.put(context, "/big", null, 1L, null, new byte[17]));
+
+		for (int i = 0; i < 100; i++) {
+			cache.put(context, "/" + i, null, 1L, null, new byte[10 + i % 7]);
+			assertTrue(cache.getEntryCount() <= 4);
+			assertTrue(cache.getSize() <= 40);
+		}
+	}
+
+	@Test
+	public void entriesOfUpdatedBundleAreNotUsed() {
+		Bundle bundle = createMock(Bundle.class);
+		expect(bundle.getLastModified()).andReturn(1L).times(2);
+		expect(bundle.getLastModified()).andReturn(2L);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		replay(bundle);
+
+		ResourceContentCache cache = new ResourceContentCache(4, 16, 64, false);
+		cache.put(context, "/a.css", bundle, 1L, null, new byte[] { 1 });
+		assertNotNull(cache.get(context, "/a.css"));
+		assertNull(cache.get(context, "/a.css"));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0L, cache.getSize());
+	}
+
+	@Test
+	public void invalidation() {
+		ResourceContentCache cache = new ResourceContentCache(4, 16, 64, false);
+		Object other = new Object();
+		cache.put(context, "/a.css", null, 1L, null, new byte[] { 1 });
+		cache.put(other, "/a.css", null, 1L, null, new byte[] { 1, 2 });
+
+		cache.invalidate(context);
+		assertNull(cache.get(context, "/a.css"));
+		assertNotNull(cache.get(other, "/a.css"));
+		assertEquals(2L, cache.getSize());
+
+		cache.clear();
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0L, cache.getSize());
+	}
+
+}
@@ -17,22 +17,38 @@
 package org.ops4j.pax.web.service.jetty.internal;
 
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
 import org.osgi.service.http.HttpContext;
 
 public class ResourceServletTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private HttpContext httpContext;
 	private HttpServletRequest httpRequest;
 	private HttpServletResponse httpResponse;
@@ -152,4 +168,288 @@ public class ResourceServletTest {
 				"/fudd/fudd/bugs/x.gif", "tmp/y.gif");
 	}
 
+	@Test
+	public void contentIsServedFromCache() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+
+		httpContext = createMock(HttpContext.class);
+		// file isn't a bundle entry, so it's resolved again to check that the cached content is still valid
+		expect(httpContext.getResource("/app.js")).andReturn(file.toURI().toURL()).times(2);
+		expect(httpContext.getResource("/app.js.br")).andReturn(null);
+		expect(httpContext.getResource("/app.js.gz")).andReturn(null);
+		expect(httpContext.getMimeType("/app.js")).andReturn("application/javascript").anyTimes();
+		replay(httpContext);
+
+		ResourceContentCache cache = new ResourceContentCache(16, 1024, 4096, false);
+		ResourceServlet servlet = new ResourceServlet(httpContext, "", "/", "default", cache, null, null);
+
+		assertEquals("alert('hello');", get(servlet, "/app.js"));
+		assertEquals(1, cache.getEntryCount());
+		assertEquals("alert('hello');", get(servlet, "/app.js"));
+		verify(httpContext);
+
+		servlet.destroy();
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	@Test
+	public void modifiedFileIsNotServedFromCache() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+
+		httpContext = createMock(HttpContext.class);
+		expect(httpContext.getResource("/app.js")).andReturn(file.toURI().toURL()).anyTimes();
+		expect(httpContext.getResource("/app.js.br")).andReturn(null).anyTimes();
+		expect(httpContext.getResource("/app.js.gz")).andReturn(null).anyTimes();
+		expect(httpContext.getMimeType("/app.js")).andReturn("application/javascript").anyTimes();
+		replay(httpContext);
+
+		ResourceContentCache cache = new ResourceContentCache(16, 1024, 4096, false);
+		ResourceServlet servlet = new ResourceServlet(httpContext, "", "/", "default", cache, null, null);
+
+		assertEquals("alert('hello');", get(servlet, "/app.js"));
+		Files.write(file.toPath(), "alert('bye');".getBytes(StandardCharsets.UTF_8));
+		assertTrue(file.setLastModified(file.lastModified() + 2000L));
+		assertEquals("alert('bye');", get(servlet, "/app.js"));
+		assertEquals(1, cache.getEntryCount());
+		verify(httpContext);
+	}
+
+	@Test
+	public void singleRange() throws Exception {
+		for (ResourceServlet servlet : rangeServlets()) {
+			assertEquals("ert(", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=2-5");
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes 2-5/15");
+				response.setContentLengthLong(4L);
+			}));
+			assertEquals("');", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=-3");
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				response.setHeader("Content-Range", "bytes 12-14/15");
+			}));
+			assertEquals("hello');", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=7-");
+				response.setHeader("Content-Range", "bytes 7-14/15");
+			}));
+		}
+	}
+
+	@Test
+	public void multipleRanges() throws Exception {
+		for (ResourceServlet servlet : rangeServlets()) {
+			String content = get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=0-1,7-11");
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			});
+			int first = content.indexOf("Content-Range: bytes 0-1/15");
+			int second = content.indexOf("Content-Range: bytes 7-11/15");
+			assertTrue(content, first >= 0 && second > first);
+			assertTrue(content, content.indexOf("Content-Type: application/javascript") > 0);
+			assertTrue(content, content.indexOf("\r\n\r\nal\r\n") > first);
+			assertTrue(content, content.indexOf("\r\n\r\nhello\r\n") > second);
+		}
+	}
+
+	@Test
+	public void unsatisfiableRange() throws Exception {
+		for (ResourceServlet servlet : rangeServlets()) {
+			assertEquals("", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=20-");
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				response.setHeader("Content-Range", "bytes */15");
+			}));
+		}
+	}
+
+	@Test
+	public void ifRange() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		String eTag = "\"" + file.lastModified() + "\"";
+		for (ResourceServlet servlet : rangeServlets(file)) {
+			assertEquals("ert(", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=2-5");
+				expect(request.getHeader("If-Range")).andReturn(eTag).anyTimes();
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			}));
+			// resource changed - whole content is sent
+			assertEquals("alert('hello');", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=2-5");
+				expect(request.getHeader("If-Range")).andReturn("\"0\"").anyTimes();
+				response.setStatus(HttpServletResponse.SC_OK);
+			}));
+			// ranges are only sent for GET
+			assertEquals("alert('hello');", get(servlet, "/app.js", (request, response) -> {
+				expect(request.getMethod()).andReturn("POST").anyTimes();
+				expect(request.getHeaders("Range")).andReturn(Collections.enumeration(
+						Collections.singletonList("bytes=2-5"))).anyTimes();
+			}));
+		}
+	}
+
+	@Test
+	public void precompressedVariants() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		File gz = folder.newFile("app.js.gz");
+		Files.write(gz.toPath(), "gzipped".getBytes(StandardCharsets.UTF_8));
+
+		httpContext = createNiceMock(HttpContext.class);
+		expect(httpContext.getResource("/app.js")).andReturn(file.toURI().toURL()).anyTimes();
+		expect(httpContext.getResource("/app.js.gz")).andReturn(gz.toURI().toURL()).anyTimes();
+		expect(httpContext.getMimeType("/app.js")).andReturn("application/javascript").anyTimes();
+		replay(httpContext);
+
+		ResourceContentCache cache = new ResourceContentCache(16, 1024, 4096, false);
+		ResourceServlet[] servlets = new ResourceServlet[] {
+				new ResourceServlet(httpContext, "", "/", "default"),
+				new ResourceServlet(httpContext, "", "/", "default", cache, null, null)
+		};
+		String eTag = "\"" + file.lastModified() + "\"";
+		String gzETag = "\"" + gz.lastModified() + "-gzip\"";
+		for (ResourceServlet servlet : servlets) {
+			// client not accepting compressed content - resource is cached before its variant
+			assertEquals("alert('hello');", get(servlet, "/app.js", (request, response) -> {
+				response.setHeader("Vary", "Accept-Encoding");
+				response.setHeader("ETag", eTag);
+			}));
+			for (int i = 0; i < 2; i++) {
+				assertEquals("gzipped", get(servlet, "/app.js", (request, response) -> {
+					expect(request.getHeader("Accept-Encoding")).andReturn("br, gzip, deflate").anyTimes();
+					response.setContentType("application/javascript");
+					response.setHeader("Content-Encoding", "gzip");
+					response.setHeader("Vary", "Accept-Encoding");
+					response.setHeader("ETag", gzETag);
+				}));
+			}
+			assertEquals("alert('hello');", get(servlet, "/app.js", (request, response) -> {
+				expect(request.getHeader("Accept-Encoding")).andReturn("gzip;q=0").anyTimes();
+			}));
+			// ranges are served from the resource itself
+			assertEquals("ert(", get(servlet, "/app.js", (request, response) -> {
+				expect(request.getHeader("Accept-Encoding")).andReturn("gzip").anyTimes();
+				expect(request.getHeader("Range")).andReturn("bytes=2-5").anyTimes();
+				range(request, "bytes=2-5");
+			}));
+		}
+		assertEquals(2, cache.getEntryCount());
+	}
+
+	@Test
+	public void contentETags() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		String eTag = ContentETags.getETag("alert('hello');".getBytes(StandardCharsets.UTF_8));
+
+		httpContext = createNiceMock(HttpContext.class);
+		expect(httpContext.getResource("/app.js")).andReturn(file.toURI().toURL()).anyTimes();
+		replay(httpContext);
+
+		ContentETags eTags = new ContentETags();
+		ResourceContentCache cache = new ResourceContentCache(16, 1024, 4096, false);
+		ResourceServlet[] servlets = new ResourceServlet[] {
+				new ResourceServlet(httpContext, "", "/", "default", null, eTags, null),
+				new ResourceServlet(httpContext, "", "/", "default", cache, eTags, null)
+		};
+		for (ResourceServlet servlet : servlets) {
+			assertEquals("alert('hello');", get(servlet, "/app.js", (request, response) -> {
+				response.setHeader("ETag", eTag);
+			}));
+			assertEquals("", get(servlet, "/app.js", (request, response) -> {
+				expect(request.getHeader("If-None-Match")).andReturn(eTag).anyTimes();
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			}));
+			// ranges of the same content are still valid
+			assertEquals("ert(", get(servlet, "/app.js", (request, response) -> {
+				range(request, "bytes=2-5");
+				expect(request.getHeader("If-Range")).andReturn(eTag).anyTimes();
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			}));
+		}
+
+		// redeployment with the same content
+		assertTrue(file.setLastModified(file.lastModified() - 60_000L));
+		assertEquals("", get(servlets[0], "/app.js", (request, response) -> {
+			expect(request.getHeader("If-None-Match")).andReturn(eTag).anyTimes();
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		}));
+	}
+
+	private ResourceServlet[] rangeServlets() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		return rangeServlets(file);
+	}
+
+	/**
+	 * Servlets serving given resource from the bundle (without content cache) and from the content cache.
+	 */
+	private ResourceServlet[] rangeServlets(File file) throws Exception {
+		httpContext = createNiceMock(HttpContext.class);
+		expect(httpContext.getResource("/app.js")).andReturn(file.toURI().toURL()).anyTimes();
+		expect(httpContext.getMimeType("/app.js")).andReturn("application/javascript").anyTimes();
+		replay(httpContext);
+
+		ResourceContentCache cache = new ResourceContentCache(16, 1024, 4096, false);
+		ResourceServlet cachingServlet = new ResourceServlet(httpContext, "", "/", "default", cache, null, null);
+		get(cachingServlet, "/app.js");
+		assertEquals(1, cache.getEntryCount());
+
+		return new ResourceServlet[] {
+				new ResourceServlet(httpContext, "", "/", "default"),
+				cachingServlet
+		};
+	}
+
+	private static void range(HttpServletRequest request, String range) {
+		expect(request.getMethod()).andReturn("GET").anyTimes();
+		expect(request.getHeaders("Range")).andReturn(Collections.enumeration(
+				Collections.singletonList(range))).anyTimes();
+	}
+
+	private String get(ResourceServlet servlet, String uri) throws Exception {
+		return get(servlet, uri, (request, response) -> { });
+	}
+
+	/**
+	 * Sends request to the servlet and returns the content of the response.
+	 *
+	 * @param expectations records expected calls on (nice) request and response mocks
+	 */
+	private String get(ResourceServlet servlet, String uri, Expectations expectations) throws Exception {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		httpRequest = createNiceMock(HttpServletRequest.class);
+		httpResponse = createNiceMock(HttpServletResponse.class);
+		expect(httpRequest.getRequestURI()).andReturn(uri).anyTimes();
+		expectations.record(httpRequest, httpResponse);
+		expect(httpResponse.getOutputStream()).andReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+
+			@Override
+			public void write(int b) {
+				content.write(b);
+			}
+		}).anyTimes();
+		replay(httpRequest, httpResponse);
+
+		servlet.service(httpRequest, httpResponse);
+		verify(httpRequest, httpResponse);
+		return new String(content.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private interface Expectations {
+
+		void record(HttpServletRequest request, HttpServletResponse response) throws Exception;
+	}
+
 }
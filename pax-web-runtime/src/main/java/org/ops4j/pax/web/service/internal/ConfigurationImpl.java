@@ -77,6 +77,14 @@ import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_WORKER_NA
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_MAX_THREADS;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_MIN_THREADS;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_IDLE_TIMEOUT;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_DIRECT_BUFFERS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_ENTRIES;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_RESOURCE_CACHE_MAX_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_ROUTE_CACHE_SIZE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_STRONG_ETAGS;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_EXTRACTED_RESOURCE_CACHE;
+import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_EXTRACTED_RESOURCE_CACHE_MIN_SIZE;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_SSL_RENEGOTIATION_ALLOWED;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_CRL_PATH;
 import static org.ops4j.pax.web.service.WebContainerConstants.PROPERTY_ENABLE_CRLDP;
@@ -877,6 +885,46 @@ public class ConfigurationImpl extends PropertyStore implements Configuration, C
 		return getResolvedIntegerProperty(PROPERTY_IDLE_TIMEOUT);
 	}
 
+	@Override
+	public Integer getRouteCacheSize() {
+		return getResolvedIntegerProperty(PROPERTY_ROUTE_CACHE_SIZE);
+	}
+
+	@Override
+	public Integer getResourceCacheMaxEntries() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_CACHE_MAX_ENTRIES);
+	}
+
+	@Override
+	public Integer getResourceCacheMaxEntrySize() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_CACHE_MAX_ENTRY_SIZE);
+	}
+
+	@Override
+	public Integer getResourceCacheMaxSize() {
+		return getResolvedIntegerProperty(PROPERTY_RESOURCE_CACHE_MAX_SIZE);
+	}
+
+	@Override
+	public Boolean getResourceCacheDirectBuffers() {
+		return getResolvedBooleanProperty(PROPERTY_RESOURCE_CACHE_DIRECT_BUFFERS);
+	}
+
+	@Override
+	public Boolean isStrongETags() {
+		return getResolvedBooleanProperty(PROPERTY_STRONG_ETAGS);
+	}
+
+	@Override
+	public Boolean getExtractedResourceCache() {
+		return getResolvedBooleanProperty(PROPERTY_EXTRACTED_RESOURCE_CACHE);
+	}
+
+	@Override
+	public Integer getExtractedResourceCacheMinSize() {
+		return getResolvedIntegerProperty(PROPERTY_EXTRACTED_RESOURCE_CACHE_MIN_SIZE);
+	}
+
     @Override
     public String getCrlPath() {
         return getResolvedStringProperty(PROPERTY_CRL_PATH);
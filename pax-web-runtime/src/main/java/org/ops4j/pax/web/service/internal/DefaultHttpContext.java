@@ -27,6 +27,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
 import org.ops4j.pax.web.service.spi.util.Path;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
@@ -40,7 +41,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Alin Dreghiciu (adreghiciu@gmail.com)
  */
-class DefaultHttpContext implements WebContainerContext {
+class DefaultHttpContext implements WebContainerContext, BundleEntryIndex.Provider {
 
 	/**
 	 * Logger.
@@ -55,6 +56,11 @@ class DefaultHttpContext implements WebContainerContext {
 
 	protected final String contextID;
 
+	/**
+	 * Index of bundle entries, built when the first resource is looked up.
+	 */
+	private volatile BundleEntryIndex entryIndex;
+
 	/**
 	 * Constructor.
 	 *
@@ -76,17 +82,42 @@ class DefaultHttpContext implements WebContainerContext {
 		return true;
 	}
 
+	@Override
+	public boolean hasTrivialSecurity() {
+		return true;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public URL getResource(final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
+		if (normalizedname != null) {
+			BundleEntryIndex index = getBundleEntryIndex();
+			if (index.get(normalizedname) == null && index.covers(normalizedname)) {
+				LOG.debug("Resource [{}] is not an entry of bundle [{}]", normalizedname, bundle);
+				return null;
+			}
+		}
 		LOG.debug("Searching bundle [" + bundle + "] for resource ["
 				+ normalizedname + "]");
 		return bundle.getResource(normalizedname);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BundleEntryIndex getBundleEntryIndex() {
+		BundleEntryIndex index = entryIndex;
+		if (index == null || !index.isCurrent()) {
+			index = BundleEntryIndex.build(bundle);
+			entryIndex = index;
+		}
+		return index;
+	}
+
 	/**
 	 * Allways returns null as there is no default way to find out the mime
 	 * type. {@inheritDoc}
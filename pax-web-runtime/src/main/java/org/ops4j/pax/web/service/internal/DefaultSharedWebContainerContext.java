@@ -18,21 +18,36 @@ package org.ops4j.pax.web.service.internal;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.ops4j.pax.web.service.SharedWebContainerContext;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
 import org.ops4j.pax.web.service.spi.util.Path;
 import org.osgi.framework.Bundle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Http context shared by many bundles. Resources are searched in the bundles in the order of registration.
+ * Entries of the bundles are indexed, so the bundle owning a resource is found with one lookup. Other bundles
+ * are asked only if their entries don't tell whether they have the resource (see
+ * {@link BundleEntryIndex#covers(String)}). The index is built again after a bundle is (de)registered or when
+ * a bundle, which is asked for a resource, turns out to be updated.
+ */
 public class DefaultSharedWebContainerContext implements
 		SharedWebContainerContext {
 	private static final Logger LOG = LoggerFactory
@@ -41,18 +56,33 @@ public class DefaultSharedWebContainerContext implements
 	private Queue<Bundle> bundles = new ConcurrentLinkedQueue<>();
 	private String contextId = DefaultContextIds.SHARED.getValue();
 
+	// indexes of registered bundles, reused when the resource index is built again
+	private final Map<Bundle, BundleEntryIndex> entryIndexes = new ConcurrentHashMap<>();
+	// built when first resource is looked up after registration, deregistration or update of a bundle
+	private volatile ResourceIndex resourceIndex;
+
 	@Override
 	public boolean registerBundle(Bundle bundle) {
-		if (!bundles.contains(bundle)) {
-			bundles.add(bundle);
-			return true;
+		synchronized (bundles) {
+			if (!bundles.contains(bundle)) {
+				bundles.add(bundle);
+				resourceIndex = null;
+				return true;
+			}
+			return false;
 		}
-		return false;
 	}
 
 	@Override
 	public boolean deregisterBundle(Bundle bundle) {
-		return bundles.remove(bundle);
+		synchronized (bundles) {
+			entryIndexes.remove(bundle);
+			if (bundles.remove(bundle)) {
+				resourceIndex = null;
+				return true;
+			}
+			return false;
+		}
 	}
 
 	@Override
@@ -78,6 +108,22 @@ public class DefaultSharedWebContainerContext implements
 
 	@Override
 	public URL getResource(String path) {
+		final String normalizedname = Path.normalizeResourcePath(path);
+		if (normalizedname != null && !"/".equals(normalizedname)) {
+			for (int attempt = 0; attempt < 2; attempt++) {
+				ResourceIndex index = getResourceIndex();
+				URL pathUrl = index.getResource(normalizedname);
+				if (!index.stale) {
+					return pathUrl;
+				}
+				// one of the bundles was updated
+				synchronized (bundles) {
+					if (resourceIndex == index) {
+						resourceIndex = null;
+					}
+				}
+			}
+		}
 		for (Bundle bundle : bundles) {
 			URL pathUrl = getResource(bundle, path);
 			if (pathUrl != null) {
@@ -87,7 +133,31 @@ public class DefaultSharedWebContainerContext implements
 		return null;
 	}
 
-	private URL getResource(Bundle bundle, final String name) {
+	private ResourceIndex getResourceIndex() {
+		ResourceIndex index = resourceIndex;
+		if (index == null) {
+			synchronized (bundles) {
+				index = resourceIndex;
+				if (index == null) {
+					Bundle[] registered = bundles.toArray(new Bundle[0]);
+					BundleEntryIndex[] indexes = new BundleEntryIndex[registered.length];
+					for (int i = 0; i < registered.length; i++) {
+						BundleEntryIndex entryIndex = entryIndexes.get(registered[i]);
+						if (entryIndex == null || !entryIndex.isCurrent()) {
+							entryIndex = BundleEntryIndex.build(registered[i]);
+							entryIndexes.put(registered[i], entryIndex);
+						}
+						indexes[i] = entryIndex;
+					}
+					index = new ResourceIndex(registered, indexes);
+					resourceIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	private static URL getResource(Bundle bundle, final String name) {
 		final String normalizedname = Path.normalizeResourcePath(name);
 		LOG.debug("Searching bundle [" + bundle + "] for resource ["
 				+ normalizedname + "]");
@@ -116,4 +186,153 @@ public class DefaultSharedWebContainerContext implements
 		return true;
 	}
 
+	@Override
+	public boolean hasTrivialSecurity() {
+		return true;
+	}
+
+	/**
+	 * Entries of all registered bundles, mapped to the first bundle (in order of registration) which certainly
+	 * returns such entry, together with bundles which may find resources elsewhere than in their entries.
+	 */
+	private static final class ResourceIndex {
+
+		private static final int[] NONE = new int[0];
+
+		private final Bundle[] bundles;
+		private final BundleEntryIndex[] indexes;
+		// entry path (without leading and trailing slash) -> position of first bundle covering the entry
+		private final Map<String, Integer> owners = new HashMap<>();
+		// positions of bundles, which may find a resource of any path outside of their entries
+		private final int[] incomplete;
+		// package in path form -> positions of other bundles, which find its resources outside of their entries
+		private final Map<String, int[]> delegatingPackages = new HashMap<>();
+		// the same for prefixes of boot delegated packages
+		private final String[] prefixes;
+		private final int[][] delegatingPrefixes;
+		// set when an index of some bundle is found to be out of date
+		private volatile boolean stale;
+
+		private ResourceIndex(Bundle[] bundles, BundleEntryIndex[] indexes) {
+			this.bundles = bundles;
+			this.indexes = indexes;
+			List<Integer> incompleteBundles = new ArrayList<>();
+			Map<String, List<Integer>> packages = new HashMap<>();
+			Map<String, List<Integer>> packagePrefixes = new LinkedHashMap<>();
+			for (int i = 0; i < indexes.length; i++) {
+				if (!indexes[i].isComplete()) {
+					incompleteBundles.add(i);
+				} else {
+					for (String pkg : indexes[i].getDelegatedPackages()) {
+						packages.computeIfAbsent(pkg, p -> new ArrayList<>()).add(i);
+					}
+					for (String prefix : indexes[i].getDelegatedPackagePrefixes()) {
+						packagePrefixes.computeIfAbsent(prefix, p -> new ArrayList<>()).add(i);
+					}
+				}
+				for (String path : indexes[i].getPaths()) {
+					if (!path.isEmpty() && indexes[i].covers(path)) {
+						owners.putIfAbsent(path, i);
+					}
+				}
+			}
+			incomplete = toArray(incompleteBundles);
+			packages.forEach((pkg, positions) -> delegatingPackages.put(pkg, toArray(positions)));
+			prefixes = packagePrefixes.keySet().toArray(new String[0]);
+			delegatingPrefixes = new int[prefixes.length][];
+			for (int i = 0; i < prefixes.length; i++) {
+				delegatingPrefixes[i] = toArray(packagePrefixes.get(prefixes[i]));
+			}
+		}
+
+		private URL getResource(String normalizedname) {
+			int end = normalizedname.length();
+			while (end > 0 && normalizedname.charAt(end - 1) == '/') {
+				end--;
+			}
+			String key = normalizedname.substring(0, end);
+			Integer owner = owners.get(key);
+			int limit = owner == null ? bundles.length : owner;
+			// bundles registered before the owner may have the resource in imported packages or Bundle-ClassPath
+			for (int i : shadowing(key)) {
+				if (i >= limit) {
+					break;
+				}
+				URL pathUrl = getResource(i, normalizedname);
+				if (pathUrl != null || stale) {
+					return pathUrl;
+				}
+			}
+			return owner == null ? null : getResource(owner, normalizedname);
+		}
+
+		/**
+		 * Only the bundles which are asked for the resource are checked for update.
+		 */
+		private URL getResource(int position, String normalizedname) {
+			if (!indexes[position].isCurrent()) {
+				stale = true;
+				return null;
+			}
+			LOG.debug("Searching bundle [{}] for resource [{}]", bundles[position], normalizedname);
+			return bundles[position].getResource(normalizedname);
+		}
+
+		/**
+		 * Returns ascending positions of the bundles, which don't cover given path.
+		 */
+		private int[] shadowing(String key) {
+			int[] positions = incomplete;
+			int slash = key.lastIndexOf('/');
+			if (slash > 0) {
+				// resources of default package can't come from elsewhere
+				int[] delegating = delegatingPackages.get(key.substring(0, slash));
+				if (delegating != null) {
+					positions = merge(positions, delegating);
+				}
+				for (int i = 0; i < prefixes.length; i++) {
+					if (key.startsWith(prefixes[i])) {
+						positions = merge(positions, delegatingPrefixes[i]);
+					}
+				}
+			}
+			return positions;
+		}
+
+		private static int[] merge(int[] a, int[] b) {
+			if (a.length == 0) {
+				return b;
+			}
+			if (b.length == 0) {
+				return a;
+			}
+			int[] merged = new int[a.length + b.length];
+			int i = 0;
+			int j = 0;
+			int n = 0;
+			while (i < a.length || j < b.length) {
+				int next = j == b.length || i < a.length && a[i] <= b[j] ? a[i] : b[j];
+				while (i < a.length && a[i] == next) {
+					i++;
+				}
+				while (j < b.length && b[j] == next) {
+					j++;
+				}
+				merged[n++] = next;
+			}
+			return n == merged.length ? merged : Arrays.copyOf(merged, n);
+		}
+
+		private static int[] toArray(List<Integer> positions) {
+			if (positions.isEmpty()) {
+				return NONE;
+			}
+			int[] array = new int[positions.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = positions.get(i);
+			}
+			return array;
+		}
+	}
+
 }
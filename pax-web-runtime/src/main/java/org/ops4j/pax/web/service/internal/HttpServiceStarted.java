@@ -35,13 +35,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -49,9 +42,7 @@ import javax.servlet.Filter;
 import javax.servlet.MultipartConfigElement;
 import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
-import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
-import javax.websocket.DeploymentException;
 
 import org.ops4j.lang.NullArgumentException;
 import org.ops4j.pax.web.jsp.JspServletWrapper;
@@ -1344,57 +1335,7 @@ class HttpServiceStarted implements StoppableHttpService {
 		boolean controllerSuccess = false;
 		boolean serviceSuccess = false;
 		try {
-			contextModel.addContainerInitializer(new ServletContainerInitializer() {
-
-				private Integer maxTry = 20;
-
-				@Override
-				public void onStartup(Set<Class<?>> c, ServletContext ctx) throws ServletException {
-					Callable<Boolean> task = () -> registerWebSocket(ctx, 1);
-
-					ExecutorService executor = Executors.newSingleThreadExecutor();
-					Future<Boolean> future = executor.submit(task);
-
-					try {
-						Boolean success = future.get(maxTry * 500 + 2000, TimeUnit.MILLISECONDS);
-						if (success) {
-							LOG.info("registered WebSocket");
-						} else {
-							LOG.error("Failed to create WebSocket, obviosly the endpoint couldn't be registered");
-						}
-					} catch (InterruptedException | ExecutionException | TimeoutException e) {
-						LOG.error("Failed to wait for registering of WebSocket", e);
-					}
-
-				}
-
-				private boolean registerWebSocket(ServletContext ctx, int registerTry) {
-					if (registerTry == maxTry) {
-						LOG.error("Tried to Register Websocket for {} times, will stop now", registerTry);
-						return false;
-					}
-					javax.websocket.server.ServerContainer serverContainer = (javax.websocket.server.ServerContainer) ctx.getAttribute(javax.websocket.server.ServerContainer.class.getName());
-					if (serverContainer != null) {
-						try {
-							serverContainer.addEndpoint(webSocket.getClass());
-							return true;
-						} catch (DeploymentException e) {
-							LOG.error("Failed to register WebSocket", e);
-							return false;
-						}
-					} else {
-						try {
-							LOG.debug("couldn't find ServerContainer, will try again in 500ms");
-							LOG.debug("this is the {} try", registerTry);
-							Thread.sleep(500);
-							return registerWebSocket(ctx, registerTry + 1);
-						} catch (InterruptedException e) {
-							LOG.error("Failed to register WebSocket due to: ", e);
-							return false;
-						}
-					}
-				}
-			}, null);
+			contextModel.addContainerInitializer(new WebSocketContainerInitializer(webSocket), null);
 			controllerSuccess = true;
 
 			serviceModel.addWebSocketModel(model);
@@ -17,6 +17,7 @@
 package org.ops4j.pax.web.service.internal;
 
 import org.ops4j.lang.NullArgumentException;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
 
@@ -46,6 +47,11 @@ class WebContainerContextWrapper extends DefaultHttpContext {
         return httpContext.handleSecurity(request, response);
     }
 
+    @Override
+    public boolean hasTrivialSecurity() {
+        return false;
+    }
+
     @Override
     public URL getResource(String name) {
         return httpContext.getResource(name);
@@ -56,6 +62,14 @@ class WebContainerContextWrapper extends DefaultHttpContext {
         return httpContext.getMimeType(name);
     }
 
+    /**
+     * Resources come from the custom {@link HttpContext}, not (necessarily) from the bundle.
+     */
+    @Override
+    public BundleEntryIndex getBundleEntryIndex() {
+        return null;
+    }
+
     @Override
     public String toString() {
         return "DefaultHttpContext [bundle=" + bundle + ", contextID="
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextAttributeEvent;
+import javax.servlet.ServletContextAttributeListener;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerContainer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ServletContainerInitializer} registering a WebSocket endpoint as soon as the container's
+ * {@link ServerContainer} is available in the {@link ServletContext}.
+ *
+ * Jetty, Tomcat and Undertow publish the {@link ServerContainer} as context attribute - either before this
+ * initializer runs, while other initializers run (noticed as attribute event) or at the latest when the context
+ * is initialized.
+ */
+class WebSocketContainerInitializer implements ServletContainerInitializer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WebSocketContainerInitializer.class);
+
+	private static final String SERVER_CONTAINER_ATTRIBUTE = ServerContainer.class.getName();
+
+	private final Object webSocket;
+
+	WebSocketContainerInitializer(final Object webSocket) {
+		this.webSocket = webSocket;
+	}
+
+	@Override
+	public void onStartup(Set<Class<?>> c, ServletContext ctx) {
+		EndpointRegistration registration = new EndpointRegistration();
+		if (!registration.register(ctx.getAttribute(SERVER_CONTAINER_ATTRIBUTE))) {
+			LOG.debug("ServerContainer not available yet, WebSocket {} will be registered when it is", webSocket);
+			ctx.addListener(registration);
+		}
+	}
+
+	/**
+	 * Registration of the endpoint for single start of a context.
+	 */
+	private class EndpointRegistration implements ServletContextListener, ServletContextAttributeListener {
+
+		private final AtomicBoolean registered = new AtomicBoolean();
+
+		/**
+		 * Registers the endpoint if the container is available.
+		 *
+		 * @param serverContainer value of {@link ServerContainer} context attribute
+		 * @return {@code false} if there's no container yet
+		 */
+		private boolean register(Object serverContainer) {
+			if (!(serverContainer instanceof ServerContainer)) {
+				return false;
+			}
+			if (registered.compareAndSet(false, true)) {
+				try {
+					((ServerContainer) serverContainer).addEndpoint(webSocket.getClass());
+					LOG.info("registered WebSocket {}", webSocket.getClass().getName());
+				} catch (DeploymentException e) {
+					LOG.error("Failed to register WebSocket", e);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void attributeAdded(ServletContextAttributeEvent event) {
+			if (SERVER_CONTAINER_ATTRIBUTE.equals(event.getName())) {
+				register(event.getValue());
+			}
+		}
+
+		@Override
+		public void attributeReplaced(ServletContextAttributeEvent event) {
+			if (SERVER_CONTAINER_ATTRIBUTE.equals(event.getName())) {
+				register(event.getServletContext().getAttribute(SERVER_CONTAINER_ATTRIBUTE));
+			}
+		}
+
+		@Override
+		public void attributeRemoved(ServletContextAttributeEvent event) {
+		}
+
+		@Override
+		public void contextInitialized(ServletContextEvent sce) {
+			if (!register(sce.getServletContext().getAttribute(SERVER_CONTAINER_ATTRIBUTE))) {
+				LOG.error("No ServerContainer available for {}, WebSocket {} can't be registered",
+						sce.getServletContext().getContextPath(), webSocket.getClass().getName());
+			}
+		}
+
+		@Override
+		public void contextDestroyed(ServletContextEvent sce) {
+		}
+	}
+
+}
@@ -21,15 +21,25 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
 
 public class DefaultHttpContextTest {
 
@@ -57,10 +67,52 @@ public class DefaultHttpContextTest {
 	@Test
 	public void getResource() throws MalformedURLException {
 		URL url = new URL("file://");
+		// not resolved bundle - there's no index of its entries
+		expect(bundle.getLastModified()).andReturn(1L).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(null);
+		expect(bundle.getState()).andReturn(Bundle.INSTALLED).anyTimes();
 		expect(bundle.getResource("test")).andReturn(url);
 		replay(bundle);
 		contextUnderTest.getResource("test");
 		verify(bundle);
 	}
 
+	@Test
+	public void missingEntriesAreNotLookedUp() throws MalformedURLException {
+		URL url = new URL("file:/www/app.js");
+		BundleWiring wiring = resolved("org.example");
+		expect(bundle.findEntries("/", null, true)).andReturn(Collections.enumeration(Arrays.asList(
+				new URL("file:/www/"), url, new URL("file:/org/example/")))).once();
+		expect(bundle.getResource("www/app.js")).andReturn(url);
+		expect(bundle.getResource("org/example/x.txt")).andReturn(new URL("file:/exporter/org/example/x.txt"));
+		replay(bundle, wiring);
+
+		assertEquals(url, contextUnderTest.getResource("/www/app.js"));
+		assertNull(contextUnderTest.getResource("/www/missing.js"));
+		assertNull(contextUnderTest.getResource("/missing.js"));
+		// resources of imported packages come from the exporter
+		assertNotNull(contextUnderTest.getResource("/org/example/x.txt"));
+		assertTrue(contextUnderTest.getBundleEntryIndex().get("/www").isDirectory());
+		verify(bundle, wiring);
+	}
+
+	private BundleWiring resolved(String importedPackage) {
+		BundleWiring wiring = createMock(BundleWiring.class);
+		BundleWire wire = createMock(BundleWire.class);
+		BundleCapability capability = createMock(BundleCapability.class);
+		expect(bundle.getLastModified()).andReturn(1L).anyTimes();
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getHeaders("")).andReturn(new Hashtable<>()).anyTimes();
+		expect(bundle.getBundleContext()).andReturn(null).anyTimes();
+		expect(wiring.getRequiredWires(BundleNamespace.BUNDLE_NAMESPACE)).andReturn(Collections.emptyList());
+		expect(wiring.getRequiredWires(PackageNamespace.PACKAGE_NAMESPACE))
+				.andReturn(Collections.singletonList(wire));
+		expect(wire.getCapability()).andReturn(capability);
+		expect(capability.getAttributes()).andReturn(
+				Collections.singletonMap(PackageNamespace.PACKAGE_NAMESPACE, importedPackage));
+		replay(wire, capability);
+		return wiring;
+	}
+
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class DefaultSharedWebContainerContextTest {
+
+	@Test
+	public void resourceIsLookedUpOnlyInOwningBundle() throws MalformedURLException {
+		URL a = new URL("file:/www/a.js");
+		URL b = new URL("file:/www/b.js");
+		Bundle first = bundle(a);
+		Bundle second = bundle(b);
+		expect(second.getResource("www/b.js")).andReturn(b).times(2);
+		replay(first, second);
+
+		DefaultSharedWebContainerContext context = new DefaultSharedWebContainerContext();
+		assertTrue(context.registerBundle(first));
+		assertTrue(context.registerBundle(second));
+
+		assertEquals(b, context.getResource("/www/b.js"));
+		assertEquals(b, context.getResource("www//b.js"));
+		assertNull(context.getResource("/www/missing.js"));
+
+		assertTrue(context.deregisterBundle(second));
+		assertNull(context.getResource("/www/b.js"));
+
+		verify(first, second);
+	}
+
+	@Test
+	public void onlyOwnerAndBundlesNotCoveringResourceAreAsked() throws MalformedURLException {
+		URL a = new URL("file:/www/a.js");
+		URL b = new URL("file:/www/b.js");
+		// neither asked for the resource nor checked for update
+		Bundle before = bundle(a, null, false);
+		// may find resources of imported package in other bundle
+		Bundle importing = bundle(new URL("file:/index.html"), "www", true);
+		expect(importing.getResource("www/b.js")).andReturn(null);
+		Bundle owner = bundle(b, null, true);
+		expect(owner.getResource("www/b.js")).andReturn(b);
+		Bundle after = bundle(b, null, false);
+		replay(before, importing, owner, after);
+
+		DefaultSharedWebContainerContext context = new DefaultSharedWebContainerContext();
+		assertTrue(context.registerBundle(before));
+		assertTrue(context.registerBundle(importing));
+		assertTrue(context.registerBundle(owner));
+		assertTrue(context.registerBundle(after));
+
+		assertEquals(b, context.getResource("/www/b.js"));
+		// no bundle has such entry and all of them cover the default package
+		assertNull(context.getResource("/missing.js"));
+
+		verify(before, importing, owner, after);
+	}
+
+	private Bundle bundle(URL entry) {
+		return bundle(entry, null, true);
+	}
+
+	/**
+	 * Mocks a resolved bundle with single entry.
+	 *
+	 * @param importedPackage package (in path form) imported by the bundle, may be {@code null}
+	 * @param checked         whether the bundle may be checked for update - otherwise its state and last
+	 *                        modification time are read only when it's indexed
+	 */
+	private Bundle bundle(URL entry, String importedPackage, boolean checked) {
+		Bundle bundle = createMock(Bundle.class);
+		BundleWiring wiring = createMock(BundleWiring.class);
+		if (checked) {
+			expect(bundle.getLastModified()).andReturn(1L).anyTimes();
+			expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		} else {
+			expect(bundle.getLastModified()).andReturn(1L).once();
+			expect(bundle.getState()).andReturn(Bundle.ACTIVE).once();
+		}
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getHeaders("")).andReturn(new Hashtable<>()).anyTimes();
+		expect(bundle.getBundleContext()).andReturn(null).anyTimes();
+		expect(bundle.findEntries("/", null, true)).andReturn(Collections.enumeration(Collections.singletonList(entry)));
+		if (importedPackage != null) {
+			BundleWire wire = createMock(BundleWire.class);
+			BundleCapability capability = createMock(BundleCapability.class);
+			expect(wire.getCapability()).andReturn(capability).anyTimes();
+			expect(capability.getAttributes()).andReturn(Collections.<String, Object>singletonMap(
+					PackageNamespace.PACKAGE_NAMESPACE, importedPackage.replace('/', '.'))).anyTimes();
+			expect(wiring.getRequiredWires(PackageNamespace.PACKAGE_NAMESPACE))
+					.andReturn(Collections.singletonList(wire)).anyTimes();
+			replay(wire, capability);
+		}
+		expect(wiring.getRequiredWires((String) anyObject())).andReturn(Collections.<BundleWire>emptyList()).anyTimes();
+		replay(wiring);
+		return bundle;
+	}
+
+}
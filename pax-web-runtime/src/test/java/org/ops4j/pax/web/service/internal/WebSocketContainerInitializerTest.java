@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.EventListener;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextAttributeEvent;
+import javax.servlet.ServletContextAttributeListener;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.websocket.server.ServerContainer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class WebSocketContainerInitializerTest {
+
+	private final Map<String, Object> attributes = new HashMap<>();
+	private final List<EventListener> listeners = new ArrayList<>();
+	private final List<Class<?>> endpoints = new ArrayList<>();
+
+	private ServletContext servletContext;
+	private ServerContainer serverContainer;
+
+	@Before
+	public void setUp() {
+		servletContext = (ServletContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ServletContext.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+						case "getAttribute":
+							return attributes.get(args[0]);
+						case "addListener":
+							listeners.add((EventListener) args[0]);
+							return null;
+						case "getContextPath":
+							return "";
+						default:
+							throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		serverContainer = (ServerContainer) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { ServerContainer.class }, (proxy, method, args) -> {
+					if ("addEndpoint".equals(method.getName()) && args[0] instanceof Class) {
+						endpoints.add((Class<?>) args[0]);
+						return null;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	@Test
+	public void registerWhenContainerIsAlreadyAvailable() {
+		attributes.put(ServerContainer.class.getName(), serverContainer);
+		new WebSocketContainerInitializer(new Object()).onStartup(null, servletContext);
+
+		assertEquals(1, endpoints.size());
+		assertTrue(listeners.isEmpty());
+	}
+
+	@Test
+	public void registerWhenContainerAttributeIsAdded() {
+		new WebSocketContainerInitializer(new Object()).onStartup(null, servletContext);
+		assertTrue(endpoints.isEmpty());
+
+		attributes.put(ServerContainer.class.getName(), serverContainer);
+		ServletContextAttributeEvent event = new ServletContextAttributeEvent(servletContext,
+				ServerContainer.class.getName(), serverContainer);
+		for (EventListener listener : listeners) {
+			((ServletContextAttributeListener) listener).attributeAdded(event);
+		}
+		contextInitialized();
+		assertEquals(1, endpoints.size());
+	}
+
+	/**
+	 * Endpoints are registered without waiting for the container - starting a context with many endpoints
+	 * takes (roughly) as long as starting it with a single one.
+	 */
+	@Test
+	public void startupLatencyDoesNotGrowWithEndpointCount() {
+		long single = startContext(1);
+		long many = startContext(200);
+
+		assertEquals(201, endpoints.size());
+		// previously, each endpoint waited at least 500ms for the container
+		assertTrue("Starting context with 1 endpoint took " + TimeUnit.NANOSECONDS.toMillis(single) + "ms",
+				single < TimeUnit.MILLISECONDS.toNanos(500));
+		assertTrue("Starting context with 200 endpoints took " + TimeUnit.NANOSECONDS.toMillis(many) + "ms",
+				many < TimeUnit.MILLISECONDS.toNanos(500));
+	}
+
+	private long startContext(int endpointCount) {
+		attributes.clear();
+		listeners.clear();
+		long start = System.nanoTime();
+		for (int i = 0; i < endpointCount; i++) {
+			new WebSocketContainerInitializer(new Object()).onStartup(null, servletContext);
+		}
+		// the container's own initializer runs after ours
+		attributes.put(ServerContainer.class.getName(), serverContainer);
+		contextInitialized();
+		return System.nanoTime() - start;
+	}
+
+	private void contextInitialized() {
+		ServletContextEvent event = new ServletContextEvent(servletContext);
+		for (EventListener listener : listeners) {
+			((ServletContextListener) listener).contextInitialized(event);
+		}
+	}
+
+}
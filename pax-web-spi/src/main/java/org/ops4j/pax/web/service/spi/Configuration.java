@@ -224,6 +224,66 @@ public interface Configuration {
 
 	Integer getServerIdleTimeout();
 
+	/**
+	 * Returns the maximum number of request paths, for which the server caches the
+	 * matched context. {@code 0} disables the cache.
+	 *
+	 * @return route cache size, null if not configured
+	 */
+	Integer getRouteCacheSize();
+
+	/**
+	 * Returns the maximum number of static resources, which content is kept in memory by resource servlets.
+	 * {@code 0} disables the cache.
+	 *
+	 * @return resource cache entry count, null if not configured
+	 */
+	Integer getResourceCacheMaxEntries();
+
+	/**
+	 * Returns the size (in bytes) of the largest static resource, which content may be cached.
+	 *
+	 * @return max size of single cached resource, null if not configured
+	 */
+	Integer getResourceCacheMaxEntrySize();
+
+	/**
+	 * Returns the total size (in bytes) of static resources cached in memory.
+	 *
+	 * @return max size of the resource cache, null if not configured
+	 */
+	Integer getResourceCacheMaxSize();
+
+	/**
+	 * Whether cached resource content is kept in direct {@link java.nio.ByteBuffer buffers}.
+	 *
+	 * @return true if direct buffers should be used, null if not configured
+	 */
+	Boolean getResourceCacheDirectBuffers();
+
+	/**
+	 * Whether ETags of static resources are computed from digest of their content instead of last
+	 * modification time.
+	 *
+	 * @return true if content digests should be used, null if not configured
+	 */
+	Boolean isStrongETags();
+
+	/**
+	 * Whether large static resources of bundles are extracted to temporary directory, so they can be sent
+	 * by the server without copying them through user space buffers.
+	 *
+	 * @return true if the resources should be extracted, null if not configured
+	 */
+	Boolean getExtractedResourceCache();
+
+	/**
+	 * Returns the size (in bytes) of the smallest static resource, which is extracted to temporary directory.
+	 *
+	 * @return min size of extracted resource, null if not configured
+	 */
+	Integer getExtractedResourceCacheMinSize();
+
 	String getTrustStore();
 
 	String getTrustStorePassword();
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable character trie keyed by full url patterns. Lookup keys are never
+ * materialized: a key is described as a region of the request path followed by
+ * a constant infix and (optionally) by another region of the request path. This
+ * covers every key probed by the servlet mapping rules, so request matching does
+ * not allocate.
+ *
+ * @param <T> type of the mapped values
+ */
+final class PathTrie<T> {
+
+	private final Node<T> root;
+
+	private final int size;
+
+	PathTrie(final Map<String, T> entries) {
+		Builder<T> builder = new Builder<>();
+		for (Map.Entry<String, T> entry : entries.entrySet()) {
+			Builder<T> current = builder;
+			String key = entry.getKey();
+			for (int i = 0; i < key.length(); i++) {
+				current = current.children.computeIfAbsent(key.charAt(i), c -> new Builder<>());
+			}
+			current.value = entry.getValue();
+		}
+		this.root = builder.build();
+		this.size = entries.size();
+	}
+
+	/**
+	 * Returns the value mapped to {@code path[0, end) + infix}.
+	 */
+	T get(final String path, final int end, final String infix) {
+		return get(path, end, infix, 0, 0);
+	}
+
+	/**
+	 * Returns the value mapped to {@code path[0, end) + infix + path[from, to)}.
+	 */
+	T get(final String path, final int end, final String infix, final int from, final int to) {
+		Node<T> node = root;
+		for (int i = 0; i < end && node != null; i++) {
+			node = node.child(path.charAt(i));
+		}
+		for (int i = 0; i < infix.length() && node != null; i++) {
+			node = node.child(infix.charAt(i));
+		}
+		for (int i = from; i < to && node != null; i++) {
+			node = node.child(path.charAt(i));
+		}
+		return node == null ? null : node.value;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private static final class Node<T> {
+
+		private final char[] keys;
+		private final Node<T>[] children;
+		private final T value;
+
+		private Node(final char[] keys, final Node<T>[] children, final T value) {
+			this.keys = keys;
+			this.children = children;
+			this.value = value;
+		}
+
+		private Node<T> child(final char c) {
+			if (keys.length == 1) {
+				return keys[0] == c ? children[0] : null;
+			}
+			int idx = Arrays.binarySearch(keys, c);
+			return idx < 0 ? null : children[idx];
+		}
+	}
+
+	private static final class Builder<T> {
+
+		private final TreeMap<Character, Builder<T>> children = new TreeMap<>();
+		private T value;
+
+		@SuppressWarnings("unchecked")
+		private Node<T> build() {
+			char[] keys = new char[children.size()];
+			Node<T>[] nodes = new Node[children.size()];
+			int i = 0;
+			for (Map.Entry<Character, Builder<T>> entry : children.entrySet()) {
+				keys[i] = entry.getKey();
+				nodes[i++] = entry.getValue().build();
+			}
+			return new Node<>(keys, nodes, value);
+		}
+	}
+
+}
@@ -17,17 +17,16 @@
 package org.ops4j.pax.web.service.spi.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Pattern;
 
 import javax.servlet.Servlet;
 import javax.servlet.ServletContainerInitializer;
@@ -109,6 +108,13 @@ public class ServerModel {
 
     private final Map<String,List<Bundle>> bundlesByVirtualHost;
 
+	/**
+	 * Immutable snapshot of the servlet and filter url patterns used to route
+	 * requests. Rebuilt under the servlet write lock on every registration
+	 * change, so request-time lookups never take a lock.
+	 */
+	private volatile RoutingTable routingTable = RoutingTable.EMPTY;
+
 	/**
 	 * Constructor.
 	 */
@@ -133,14 +139,6 @@ public class ServerModel {
         return virtualHosts;
     }
 
-    private String resolveVirtualHost(String hostName) {
-        if (bundlesByVirtualHost.containsKey(hostName)) {
-            return hostName;
-        } else {
-            return DEFAULT_VIRTUAL_HOST;
-        }
-    }
-
     private List<String> resolveVirtualHosts(Bundle bundle) {
         List<String> virtualHosts = new ArrayList<>();
         for (Map.Entry<String, List<Bundle>> entry : bundlesByVirtualHost.entrySet()) {
@@ -175,6 +173,46 @@ public class ServerModel {
         }
     }
 
+	/**
+	 * Compiles the current servlet and filter url patterns and virtual hosts
+	 * into a new {@link RoutingTable} and publishes it for request-time lookups.
+	 * Must not be called while holding the filter lock, as the servlet lock is
+	 * always taken first.
+	 */
+	private void publishRoutingTable() {
+		servletLock.writeLock().lock();
+		try {
+			Map<String, PathTrie<UrlPattern>> compiledServlets = new HashMap<>();
+			for (Map.Entry<String, Map<String, UrlPattern>> entry : servletUrlPatterns.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					compiledServlets.put(entry.getKey(), new PathTrie<>(entry.getValue()));
+				}
+			}
+			Map<String, PathTrie<UrlPattern>> compiledFilters = new HashMap<>();
+			filterLock.readLock().lock();
+			try {
+				for (Map.Entry<String, ConcurrentMap<String, Set<UrlPattern>>> entry : filterUrlPatterns.entrySet()) {
+					// any pattern registered for the path selects the context
+					Map<String, UrlPattern> patterns = new HashMap<>();
+					for (Map.Entry<String, Set<UrlPattern>> pattern : entry.getValue().entrySet()) {
+						if (!pattern.getValue().isEmpty()) {
+							patterns.put(pattern.getKey(), pattern.getValue().iterator().next());
+						}
+					}
+					if (!patterns.isEmpty()) {
+						compiledFilters.put(entry.getKey(), new PathTrie<>(patterns));
+					}
+				}
+			} finally {
+				filterLock.readLock().unlock();
+			}
+			routingTable = new RoutingTable(new HashSet<>(bundlesByVirtualHost.keySet()), compiledServlets,
+					compiledFilters);
+		} finally {
+			servletLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Registers a servlet model.
 	 *
@@ -215,6 +253,7 @@ public class ServerModel {
                 }
             }
 		} finally {
+			publishRoutingTable();
 			servletLock.writeLock().unlock();
 		}
 	}
@@ -242,6 +281,7 @@ public class ServerModel {
                 }
             }
 		} finally {
+			publishRoutingTable();
 			servletLock.writeLock().unlock();
 		}
 	}
@@ -283,6 +323,7 @@ public class ServerModel {
                                 }
 			} finally {
 				filterLock.writeLock().unlock();
+				publishRoutingTable();
 			}
 		}
 	}
@@ -321,6 +362,7 @@ public class ServerModel {
 				}
 			} finally {
 				filterLock.writeLock().unlock();
+				publishRoutingTable();
 			}
 		}
 	}
@@ -416,24 +458,20 @@ public class ServerModel {
 		if (debug) {
 			LOG.debug("Matching [" + path + "]...");
 		}
-        String virtualHost = resolveVirtualHost(hostName);
+		final RoutingTable routes = routingTable;
+		String virtualHost = routes.resolveVirtualHost(hostName);
 		UrlPattern urlPattern = null;
 		// first match servlets
-		servletLock.readLock().lock();
-		try {
-		    Optional<Map<String, UrlPattern>> optionalServletUrlPatterns = Optional.ofNullable(servletUrlPatterns.get(virtualHost));
-		    if (optionalServletUrlPatterns.isPresent()) {
-			    urlPattern = matchPathToContext(optionalServletUrlPatterns.get(), path);
-		    }
-		} finally {
-			servletLock.readLock().unlock();
+		PathTrie<UrlPattern> servletPatterns = routes.servletUrlPatterns.get(virtualHost);
+		if (servletPatterns != null) {
+			urlPattern = matchPathToContext(servletPatterns, path);
 		}
 		// then if there is no matched servlet look for filters
 		if (urlPattern == null) {
-		    Optional<ConcurrentMap<String, Set<UrlPattern>>> optionalFilterUrlPattern = Optional.ofNullable(filterUrlPatterns.get(virtualHost));
-		    if (optionalFilterUrlPattern.isPresent()) {
-			    urlPattern = matchFilterPathToContext(filterUrlPatterns.get(virtualHost), path);
-		    }
+			PathTrie<UrlPattern> filterPatterns = routes.filterUrlPatterns.get(virtualHost);
+			if (filterPatterns != null) {
+				urlPattern = matchPathToContext(filterPatterns, path);
+			}
 		}
 		ContextModel matched = null;
 		if (urlPattern != null) {
@@ -449,92 +487,78 @@ public class ServerModel {
 		return matched;
 	}
 
-	private static UrlPattern matchFilterPathToContext(final Map<String, Set<UrlPattern>> urlPatternsMap, final String path) {
-		Set<String> keySet = urlPatternsMap.keySet();
-		for (String key : keySet) {
-			Set<UrlPattern> patternsMap = urlPatternsMap.get(key);
-
-			for (UrlPattern urlPattern : patternsMap) {
-				Map<String, UrlPattern> tempMap = new HashMap<>();
-				tempMap.put(key, urlPattern);
-				UrlPattern pattern = matchPathToContext(tempMap, path);
-				if (pattern != null) {
-					return pattern;
-				}
-			}
-		}
-		return null;
-	}
-
-	private static UrlPattern matchPathToContext(final Map<String, UrlPattern> urlPatternsMap, final String path) {
-		UrlPattern matched = null;
-		String servletPath = path;
+	/**
+	 * Matches a request path against a compiled set of url patterns: longest
+	 * path first, then extensions and finally the default servlet. The path is
+	 * walked by index instead of building intermediate strings.
+	 * <p>
+	 * The sequence of probed patterns only depends on the path, so for filters
+	 * (where any matching pattern is good enough) the first hit is also the
+	 * most specific of all matching patterns.
+	 *
+	 * @param patterns compiled url patterns
+	 * @param path     request path
+	 * @param <T>      type of mapped values
+	 * @return matched value or {@code null}
+	 */
+	static <T> T matchPathToContext(final PathTrie<T> patterns, final String path) {
+		T matched = null;
+		// the current servlet path is path[0, end)
+		int end = path.length();
 
-		while ((matched == null) && (!"".equals(servletPath))) {
+		while (matched == null && end != 0) {
 			// Match the asterisks first that comes just after the current
 			// servlet path, so that it satisfies the longest path req
-			if (servletPath.endsWith("/")) {
-				matched = urlPatternsMap.get(servletPath + "*");
-			} else {
-				matched = urlPatternsMap.get(servletPath + "/*");
-			}
+			matched = patterns.get(path, end, path.charAt(end - 1) == '/' ? "*" : "/*");
 
 			// try to match the exact resource if the above fails
 			if (matched == null) {
-				matched = urlPatternsMap.get(servletPath);
+				matched = patterns.get(path, end, "");
 			}
 
 			// now try to match the url backwards one directory at a time
 			if (matched == null) {
-				String lastPathSegment = servletPath.substring(servletPath.lastIndexOf("/") + 1);
-				servletPath = servletPath.substring(0, servletPath.lastIndexOf("/"));
-				// case 1: the servlet path is /
-				if (("".equals(servletPath)) && ("".equals(lastPathSegment))) {
+				int slash = path.lastIndexOf('/', end - 1);
+				if (slash < 0) {
+					// relative path - there is no parent directory to go to
 					break;
-				} else if ("".equals(lastPathSegment)) {
+				}
+				// last path segment is path[segmentStart, segmentEnd)
+				int segmentStart = slash + 1;
+				int segmentEnd = end;
+				end = slash;
+				if (end == 0 && segmentStart == segmentEnd) {
+					// case 1: the servlet path is /
+					break;
+				} else if (segmentStart == segmentEnd) {
 					// case 2 the servlet path ends with /
-					matched = urlPatternsMap.get(servletPath + "/*");
+					matched = patterns.get(path, end, "/*");
 					continue;
-				} else if (lastPathSegment.contains(".")) {
-					// case 3 the last path segment has a extension that needs
-					// to be
-					// matched
-					String extension = lastPathSegment.substring(lastPathSegment.lastIndexOf("."));
-					if (extension.length() > 1) {
-						// case 3.5 refer to second bulleted point of heading
-						// Specification of Mappings
-						// in servlet specification
-						// PATCH - do not go global too early. Next 3 lines
-						// modified.
-						// matched = urlPatternsMap.get("*" + extension);
-						if (matched == null) {
-							matched = urlPatternsMap.get(("".equals(servletPath) ? "*" : servletPath + "/*")
-									+ extension);
-						}
+				}
+				int dot = path.lastIndexOf('.', segmentEnd - 1);
+				if (dot >= segmentStart) {
+					// case 3 the last path segment has an extension that needs
+					// to be matched (second bulleted point of "Specification of
+					// Mappings" in servlet specification)
+					if (segmentEnd - dot > 1) {
+						matched = end == 0 ? patterns.get(path, 0, "*", dot, segmentEnd)
+								: patterns.get(path, end, "/*", dot, segmentEnd);
 					}
 				} else {
 					// case 4 search for the wild cards at the end of servlet
-					// path
-					// of the next iteration
-					if (servletPath.endsWith("/")) {
-						matched = urlPatternsMap.get(servletPath + "*");
-					} else {
-						matched = urlPatternsMap.get(servletPath + "/*");
-					}
+					// path of the next iteration
+					matched = patterns.get(path, end, end > 0 && path.charAt(end - 1) == '/' ? "*" : "/*");
 				}
 
 				// case 5 if all the above fails look for the actual mapping
 				if (matched == null) {
-					matched = urlPatternsMap.get(servletPath);
+					matched = patterns.get(path, end, "");
 				}
 
-				// case 6 the servlet path has / followed by context name, this
-				// case is
-				// selected at the end of the directory, when none of the them
-				// matches.
-				// So we try to match to root.
-				if ((matched == null) && ("".equals(servletPath)) && (!"".equals(lastPathSegment))) {
-					matched = urlPatternsMap.get("/");
+				// case 6 the servlet path has / followed by context name, so
+				// we try to match to root.
+				if (matched == null && end == 0) {
+					matched = patterns.get(path, 0, "/");
 				}
 			}
 		}
@@ -562,24 +586,44 @@ public class ServerModel {
 		return fullPath;
 	}
 
+	/**
+	 * Immutable routing snapshot: known virtual hosts and the compiled servlet
+	 * and filter url patterns of each of them.
+	 */
+	private static final class RoutingTable {
+
+		private static final RoutingTable EMPTY = new RoutingTable(Collections.emptySet(), Collections.emptyMap(),
+				Collections.emptyMap());
+
+		private final Set<String> virtualHosts;
+		private final Map<String, PathTrie<UrlPattern>> servletUrlPatterns;
+		private final Map<String, PathTrie<UrlPattern>> filterUrlPatterns;
+
+		private RoutingTable(final Set<String> virtualHosts,
+							 final Map<String, PathTrie<UrlPattern>> servletUrlPatterns,
+							 final Map<String, PathTrie<UrlPattern>> filterUrlPatterns) {
+			this.virtualHosts = virtualHosts;
+			this.servletUrlPatterns = servletUrlPatterns;
+			this.filterUrlPatterns = filterUrlPatterns;
+		}
+
+		private String resolveVirtualHost(final String hostName) {
+			return virtualHosts.contains(hostName) ? hostName : DEFAULT_VIRTUAL_HOST;
+		}
+	}
+
 	/**
 	 * Touple of full url pattern and registered model (servlet/filter) for the
 	 * model.
 	 */
 	private static class UrlPattern {
 
-		private final Pattern pattern;
+		private final String pattern;
 		private final Model model;
 
 		UrlPattern(final String pattern, final Model model) {
 			this.model = model;
-			String patternToUse = pattern;
-			if (!patternToUse.contains("*")) {
-				patternToUse = patternToUse + (pattern.endsWith("/") ? "*" : "/*");
-			}
-			patternToUse = patternToUse.replace(".", "\\.");
-			patternToUse = patternToUse.replace("*", ".*");
-			this.pattern = Pattern.compile(patternToUse);
+			this.pattern = pattern;
 		}
 
 		Model getModel() {
@@ -588,7 +632,7 @@ public class ServerModel {
 
 		@Override
 		public String toString() {
-			return new StringBuilder().append("{").append("pattern=").append(pattern.pattern()).append(",model=")
+			return new StringBuilder().append("{").append("pattern=").append(pattern).append(",model=")
 					.append(model).append("}").toString();
 		}
 	}
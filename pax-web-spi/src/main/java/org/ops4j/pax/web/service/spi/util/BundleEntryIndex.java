@@ -0,0 +1,349 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.namespace.BundleNamespace;
+import org.osgi.framework.namespace.PackageNamespace;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * <p>Immutable index of entries of a bundle (and its attached fragments), built once with
+ * {@link Bundle#findEntries(String, String, boolean)}. Resource servlets use it to tell whether a resource
+ * exists and whether it's a directory without opening any URL. Size and last modification time of an entry
+ * are read (once) only when needed.</p>
+ *
+ * <p>{@link Bundle#getResource(String)} also finds resources of imported packages, required bundles,
+ * {@code Bundle-ClassPath} jars and boot delegated packages, which are not in the index. Absence of an entry
+ * is meaningful only if {@link #covers(String)} returns {@code true} for its path.</p>
+ */
+public final class BundleEntryIndex {
+
+	/**
+	 * Implemented by http contexts, which serve resources directly from bundle entries.
+	 */
+	public interface Provider {
+
+		/**
+		 * @return index of the entries of the bundle, {@code null} if the resources don't come from bundle
+		 * entries
+		 */
+		BundleEntryIndex getBundleEntryIndex();
+	}
+
+	private final Bundle bundle;
+	private final long bundleLastModified;
+	private final Map<String, Entry> entries;
+	// whether there are no other sources of resources than bundle entries and imported packages
+	private final boolean complete;
+	// imported packages and boot delegated packages in path form ("org/example")
+	private final Set<String> delegatedPackages;
+	private final List<String> delegatedPackagePrefixes;
+
+	private BundleEntryIndex(Bundle bundle, long bundleLastModified, Map<String, Entry> entries, boolean complete,
+							 Set<String> delegatedPackages, List<String> delegatedPackagePrefixes) {
+		this.bundle = bundle;
+		this.bundleLastModified = bundleLastModified;
+		this.entries = entries;
+		this.complete = complete;
+		this.delegatedPackages = delegatedPackages;
+		this.delegatedPackagePrefixes = delegatedPackagePrefixes;
+	}
+
+	/**
+	 * Builds the index of given bundle. If the bundle isn't resolved, the index is empty and doesn't
+	 * {@link #covers(String) cover} any path.
+	 *
+	 * @param bundle bundle to index
+	 * @return new index
+	 */
+	public static BundleEntryIndex build(Bundle bundle) {
+		long lastModified = bundle.getLastModified();
+		BundleWiring wiring = bundle.adapt(BundleWiring.class);
+		if (wiring == null || bundle.getState() == Bundle.UNINSTALLED) {
+			return new BundleEntryIndex(bundle, lastModified, Collections.emptyMap(), false,
+					Collections.emptySet(), Collections.emptyList());
+		}
+
+		Map<String, Entry> entries = new HashMap<>();
+		entries.put("", new Entry(null, true));
+		Enumeration<URL> urls = bundle.findEntries("/", null, true);
+		while (urls != null && urls.hasMoreElements()) {
+			URL url = urls.nextElement();
+			String path = url.getPath();
+			boolean directory = path.endsWith("/");
+			String key = key(path);
+			entries.put(key, new Entry(url, directory));
+			// not every archive has entries for directories
+			for (int slash = key.lastIndexOf('/'); slash > 0; slash = key.lastIndexOf('/', slash - 1)) {
+				if (entries.putIfAbsent(key.substring(0, slash), new Entry(null, true)) != null) {
+					break;
+				}
+			}
+		}
+
+		boolean complete = !hasBundleClassPath(bundle)
+				&& bundle.getHeaders("").get(Constants.DYNAMICIMPORT_PACKAGE) == null
+				&& wiring.getRequiredWires(BundleNamespace.BUNDLE_NAMESPACE).isEmpty();
+
+		Set<String> packages = new HashSet<>();
+		packages.add("java");
+		List<String> prefixes = new ArrayList<>();
+		prefixes.add("java/");
+		for (BundleWire wire : wiring.getRequiredWires(PackageNamespace.PACKAGE_NAMESPACE)) {
+			Object name = wire.getCapability().getAttributes().get(PackageNamespace.PACKAGE_NAMESPACE);
+			if (name != null) {
+				packages.add(name.toString().replace('.', '/'));
+			}
+		}
+		BundleContext context = bundle.getBundleContext();
+		String bootDelegation = context == null ? null : context.getProperty(Constants.FRAMEWORK_BOOTDELEGATION);
+		if (bootDelegation != null) {
+			for (String pkg : bootDelegation.split(",")) {
+				String name = pkg.trim().replace('.', '/');
+				if ("*".equals(name)) {
+					complete = false;
+				} else if (name.endsWith("/*")) {
+					prefixes.add(name.substring(0, name.length() - 1));
+				} else if (!name.isEmpty()) {
+					packages.add(name);
+				}
+			}
+		}
+
+		return new BundleEntryIndex(bundle, lastModified, Collections.unmodifiableMap(entries), complete,
+				packages, prefixes);
+	}
+
+	/**
+	 * Checks whether the index still describes the bundle - it's neither updated nor uninstalled.
+	 *
+	 * @return {@code false} if the index should be built again
+	 */
+	public boolean isCurrent() {
+		return bundle.getState() != Bundle.UNINSTALLED && bundle.getLastModified() == bundleLastModified;
+	}
+
+	/**
+	 * Returns entry (file or directory) with given path.
+	 *
+	 * @param path path of the resource, with or without leading and trailing slash
+	 * @return the entry or {@code null} if there's no such entry in the bundle
+	 */
+	public Entry get(String path) {
+		return entries.get(key(path));
+	}
+
+	/**
+	 * Returns entry with given path only if it's the resource {@link Bundle#getResource(String)} would find,
+	 * so its metadata may be used instead of checking the resource URL.
+	 *
+	 * @param path path of the resource, with or without leading and trailing slash
+	 * @return the entry or {@code null} if there's no such entry or other sources of resources may shadow it
+	 */
+	public Entry getCovered(String path) {
+		return covers(path) ? get(path) : null;
+	}
+
+	/**
+	 * Checks whether the entries of the bundle are the only place, where {@link Bundle#getResource(String)}
+	 * could find given resource.
+	 *
+	 * @param path path of the resource
+	 * @return {@code true} if the resource doesn't exist if it's not in the index
+	 */
+	public boolean covers(String path) {
+		if (!complete) {
+			return false;
+		}
+		String key = key(path);
+		int slash = key.lastIndexOf('/');
+		if (slash < 0) {
+			// resources of default package can't come from elsewhere
+			return true;
+		}
+		String pkg = key.substring(0, slash);
+		if (delegatedPackages.contains(pkg)) {
+			return false;
+		}
+		for (String prefix : delegatedPackagePrefixes) {
+			if (key.startsWith(prefix)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return {@code false} if the bundle may find resources of any path outside of its entries (it has
+	 * {@code Bundle-ClassPath}, {@code DynamicImport-Package} or required bundles), so it covers no path
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * @return imported and boot delegated packages in path form ({@code "org/example"}), which resources are
+	 * not covered
+	 */
+	public Set<String> getDelegatedPackages() {
+		return Collections.unmodifiableSet(delegatedPackages);
+	}
+
+	/**
+	 * @return prefixes of boot delegated packages in path form ({@code "org/example/"}), which resources are
+	 * not covered
+	 */
+	public List<String> getDelegatedPackagePrefixes() {
+		return Collections.unmodifiableList(delegatedPackagePrefixes);
+	}
+
+	/**
+	 * @return paths (without leading and trailing slashes) of all entries, including implicit directories and
+	 * the root directory ({@code ""})
+	 */
+	public Set<String> getPaths() {
+		return entries.keySet();
+	}
+
+	/**
+	 * @return number of entries (including implicit directories)
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private static boolean hasBundleClassPath(Bundle bundle) {
+		Object classPath = bundle.getHeaders("").get(Constants.BUNDLE_CLASSPATH);
+		if (classPath == null) {
+			return false;
+		}
+		for (String element : classPath.toString().split(",")) {
+			String path = element.trim();
+			if (!path.isEmpty() && !".".equals(path) && !"/".equals(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Entry path without leading and trailing slashes.
+	 */
+	private static String key(String path) {
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) == '/') {
+			start++;
+		}
+		while (end > start && path.charAt(end - 1) == '/') {
+			end--;
+		}
+		String key = path.substring(start, end);
+		return Path.replaceSlashes(key);
+	}
+
+	/**
+	 * Metadata of single bundle entry.
+	 */
+	public static final class Entry {
+
+		private static final long UNKNOWN = Long.MIN_VALUE;
+
+		private final URL url;
+		private final boolean directory;
+		private volatile long size = UNKNOWN;
+		private volatile long lastModified = UNKNOWN;
+
+		private Entry(URL url, boolean directory) {
+			this.url = url;
+			this.directory = directory;
+		}
+
+		/**
+		 * @return URL of the entry, {@code null} for directories without own entry in the bundle archive
+		 */
+		public URL getUrl() {
+			return url;
+		}
+
+		public boolean isDirectory() {
+			return directory;
+		}
+
+		/**
+		 * @return size of the entry, {@code -1} if unknown
+		 */
+		public long getSize() {
+			if (size == UNKNOWN) {
+				readMetadata();
+			}
+			return size;
+		}
+
+		/**
+		 * @return last modification time of the entry, {@code 0} if unknown
+		 */
+		public long getLastModified() {
+			if (lastModified == UNKNOWN) {
+				readMetadata();
+			}
+			return lastModified;
+		}
+
+		/**
+		 * Guesses the content type of the entry from its name, without reading the entry.
+		 *
+		 * @return content type or {@code null}
+		 */
+		public String getMimeType() {
+			return directory || url == null ? null : URLConnection.guessContentTypeFromName(url.getPath());
+		}
+
+		private void readMetadata() {
+			long entrySize = -1L;
+			long entryLastModified = 0L;
+			if (url != null && !directory) {
+				try {
+					URLConnection connection = url.openConnection();
+					entrySize = connection.getContentLengthLong();
+					entryLastModified = connection.getLastModified();
+					connection.getInputStream().close();
+				} catch (IOException ignored) {
+					// the metadata stays unknown
+				}
+			}
+			lastModified = entryLastModified;
+			size = entrySize;
+		}
+	}
+
+}
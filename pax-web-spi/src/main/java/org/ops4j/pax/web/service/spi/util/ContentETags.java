@@ -0,0 +1,161 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Strong ETags of static resources computed from SHA-256 digest of their content.</p>
+ *
+ * <p>Last modification time of bundle entries is the time of bundle installation or update, so ETags based on
+ * it change for all resources of a bundle after each update, even if the content is the same. Digest based
+ * ETags survive such updates, so clients may still revalidate with {@code 304 Not Modified}.</p>
+ *
+ * <p>The digest is computed once for given URL (bundle entry URLs contain bundle id) and last modification
+ * time - it's read again only after the resource (bundle) is changed.</p>
+ */
+public class ContentETags {
+
+	public static final int DEFAULT_MAX_ENTRIES = 8192;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final int maxEntries;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	public ContentETags() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries maximal number of remembered ETags
+	 */
+	public ContentETags(int maxEntries) {
+		this.maxEntries = Math.max(maxEntries, 1);
+	}
+
+	/**
+	 * Returns strong ETag of a resource, computing it if the resource wasn't seen yet or has changed.
+	 *
+	 * @param url          URL of the resource
+	 * @param lastModified last modification time of the resource
+	 * @return quoted ETag
+	 * @throws IOException if the resource can't be read
+	 */
+	public String getETag(URL url, long lastModified) throws IOException {
+		String key = url.toExternalForm();
+		Entry entry = entries.get(key);
+		if (entry != null && entry.lastModified == lastModified) {
+			return entry.eTag;
+		}
+		MessageDigest digest = newDigest();
+		try (InputStream in = url.openStream()) {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		String eTag = toETag(digest.digest());
+		if (entries.size() >= maxEntries) {
+			// no need for anything smarter - recomputing the digest is cheap compared to serving the content
+			Iterator<String> it = entries.keySet().iterator();
+			while (it.hasNext() && entries.size() >= maxEntries) {
+				it.next();
+				it.remove();
+			}
+		}
+		entries.put(key, new Entry(lastModified, eTag));
+		return eTag;
+	}
+
+	/**
+	 * Returns strong ETag of given content.
+	 *
+	 * @param content content of a resource
+	 * @return quoted ETag
+	 */
+	public static String getETag(byte[] content) {
+		return toETag(newDigest().digest(content));
+	}
+
+	/**
+	 * Checks {@code If-None-Match} header using weak comparison (RFC 7232, section 3.2).
+	 *
+	 * @param ifNoneMatch value of {@code If-None-Match} header, may be {@code null}
+	 * @param eTag        quoted ETag of the resource
+	 * @return {@code true} if the header matches the ETag - {@code 304 Not Modified} should be sent
+	 */
+	public static boolean matches(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null || eTag == null) {
+			return false;
+		}
+		if (ifNoneMatch.equals(eTag)) {
+			return true;
+		}
+		String opaque = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+		for (String candidate : ifNoneMatch.split(",")) {
+			String tag = candidate.trim();
+			if ("*".equals(tag)) {
+				return true;
+			}
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(opaque)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toETag(byte[] digest) {
+		return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + "\"";
+	}
+
+	private static final class Entry {
+
+		private final long lastModified;
+		private final String eTag;
+
+		private Entry(long lastModified, String eTag) {
+			this.lastModified = lastModified;
+			this.eTag = eTag;
+		}
+	}
+
+}
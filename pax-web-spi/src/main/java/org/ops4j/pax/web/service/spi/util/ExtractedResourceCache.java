@@ -0,0 +1,239 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ops4j.pax.web.service.spi.Configuration;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>On-disk copies of large bundle entries. Content of {@code bundleentry:} URLs can only be streamed through
+ * user space buffers - once the entry is extracted to a file, containers may send it with their zero-copy
+ * mechanisms (memory mapped buffers, sendfile, {@link java.nio.channels.FileChannel#transferTo}).</p>
+ *
+ * <p>Entries are extracted when they're served for the first time, to
+ * {@code <directory>/<bundle id>/<bundle last modification time>/<entry path>}. Extracted files of previous
+ * revision of a bundle are removed when the updated bundle serves its first resource.</p>
+ *
+ * <p>Each extracted file is mapped to memory at most once, requests share the mapping through
+ * {@link ByteBuffer#duplicate() duplicates}.</p>
+ */
+public class ExtractedResourceCache {
+
+	public static final int DEFAULT_MIN_SIZE = 65536;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExtractedResourceCache.class);
+
+	private final File directory;
+	private final long minSize;
+	// bundle id -> revision (last modification time) which has extracted files
+	private final Map<Long, Long> revisions = new ConcurrentHashMap<>();
+	// extracted file -> its content mapped to memory
+	private final Map<Path, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+	/**
+	 * @param directory directory for extracted files
+	 * @param minSize   size (in bytes) of the smallest entry, which is extracted
+	 */
+	public ExtractedResourceCache(File directory, long minSize) {
+		this.directory = directory;
+		this.minSize = Math.max(minSize, 1L);
+	}
+
+	/**
+	 * Creates the cache in temporary directory of the server if it's enabled. Files extracted by previous
+	 * instance are removed.
+	 *
+	 * @param config configuration of the server
+	 * @return new cache or {@code null} if resources should not be extracted
+	 */
+	public static ExtractedResourceCache create(Configuration config) {
+		if (!Boolean.TRUE.equals(config.getExtractedResourceCache()) || config.getTemporaryDirectory() == null) {
+			return null;
+		}
+		Integer minSize = config.getExtractedResourceCacheMinSize();
+		ExtractedResourceCache cache = new ExtractedResourceCache(
+				new File(config.getTemporaryDirectory(), "extracted-resources"),
+				minSize == null ? DEFAULT_MIN_SIZE : minSize);
+		cache.clear();
+		return cache;
+	}
+
+	/**
+	 * Checks whether an entry of given size should be served from extracted file. Small entries are better
+	 * kept in memory.
+	 *
+	 * @param size size of the entry
+	 * @return {@code true} if the entry is big enough
+	 */
+	public boolean accepts(long size) {
+		return size >= minSize;
+	}
+
+	/**
+	 * Returns file with content of a bundle entry, extracting the entry if it wasn't extracted yet.
+	 *
+	 * @param bundle       bundle containing the entry
+	 * @param url          URL of the entry
+	 * @param lastModified last modification time of the entry, set on the extracted file
+	 * @param size         size of the entry
+	 * @return the file or {@code null} if the entry can't be extracted
+	 */
+	public File getFile(Bundle bundle, URL url, long lastModified, long size) {
+		long revision = bundle.getLastModified();
+		Path revisionDirectory = directory.toPath().resolve(Long.toString(bundle.getBundleId()))
+				.resolve(Long.toString(revision));
+		Path file = revisionDirectory.resolve(url.getPath().replaceFirst("^/+", "")).normalize();
+		if (!file.startsWith(revisionDirectory) || file.equals(revisionDirectory)) {
+			return null;
+		}
+		Long previous = revisions.put(bundle.getBundleId(), revision);
+		if (previous == null || previous != revision) {
+			removeOtherRevisions(revisionDirectory);
+		}
+
+		File extracted = file.toFile();
+		if (extracted.length() == size) {
+			return extracted;
+		}
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			try {
+				try (InputStream in = url.openStream()) {
+					Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+				}
+				if (lastModified > 0L) {
+					Files.setLastModifiedTime(tmp, FileTime.fromMillis(lastModified));
+				}
+				try {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			LOG.warn("Can't extract {} to {}: {}", url, file, e.getMessage());
+			return null;
+		}
+		return extracted.length() == size ? extracted : null;
+	}
+
+	/**
+	 * Returns content of a bundle entry mapped to memory, extracting the entry if it wasn't extracted yet.
+	 *
+	 * @param bundle       bundle containing the entry
+	 * @param url          URL of the entry
+	 * @param lastModified last modification time of the entry, set on the extracted file
+	 * @param size         size of the entry
+	 * @return new read-only buffer with the content or {@code null} if the entry can't be extracted
+	 * @see #getFile(Bundle, URL, long, long)
+	 */
+	public ByteBuffer getContent(Bundle bundle, URL url, long lastModified, long size) {
+		File file = getFile(bundle, url, lastModified, size);
+		if (file == null) {
+			return null;
+		}
+		Path path = file.toPath();
+		MappedByteBuffer mapped = mappings.get(path);
+		if (mapped == null || mapped.capacity() != size) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			} catch (IOException e) {
+				LOG.warn("Can't map {} to memory: {}", path, e.getMessage());
+				return null;
+			}
+			if (mapped.capacity() != size) {
+				return null;
+			}
+			mappings.put(path, mapped);
+		}
+		return mapped.duplicate();
+	}
+
+	/**
+	 * @return number of extracted files mapped to memory
+	 */
+	int getMappingCount() {
+		return mappings.size();
+	}
+
+	/**
+	 * @return directory for extracted files
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Removes all extracted files.
+	 */
+	public void clear() {
+		revisions.clear();
+		mappings.clear();
+		delete(directory.toPath(), false);
+	}
+
+	private void removeOtherRevisions(Path revisionDirectory) {
+		File[] others = revisionDirectory.getParent().toFile().listFiles();
+		if (others == null) {
+			return;
+		}
+		for (File other : others) {
+			if (!other.toPath().equals(revisionDirectory)) {
+				// buffers already handed out keep the mapping until they're collected
+				mappings.keySet().removeIf(path -> path.startsWith(other.toPath()));
+				delete(other.toPath(), true);
+			}
+		}
+	}
+
+	private static void delete(Path path, boolean self) {
+		File[] children = path.toFile().listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child.toPath(), true);
+			}
+		}
+		if (self) {
+			try {
+				Files.deleteIfExists(path);
+			} catch (IOException e) {
+				LOG.debug("Can't remove {}: {}", path, e.getMessage());
+			}
+		}
+	}
+
+}
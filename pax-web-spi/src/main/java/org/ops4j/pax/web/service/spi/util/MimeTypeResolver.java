@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Resolves content types of static resources of single context by file extension.</p>
+ *
+ * <p>Default mappings of the container and mappings of the context are merged into one immutable table
+ * when the resolver is created. Extensions which are not in the table are looked up in the table of the JDK
+ * ({@link URLConnection#guessContentTypeFromName(String)}) once - the result (also unknown type) is
+ * remembered, so resolving content type never opens a connection to the resource.</p>
+ *
+ * <p>{@link org.osgi.service.http.HttpContext#getMimeType(String)} should still be consulted first - it may
+ * return different type for any resource name.</p>
+ */
+public class MimeTypeResolver {
+
+	public static final int DEFAULT_MAX_GUESSES = 1024;
+
+	// remembered for extensions without known content type
+	private static final String UNKNOWN = "";
+
+	private final Map<String, String> mimeTypes;
+	private final Map<String, String> guesses = new ConcurrentHashMap<>();
+
+	/**
+	 * @param defaults  default mappings (extension to content type) of the container
+	 * @param overrides mappings of the context, which take precedence over defaults, may be {@code null}
+	 */
+	public MimeTypeResolver(Map<String, String> defaults, Map<String, String> overrides) {
+		Map<String, String> merged = new HashMap<>();
+		put(merged, defaults);
+		put(merged, overrides);
+		this.mimeTypes = Collections.unmodifiableMap(merged);
+	}
+
+	/**
+	 * Returns content type of a resource.
+	 *
+	 * @param name name or path of the resource
+	 * @return content type or {@code null} if the extension is unknown
+	 */
+	public String getMimeType(String name) {
+		String extension = extension(name);
+		if (extension == null) {
+			return null;
+		}
+		String mimeType = mimeTypes.get(extension);
+		if (mimeType != null) {
+			return mimeType;
+		}
+		mimeType = guesses.get(extension);
+		if (mimeType == null) {
+			mimeType = URLConnection.guessContentTypeFromName("resource." + extension);
+			if (mimeType == null) {
+				mimeType = UNKNOWN;
+			}
+			// arbitrary extensions come from request URIs
+			if (guesses.size() < DEFAULT_MAX_GUESSES) {
+				guesses.put(extension, mimeType);
+			}
+		}
+		return UNKNOWN.equals(mimeType) ? null : mimeType;
+	}
+
+	/**
+	 * @return merged mappings of extensions (lower case) to content types
+	 */
+	public Map<String, String> getMimeTypes() {
+		return mimeTypes;
+	}
+
+	/**
+	 * Reads mappings from properties file, where keys are extensions and values are content types.
+	 *
+	 * @param in properties, closed by this method
+	 * @return the mappings
+	 * @throws IOException if the mappings can't be read
+	 */
+	public static Map<String, String> readMappings(InputStream in) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = in) {
+			properties.load(is);
+		}
+		Map<String, String> mappings = new HashMap<>();
+		for (String extension : properties.stringPropertyNames()) {
+			mappings.put(extension, properties.getProperty(extension).trim());
+		}
+		return mappings;
+	}
+
+	private static void put(Map<String, String> merged, Map<String, String> mappings) {
+		if (mappings == null) {
+			return;
+		}
+		for (Map.Entry<String, String> e : mappings.entrySet()) {
+			if (e.getKey() != null && e.getValue() != null) {
+				merged.put(e.getKey().toLowerCase(Locale.ENGLISH), e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Extension (lower case) of the last segment of a path, {@code null} if there's none.
+	 */
+	private static String extension(String name) {
+		if (name == null) {
+			return null;
+		}
+		int dot = name.lastIndexOf('.');
+		if (dot < 0 || dot == name.length() - 1 || name.indexOf('/', dot) >= 0) {
+			return null;
+		}
+		return name.substring(dot + 1).toLowerCase(Locale.ENGLISH);
+	}
+
+}
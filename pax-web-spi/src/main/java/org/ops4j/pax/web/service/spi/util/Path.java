@@ -35,6 +35,9 @@ public class Path {
 	/**
 	 * Normalize the path for accesing a resource, meaning that will replace
 	 * consecutive slashes and will remove a leading slash if present.
+	 * Leading and trailing whitespace is removed, {@code .} and {@code ..}
+	 * segments and trailing slash are kept. The path is normalized in single
+	 * pass, without regular expressions.
 	 *
 	 * @param path path to normalize
 	 * @return normalized path or the original path if there is nothing to be
@@ -44,11 +47,25 @@ public class Path {
 		if (path == null) {
 			return null;
 		}
-		String normalizedPath = replaceSlashes(path.trim());
-		if (normalizedPath.startsWith("/") && normalizedPath.length() > 1) {
-			normalizedPath = normalizedPath.substring(1);
+		// same bounds as String.trim()
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) <= ' ') {
+			start++;
 		}
-		return normalizedPath;
+		while (end > start && path.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		if (start < end && path.charAt(start) == '/') {
+			// leading slashes are collapsed into one, which is removed, unless it's the only character
+			while (start < end && path.charAt(start) == '/') {
+				start++;
+			}
+			if (start == end) {
+				return path.length() == 1 ? path : "/";
+			}
+		}
+		return collapseSlashes(path, start, end);
 	}
 
 	/**
@@ -59,11 +76,32 @@ public class Path {
 	 * @return a string where the subsequent slashes are replaced with one slash
 	 */
 	static String replaceSlashes(final String target) {
-		String replaced = target;
-		if (replaced != null) {
-			replaced = replaced.replaceAll("/+", "/");
+		if (target == null) {
+			return null;
+		}
+		return collapseSlashes(target, 0, target.length());
+	}
+
+	/**
+	 * Replaces multiple subsequent slashes in a part of a string with one slash.
+	 *
+	 * @return the original string if it's not changed, otherwise new string
+	 */
+	private static String collapseSlashes(final String target, final int start, final int end) {
+		int duplicate = target.indexOf("//", start);
+		if (duplicate < 0 || duplicate + 1 >= end) {
+			return start == 0 && end == target.length() ? target : target.substring(start, end);
+		}
+		char[] result = new char[end - start - 1];
+		int length = duplicate + 1 - start;
+		target.getChars(start, duplicate + 1, result, 0);
+		for (int i = duplicate + 2; i < end; i++) {
+			char c = target.charAt(i);
+			if (c != '/' || result[length - 1] != '/') {
+				result[length++] = c;
+			}
 		}
-		return replaced;
+		return new String(result, 0, length);
 	}
 
 	/**
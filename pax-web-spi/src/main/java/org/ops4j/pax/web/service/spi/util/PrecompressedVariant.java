@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Precompressed variants of static resources, which resource servlets look up next to the requested resource
+ * (e.g. {@code app.js.br} or {@code app.js.gz} for {@code app.js}) and send with {@code Content-Encoding}
+ * if the client accepts it.
+ */
+public enum PrecompressedVariant {
+
+	BROTLI("br", ".br"),
+	GZIP("gzip", ".gz");
+
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+	public static final String CONTENT_ENCODING = "Content-Encoding";
+	public static final String VARY = "Vary";
+
+	private final String encoding;
+	private final String extension;
+
+	PrecompressedVariant(String encoding, String extension) {
+		this.encoding = encoding;
+		this.extension = extension;
+	}
+
+	/**
+	 * @return value of {@code Content-Encoding} header for this variant
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * @return suffix of the resource name of this variant
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns the path of this variant of a resource.
+	 *
+	 * @param path path of the resource
+	 * @return path of precompressed variant
+	 */
+	public String getPath(String path) {
+		return path + extension;
+	}
+
+	/**
+	 * Returns the variants accepted by the client, most preferred first. Variants with equal quality are
+	 * ordered by declaration order (brotli before gzip).
+	 *
+	 * @param acceptEncoding value of {@code Accept-Encoding} request header, may be {@code null}
+	 * @return accepted variants, never {@code null}
+	 */
+	public static List<PrecompressedVariant> accepted(String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+			return Collections.emptyList();
+		}
+		PrecompressedVariant[] variants = values();
+		float[] qualities = new float[variants.length];
+		boolean[] explicit = new boolean[variants.length];
+		float wildcard = 0f;
+
+		for (String coding : acceptEncoding.split(",")) {
+			int semicolon = coding.indexOf(';');
+			String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim().toLowerCase(Locale.ENGLISH);
+			float q = semicolon < 0 ? 1f : quality(coding.substring(semicolon + 1));
+			if ("*".equals(name)) {
+				wildcard = q;
+				continue;
+			}
+			if ("x-gzip".equals(name)) {
+				name = GZIP.encoding;
+			}
+			for (int i = 0; i < variants.length; i++) {
+				if (variants[i].encoding.equals(name)) {
+					qualities[i] = q;
+					explicit[i] = true;
+				}
+			}
+		}
+
+		List<PrecompressedVariant> accepted = new ArrayList<>(variants.length);
+		for (int i = 0; i < variants.length; i++) {
+			if (!explicit[i]) {
+				qualities[i] = wildcard;
+			}
+			if (qualities[i] > 0f) {
+				int pos = 0;
+				while (pos < accepted.size() && qualities[accepted.get(pos).ordinal()] >= qualities[i]) {
+					pos++;
+				}
+				accepted.add(pos, variants[i]);
+			}
+		}
+		return accepted;
+	}
+
+	private static float quality(String parameters) {
+		for (String parameter : parameters.split(";")) {
+			String p = parameter.trim();
+			if (p.length() > 1 && (p.charAt(0) == 'q' || p.charAt(0) == 'Q') && p.charAt(1) == '=') {
+				try {
+					return Float.parseFloat(p.substring(2).trim());
+				} catch (NumberFormatException e) {
+					return 0f;
+				}
+			}
+		}
+		return 1f;
+	}
+
+}
@@ -13,112 +13,339 @@
  * implied.
  *
  * See the License for the specific language governing permissions and
- * limitations under the License. 
+ * limitations under the License.
  */
 package org.ops4j.pax.web.service.spi.util;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Vector;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.apache.commons.collections4.map.LRUMap;
 import org.ops4j.pax.swissbox.core.BundleClassLoader;
 import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * A bundle class loader which delegates resource loading to a list of delegate
- * bundles.
+ * <p>A bundle class loader which delegates resource loading to a list of delegate
+ * bundles.</p>
+ *
+ * <p>Results of class and resource lookups are cached - also the lookups which didn't find anything, as
+ * these are the most expensive ones (every delegate bundle is asked). Because of the negative entries, the
+ * cache is cleared whenever any bundle is resolved or unresolved, which is when wirings of the delegates
+ * (or new providers of dynamically imported packages) may change. If there's no bundle context to listen
+ * for these events, only found resources are cached.</p>
+ *
+ * <p>Capacity of the cache is taken from {@value #CACHE_SIZE_PROPERTY} framework (or system) property,
+ * {@code 0} disables the cache.</p>
  *
  * @author Harald Wellmann
  */
 public class ResourceDelegatingBundleClassLoader extends BundleClassLoader {
 
-	private List<Bundle> bundles;
+	public static final String CACHE_SIZE_PROPERTY = "org.ops4j.pax.web.classLoader.cacheSize";
+
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceDelegatingBundleClassLoader.class);
+
+	// remembered for names, which were not found
+	private static final Object NOT_FOUND = new Object();
+
+	static {
+		// effective only if super classes are parallel capable too - loadClass() doesn't lock anyway
+		ClassLoader.registerAsParallelCapable();
+	}
+
+	private final List<Bundle> bundles;
+
+	private final int cacheSize;
 
-	private int cacheSize = 100; //equals the default size of the LRUMap, might be changed in a later version.
+	// class name -> class or NOT_FOUND
+	private final Map<String, Object> classCache = new ConcurrentHashMap<>();
+	// resource name -> URL or NOT_FOUND
+	private final Map<String, Object> resourceCache = new ConcurrentHashMap<>();
+	// resource name -> URLs from all delegates
+	private final Map<String, List<URL>> resourcesCache = new ConcurrentHashMap<>();
 
-	private LRUMap<String, Vector<URL>> lruCache = new LRUMap<>(cacheSize);
+	// incremented when the cache is cleared, so lookups running at that time don't store stale results
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private final WiringListener wiringListener;
 
 	public ResourceDelegatingBundleClassLoader(List<Bundle> bundles) {
-		super(bundles.get(0));
-		this.bundles = bundles;
+		this(bundles, null, -1);
 	}
 
 	public ResourceDelegatingBundleClassLoader(List<Bundle> bundles, ClassLoader parent) {
+		this(bundles, parent, -1);
+	}
+
+	/**
+	 * @param bundles   delegate bundles, the first one loads classes
+	 * @param parent    parent class loader, may be {@code null}
+	 * @param cacheSize maximal number of cached classes and resources (each), negative value to use
+	 *                  {@value #CACHE_SIZE_PROPERTY} property or {@link #DEFAULT_CACHE_SIZE}
+	 */
+	public ResourceDelegatingBundleClassLoader(List<Bundle> bundles, ClassLoader parent, int cacheSize) {
 		super(bundles.get(0), parent);
-		this.bundles = bundles;
+		this.bundles = new CopyOnWriteArrayList<>(bundles);
+		BundleContext bundleContext = getBundleContext(bundles.get(0));
+		this.cacheSize = cacheSize >= 0 ? cacheSize : getDefaultCacheSize(bundleContext);
+		this.wiringListener = this.cacheSize > 0 ? WiringListener.register(bundleContext, this) : null;
 	}
 
 	public void addBundle(Bundle bundle) {
 		bundles.add(bundle);
-		lruCache.clear();
+		clearCache();
 	}
 
 	public List<Bundle> getBundles() {
 		return bundles;
 	}
 
-	protected URL findResource(String name) {
-		Vector<URL> resources = getFromCache(name);
-
-		if (resources == null) {
-			resources = new Vector<>();
-			for (Bundle delegate : bundles) {
-				try {
-					URL resource = delegate.getResource(name);
-					if (resource != null) {
-						resources.add(resource);
-						break;
-					}
-				} catch (IllegalStateException exc) {
-					// ignore
-				}
+	/**
+	 * @return maximal number of cached classes and resources, {@code 0} if nothing is cached
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long getCacheHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of lookups which had to ask the bundles
+	 */
+	public long getCacheMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Forgets all cached classes and resources.
+	 */
+	public void clearCache() {
+		generation.incrementAndGet();
+		classCache.clear();
+		resourceCache.clear();
+		resourcesCache.clear();
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Cache of {} cleared (hits: {}, misses: {})", this, hits.sum(), misses.sum());
+		}
+	}
+
+	/**
+	 * Classes are defined only by the delegate bundles, so - unlike {@link ClassLoader#loadClass(String, boolean)}
+	 * - there's no need to hold class loading lock.
+	 */
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		ClassLoader parent = getParent();
+		if (parent != null) {
+			try {
+				return parent.loadClass(name);
+			} catch (ClassNotFoundException ignored) {
+				// try the bundle
 			}
-			if (!resources.isEmpty()) {
-				addToCache(name, resources);
+		}
+		Class<?> c = findClass(name);
+		if (resolve) {
+			resolveClass(c);
+		}
+		return c;
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		// without wiring listener, even found classes may be stale after refresh
+		if (wiringListener == null) {
+			return super.findClass(name);
+		}
+		Object cached = classCache.get(name);
+		if (cached != null) {
+			hits.increment();
+			if (cached == NOT_FOUND) {
+				throw new ClassNotFoundException(name);
 			}
+			return (Class<?>) cached;
+		}
+		misses.increment();
+		int gen = generation.get();
+		try {
+			Class<?> c = super.findClass(name);
+			cache(classCache, name, c, gen);
+			return c;
+		} catch (ClassNotFoundException e) {
+			cache(classCache, name, NOT_FOUND, gen);
+			throw e;
 		}
+	}
 
-		Enumeration<URL> elements = resources.elements();
-		if (elements.hasMoreElements()) {
-			return elements.nextElement();
+	@Override
+	protected URL findResource(String name) {
+		Object cached = cacheSize > 0 ? resourceCache.get(name) : null;
+		if (cached != null) {
+			hits.increment();
+			return cached == NOT_FOUND ? null : (URL) cached;
+		}
+		misses.increment();
+		int gen = generation.get();
+		URL resource = null;
+		for (Bundle delegate : bundles) {
+			try {
+				resource = delegate.getResource(name);
+				if (resource != null) {
+					break;
+				}
+			} catch (IllegalStateException exc) {
+				// ignore
+			}
 		}
-		return null;
+		if (resource != null) {
+			cache(resourceCache, name, resource, gen);
+		} else if (wiringListener != null) {
+			cache(resourceCache, name, NOT_FOUND, gen);
+		}
+		return resource;
 	}
 
 	@Override
 	protected Enumeration<URL> findResources(String name) throws IOException {
-		Vector<URL> resources = getFromCache(name);
-
-		if (resources == null) {
-			resources = new Vector<>();
-			for (Bundle delegate : bundles) {
-				try {
-					Enumeration<URL> urls = delegate.getResources(name);
-					if (urls != null) {
-						while (urls.hasMoreElements()) {
-							resources.add(urls.nextElement());
-						}
+		List<URL> cached = cacheSize > 0 ? resourcesCache.get(name) : null;
+		if (cached != null) {
+			hits.increment();
+			return Collections.enumeration(cached);
+		}
+		misses.increment();
+		int gen = generation.get();
+		List<URL> resources = new ArrayList<>();
+		for (Bundle delegate : bundles) {
+			try {
+				Enumeration<URL> urls = delegate.getResources(name);
+				if (urls != null) {
+					while (urls.hasMoreElements()) {
+						resources.add(urls.nextElement());
 					}
-				} catch (IllegalStateException exc) {
-					// ignore
 				}
+			} catch (IllegalStateException exc) {
+				// ignore
 			}
-			if (!resources.isEmpty()) {
-				addToCache(name, resources);
+		}
+		if (!resources.isEmpty() || wiringListener != null) {
+			cache(resourcesCache, name, Collections.unmodifiableList(resources), gen);
+		}
+		return Collections.enumeration(resources);
+	}
+
+	private <T> void cache(Map<String, T> cache, String name, T value, int gen) {
+		if (cacheSize <= 0 || generation.get() != gen) {
+			return;
+		}
+		if (cache.size() >= cacheSize) {
+			Iterator<String> it = cache.keySet().iterator();
+			while (it.hasNext() && cache.size() >= cacheSize) {
+				it.next();
+				it.remove();
 			}
 		}
+		cache.put(name, value);
+		if (generation.get() != gen) {
+			// cleared in the meantime
+			cache.remove(name);
+		}
+	}
 
-		return resources.elements();
+	private static BundleContext getBundleContext(Bundle bundle) {
+		try {
+			return bundle.getBundleContext();
+		} catch (SecurityException | IllegalStateException e) {
+			return null;
+		}
 	}
 
-	protected synchronized void addToCache(String name, Vector<URL> resources) {
-		lruCache.put(name, resources);
+	private static int getDefaultCacheSize(BundleContext bundleContext) {
+		String size = null;
+		try {
+			size = bundleContext != null ? bundleContext.getProperty(CACHE_SIZE_PROPERTY)
+					: System.getProperty(CACHE_SIZE_PROPERTY);
+		} catch (SecurityException | IllegalStateException ignored) {
+			// default
+		}
+		if (size != null) {
+			try {
+				return Math.max(Integer.parseInt(size.trim()), 0);
+			} catch (NumberFormatException e) {
+				LOG.warn("Invalid value of {}: {}", CACHE_SIZE_PROPERTY, size);
+			}
+		}
+		return DEFAULT_CACHE_SIZE;
 	}
 
-	protected Vector<URL> getFromCache(String name) {
-		return lruCache.get(name);
+	/**
+	 * Clears cache of a class loader when bundles are resolved or unresolved. The class loader is only weakly
+	 * referenced - the listener unregisters itself when the class loader is gone.
+	 */
+	private static class WiringListener implements BundleListener {
+
+		private final BundleContext bundleContext;
+		private final WeakReference<ResourceDelegatingBundleClassLoader> classLoader;
+
+		private WiringListener(BundleContext bundleContext, ResourceDelegatingBundleClassLoader classLoader) {
+			this.bundleContext = bundleContext;
+			this.classLoader = new WeakReference<>(classLoader);
+		}
+
+		static WiringListener register(BundleContext bundleContext, ResourceDelegatingBundleClassLoader classLoader) {
+			if (bundleContext == null) {
+				return null;
+			}
+			WiringListener listener = new WiringListener(bundleContext, classLoader);
+			try {
+				bundleContext.addBundleListener(listener);
+				return listener;
+			} catch (SecurityException | IllegalStateException e) {
+				LOG.debug("Can't listen for bundle events, classes and missing resources won't be cached: {}",
+						e.getMessage());
+				return null;
+			}
+		}
+
+		@Override
+		public void bundleChanged(BundleEvent event) {
+			if (event.getType() != BundleEvent.RESOLVED && event.getType() != BundleEvent.UNRESOLVED) {
+				return;
+			}
+			ResourceDelegatingBundleClassLoader cl = classLoader.get();
+			if (cl != null) {
+				cl.clearCache();
+				return;
+			}
+			try {
+				bundleContext.removeBundleListener(this);
+			} catch (IllegalStateException ignored) {
+				// bundle context is no longer valid
+			}
+		}
 	}
-}
\ No newline at end of file
+
+}
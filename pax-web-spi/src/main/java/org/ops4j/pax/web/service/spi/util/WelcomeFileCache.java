@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Welcome files resolved for directories of single context, so each request for a directory doesn't probe
+ * all configured welcome files again.</p>
+ *
+ * <p>Only resources coming directly from bundle entries are cached - the cache is bound to a
+ * {@link BundleEntryIndex} and is cleared when the index is built again (after bundle update). Directories
+ * without welcome file are remembered only if the index {@link BundleEntryIndex#covers(String) covers} the
+ * directory. The owner of the cache should {@link #clear()} it when the welcome files change.</p>
+ */
+public class WelcomeFileCache {
+
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	// marks directories without welcome file
+	private static final String NONE = "";
+
+	/**
+	 * Finds welcome file of a directory the usual way.
+	 */
+	public interface Resolver {
+
+		/**
+		 * @param directory path of the directory
+		 * @return welcome file (as returned by {@link WelcomeFileCache#resolve}) or {@code null}
+		 * @throws IOException if resources can't be checked
+		 */
+		String resolve(String directory) throws IOException;
+	}
+
+	private final int maxEntries;
+	private final Map<String, String> welcomeFiles = new ConcurrentHashMap<>();
+	private volatile BundleEntryIndex index;
+
+	public WelcomeFileCache() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries maximal number of remembered directories
+	 */
+	public WelcomeFileCache(int maxEntries) {
+		this.maxEntries = Math.max(maxEntries, 1);
+	}
+
+	/**
+	 * Returns welcome file of given directory, resolving it only if it's not known yet.
+	 *
+	 * @param index     current index of bundle entries, {@code null} if resources don't come from bundle
+	 *                  entries - nothing is cached then
+	 * @param directory path of the directory
+	 * @param resolver  finds the welcome file when it's not cached
+	 * @return welcome file or {@code null}
+	 * @throws IOException if thrown by the resolver
+	 */
+	public String resolve(BundleEntryIndex index, String directory, Resolver resolver) throws IOException {
+		if (index == null) {
+			return resolver.resolve(directory);
+		}
+		if (index != this.index) {
+			welcomeFiles.clear();
+			this.index = index;
+		}
+		String welcomeFile = welcomeFiles.get(directory);
+		if (welcomeFile != null) {
+			return NONE.equals(welcomeFile) ? null : welcomeFile;
+		}
+		welcomeFile = resolver.resolve(directory);
+		// any file name - covers() checks the package of the resource
+		if (welcomeFile == null && !index.covers(directory + "/index.html")) {
+			return null;
+		}
+		if (welcomeFiles.size() >= maxEntries) {
+			Iterator<String> it = welcomeFiles.keySet().iterator();
+			while (it.hasNext() && welcomeFiles.size() >= maxEntries) {
+				it.next();
+				it.remove();
+			}
+		}
+		welcomeFiles.put(directory, welcomeFile == null ? NONE : welcomeFile);
+		return welcomeFile;
+	}
+
+	/**
+	 * Forgets all resolved welcome files.
+	 */
+	public void clear() {
+		welcomeFiles.clear();
+	}
+
+	public int size() {
+		return welcomeFiles.size();
+	}
+
+}
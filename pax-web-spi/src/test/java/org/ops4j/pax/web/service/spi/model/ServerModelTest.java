@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.model;
+
+import static org.easymock.EasyMock.createMock;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+
+import org.junit.Test;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.WebContainerContext;
+
+public class ServerModelTest {
+
+	private static final String[] SEGMENTS = {"", "a", "b", "ab", "x.jsp", "y.do", "z.", ".", "*", "c.d.e"};
+
+	@Test
+	public void matchServletAliases() throws Exception {
+		ServerModel serverModel = new ServerModel();
+		ContextModel root = contextModel("");
+		ContextModel app = contextModel("app");
+		serverModel.addServletModel(servletModel(root, "/"));
+		serverModel.addServletModel(servletModel(root, "/images"));
+		serverModel.addServletModel(servletModel(app, "/servlet"));
+
+		assertSame(root, serverModel.matchPathToContext("/"));
+		assertSame(root, serverModel.matchPathToContext("/images/logo.png"));
+		assertSame(root, serverModel.matchPathToContext("/unknown"));
+		assertSame(app, serverModel.matchPathToContext("/app/servlet"));
+		assertSame(app, serverModel.matchPathToContext("/app/servlet/more/info"));
+		assertSame(root, serverModel.matchPathToContext("/app/other"));
+	}
+
+	@Test
+	public void routingTableFollowsUnregistration() throws Exception {
+		ServerModel serverModel = new ServerModel();
+		ContextModel app = contextModel("app");
+		ServletModel servletModel = servletModel(app, "/servlet");
+		serverModel.addServletModel(servletModel);
+		assertSame(app, serverModel.matchPathToContext("/app/servlet"));
+
+		serverModel.removeServletModel(servletModel);
+		assertNull(serverModel.matchPathToContext("/app/servlet"));
+	}
+
+	@Test
+	public void matchVirtualHosts() throws Exception {
+		ServerModel serverModel = new ServerModel();
+		ContextModel plain = contextModel("");
+		ContextModel hosted = contextModel("");
+		hosted.setVirtualHosts(Collections.singletonList("example.com"));
+		serverModel.addServletModel(servletModel(plain, "/"));
+		serverModel.addServletModel(servletModel(hosted, "/"));
+
+		assertSame(hosted, serverModel.matchPathToContext("example.com", "/index.html"));
+		assertSame(plain, serverModel.matchPathToContext("localhost", "/index.html"));
+	}
+
+	@Test
+	public void matchFilterOnlyContexts() throws Exception {
+		ServerModel serverModel = new ServerModel();
+		ContextModel root = contextModel("");
+		ContextModel app = contextModel("app");
+		serverModel.addServletModel(servletModel(root, "/servlet"));
+		FilterModel filterModel = new FilterModel(app, createMock(Filter.class), new String[]{"/*"}, null,
+				new Hashtable<>(), false);
+		serverModel.addFilterModel(filterModel);
+
+		assertSame(root, serverModel.matchPathToContext("/servlet/info"));
+		assertSame(app, serverModel.matchPathToContext("/app/filtered.html"));
+		assertNull(serverModel.matchPathToContext("/other"));
+
+		serverModel.removeFilterModel(filterModel);
+		assertNull(serverModel.matchPathToContext("/app/filtered.html"));
+	}
+
+	/**
+	 * Filters are matched one pattern at a time - the compiled lookup has to
+	 * find a pattern exactly when at least one of the patterns matches alone.
+	 */
+	@Test
+	public void compiledFilterMatchingFindsAnyMatchingPattern() {
+		Random random = new Random(7L);
+		for (int round = 0; round < 200; round++) {
+			Map<String, String> patterns = new HashMap<>();
+			int count = 1 + random.nextInt(12);
+			for (int i = 0; i < count; i++) {
+				String pattern = randomPattern(random);
+				patterns.put(pattern, pattern);
+			}
+			PathTrie<String> trie = new PathTrie<>(patterns);
+			for (int i = 0; i < 200; i++) {
+				String path = randomPath(random);
+				Set<String> matching = new HashSet<>();
+				for (String pattern : patterns.keySet()) {
+					if (mapMatch(Collections.singletonMap(pattern, pattern), path) != null) {
+						matching.add(pattern);
+					}
+				}
+				String matched = ServerModel.matchPathToContext(trie, path);
+				assertEquals("Patterns " + patterns.keySet() + ", path " + path, matching.isEmpty(), matched == null);
+				assertTrue(matched == null || matching.contains(matched));
+			}
+		}
+	}
+
+	/**
+	 * Compares the compiled matching against the original, string-building
+	 * implementation for a large number of generated patterns and paths.
+	 */
+	@Test
+	public void compiledMatchingIsEquivalentToMapMatching() {
+		Random random = new Random(42L);
+		for (int round = 0; round < 200; round++) {
+			Map<String, String> patterns = new HashMap<>();
+			int count = 1 + random.nextInt(12);
+			for (int i = 0; i < count; i++) {
+				String pattern = randomPattern(random);
+				patterns.put(pattern, pattern);
+			}
+			PathTrie<String> trie = new PathTrie<>(patterns);
+			for (int i = 0; i < 200; i++) {
+				String path = randomPath(random);
+				assertEquals("Patterns " + patterns.keySet() + ", path " + path,
+						mapMatch(patterns, path), ServerModel.matchPathToContext(trie, path));
+			}
+		}
+	}
+
+	private static String randomPattern(Random random) {
+		switch (random.nextInt(5)) {
+			case 0:
+				return "/";
+			case 1:
+				return "*." + (random.nextBoolean() ? "jsp" : "do");
+			case 2:
+				return randomPath(random) + "/*";
+			case 3:
+				return randomPath(random) + "/*." + (random.nextBoolean() ? "jsp" : "do");
+			default:
+				return randomPath(random);
+		}
+	}
+
+	private static String randomPath(Random random) {
+		StringBuilder path = new StringBuilder();
+		int depth = 1 + random.nextInt(4);
+		for (int i = 0; i < depth; i++) {
+			path.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+		}
+		return path.toString();
+	}
+
+	/**
+	 * Reference implementation - the matching as it was done before url
+	 * patterns were compiled.
+	 */
+	private static String mapMatch(final Map<String, String> urlPatternsMap, final String path) {
+		String matched = null;
+		String servletPath = path;
+
+		while ((matched == null) && (!"".equals(servletPath))) {
+			if (servletPath.endsWith("/")) {
+				matched = urlPatternsMap.get(servletPath + "*");
+			} else {
+				matched = urlPatternsMap.get(servletPath + "/*");
+			}
+			if (matched == null) {
+				matched = urlPatternsMap.get(servletPath);
+			}
+			if (matched == null) {
+				String lastPathSegment = servletPath.substring(servletPath.lastIndexOf("/") + 1);
+				servletPath = servletPath.substring(0, servletPath.lastIndexOf("/"));
+				if (("".equals(servletPath)) && ("".equals(lastPathSegment))) {
+					break;
+				} else if ("".equals(lastPathSegment)) {
+					matched = urlPatternsMap.get(servletPath + "/*");
+					continue;
+				} else if (lastPathSegment.contains(".")) {
+					String extension = lastPathSegment.substring(lastPathSegment.lastIndexOf("."));
+					if (extension.length() > 1) {
+						matched = urlPatternsMap.get(("".equals(servletPath) ? "*" : servletPath + "/*")
+								+ extension);
+					}
+				} else {
+					if (servletPath.endsWith("/")) {
+						matched = urlPatternsMap.get(servletPath + "*");
+					} else {
+						matched = urlPatternsMap.get(servletPath + "/*");
+					}
+				}
+				if (matched == null) {
+					matched = urlPatternsMap.get(servletPath);
+				}
+				if ((matched == null) && ("".equals(servletPath)) && (!"".equals(lastPathSegment))) {
+					matched = urlPatternsMap.get("/");
+				}
+			}
+		}
+		return matched;
+	}
+
+	private ContextModel contextModel(String contextName) {
+		ContextModel contextModel = new ContextModel(createMock(WebContainerContext.class), null,
+				getClass().getClassLoader(), null);
+		Hashtable<String, String> contextParams = new Hashtable<>();
+		contextParams.put(WebContainerConstants.CONTEXT_NAME, contextName);
+		contextModel.setContextParams(contextParams);
+		return contextModel;
+	}
+
+	private ServletModel servletModel(ContextModel contextModel, String alias) {
+		return new ServletModel(contextModel, createMock(Servlet.class), alias,
+				new Hashtable<>(), null, null);
+	}
+
+}
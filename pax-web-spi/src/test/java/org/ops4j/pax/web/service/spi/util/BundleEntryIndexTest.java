@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class BundleEntryIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void entriesAndImplicitDirectories() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+		Bundle bundle = bundle(new Hashtable<>(), null, new URL(file.toURI().toURL(), "/www/js/app.js"));
+		BundleEntryIndex index = BundleEntryIndex.build(bundle);
+
+		assertTrue(index.get("/").isDirectory());
+		assertTrue(index.get("/www").isDirectory());
+		assertTrue(index.get("www/js/").isDirectory());
+		assertFalse(index.get("/www//js/app.js").isDirectory());
+		assertNull(index.get("/www/js/missing.js"));
+		assertTrue(index.covers("/www/js/missing.js"));
+		assertEquals(4, index.size());
+		assertTrue(index.isCurrent());
+	}
+
+	@Test
+	public void entryMetadata() throws Exception {
+		File file = folder.newFile("index.html");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+		Bundle bundle = bundle(new Hashtable<>(), null, file.toURI().toURL());
+		BundleEntryIndex.Entry entry = BundleEntryIndex.build(bundle).get(file.toURI().getPath());
+
+		assertEquals(3L, entry.getSize());
+		assertEquals(file.lastModified(), entry.getLastModified());
+		assertEquals("text/html", entry.getMimeType());
+	}
+
+	@Test
+	public void otherSourcesOfResourcesAreNotCovered() throws Exception {
+		Hashtable<String, String> headers = new Hashtable<>();
+		headers.put(Constants.BUNDLE_CLASSPATH, ".,WEB-INF/classes");
+		assertFalse(BundleEntryIndex.build(bundle(headers, null)).covers("/missing.js"));
+
+		headers = new Hashtable<>();
+		headers.put(Constants.DYNAMICIMPORT_PACKAGE, "*");
+		assertFalse(BundleEntryIndex.build(bundle(headers, null)).covers("/missing.js"));
+
+		BundleEntryIndex index = BundleEntryIndex.build(bundle(new Hashtable<>(), "sun.*, com.example"));
+		assertTrue(index.covers("/missing.js"));
+		assertFalse(index.covers("/java/lang/missing.class"));
+		assertFalse(index.covers("/sun/misc/missing.class"));
+		assertFalse(index.covers("/com/example/missing.txt"));
+		assertTrue(index.covers("/com/example/www/missing.txt"));
+	}
+
+	@Test
+	public void entriesWhichMayBeShadowedAreNotCovered() throws Exception {
+		File file = folder.newFile("app.js");
+		URL entry = new URL(file.toURI().toURL(), "/www/app.js");
+		assertNotNull(BundleEntryIndex.build(bundle(new Hashtable<>(), null, entry)).getCovered("/www/app.js"));
+
+		Hashtable<String, String> headers = new Hashtable<>();
+		headers.put(Constants.DYNAMICIMPORT_PACKAGE, "*");
+		BundleEntryIndex index = BundleEntryIndex.build(bundle(headers, null, entry));
+		assertNotNull(index.get("/www/app.js"));
+		assertNull(index.getCovered("/www/app.js"));
+	}
+
+	private Bundle bundle(Hashtable<String, String> headers, String bootDelegation, URL... entries) {
+		Bundle bundle = createNiceMock(Bundle.class);
+		BundleWiring wiring = createNiceMock(BundleWiring.class);
+		BundleContext context = createNiceMock(BundleContext.class);
+		expect(bundle.getState()).andReturn(Bundle.ACTIVE).anyTimes();
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getHeaders("")).andReturn(headers).anyTimes();
+		expect(bundle.getBundleContext()).andReturn(context).anyTimes();
+		expect(bundle.findEntries("/", null, true)).andReturn(Collections.enumeration(Arrays.asList(entries)))
+				.anyTimes();
+		expect(wiring.getRequiredWires((String) anyObject())).andReturn(Collections.<BundleWire>emptyList()).anyTimes();
+		expect(context.getProperty(Constants.FRAMEWORK_BOOTDELEGATION)).andReturn(bootDelegation).anyTimes();
+		replay(bundle, wiring, context);
+		return bundle;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ContentETagsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void eTagDependsOnContentOnly() throws Exception {
+		ContentETags eTags = new ContentETags();
+		URL url = write("app.js", "alert('hello');");
+		URL copy = write("copy.js", "alert('hello');");
+
+		String eTag = eTags.getETag(url, 1L);
+		assertTrue(eTag.startsWith("\"") && eTag.endsWith("\""));
+		assertEquals(eTag, eTags.getETag(url, 2L));
+		assertEquals(eTag, eTags.getETag(copy, 3L));
+		assertEquals(eTag, ContentETags.getETag("alert('hello');".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void eTagIsComputedOncePerVersion() throws Exception {
+		ContentETags eTags = new ContentETags();
+		URL url = write("app.js", "alert('hello');");
+		String eTag = eTags.getETag(url, 1L);
+
+		write("app.js", "alert('bye');");
+		assertEquals(eTag, eTags.getETag(url, 1L));
+		assertNotEquals(eTag, eTags.getETag(url, 2L));
+	}
+
+	@Test
+	public void numberOfEntriesIsBounded() throws Exception {
+		ContentETags eTags = new ContentETags(4);
+		for (int i = 0; i < 20; i++) {
+			eTags.getETag(write(i + ".js", "alert(" + i + ");"), 1L);
+			assertTrue(eTags.size() <= 4);
+		}
+	}
+
+	@Test
+	public void ifNoneMatch() {
+		assertTrue(ContentETags.matches("\"abc\"", "\"abc\""));
+		assertTrue(ContentETags.matches("\"x\", W/\"abc\"", "\"abc\""));
+		assertTrue(ContentETags.matches("*", "\"abc\""));
+		assertFalse(ContentETags.matches("\"abcd\"", "\"abc\""));
+		assertFalse(ContentETags.matches(null, "\"abc\""));
+	}
+
+	private URL write(String name, String content) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file.toURI().toURL();
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.osgi.framework.Bundle;
+
+public class ExtractedResourceCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void entryIsExtractedOnce() throws Exception {
+		File work = folder.newFolder("work");
+		ExtractedResourceCache cache = new ExtractedResourceCache(work, 4);
+		URL url = entry("www/app.js", "alert('hello');");
+
+		assertFalse(cache.accepts(3));
+		assertTrue(cache.accepts(4));
+
+		File file = cache.getFile(bundle(42L, 1000L), url, 5000L, 15L);
+		assertEquals(new File(work, "42/1000/www/app.js").getCanonicalFile(), file.getCanonicalFile());
+		assertArrayEquals("alert('hello');".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file.toPath()));
+		assertEquals(5000L, file.lastModified());
+
+		// the same revision isn't extracted again
+		entry("www/app.js", "alert('bye!!!');");
+		assertArrayEquals("alert('hello');".getBytes(StandardCharsets.UTF_8),
+				Files.readAllBytes(cache.getFile(bundle(42L, 1000L), url, 5000L, 15L).toPath()));
+	}
+
+	@Test
+	public void previousRevisionsAreRemoved() throws Exception {
+		File work = folder.newFolder("work");
+		ExtractedResourceCache cache = new ExtractedResourceCache(work, 1);
+		URL url = entry("app.js", "alert('hello');");
+
+		File old = cache.getFile(bundle(42L, 1000L), url, 5000L, 15L);
+		File current = cache.getFile(bundle(42L, 2000L), url, 5000L, 15L);
+		assertFalse(old.exists());
+		assertTrue(current.exists());
+
+		cache.clear();
+		assertFalse(current.exists());
+		assertTrue(work.isDirectory());
+	}
+
+	@Test
+	public void mappedContentIsShared() throws Exception {
+		ExtractedResourceCache cache = new ExtractedResourceCache(folder.newFolder("work"), 1);
+		URL url = entry("app.js", "alert('hello');");
+
+		ByteBuffer first = cache.getContent(bundle(42L, 1000L), url, 5000L, 15L);
+		ByteBuffer second = cache.getContent(bundle(42L, 1000L), url, 5000L, 15L);
+		assertEquals(1, cache.getMappingCount());
+		assertTrue(first.isReadOnly());
+		assertEquals("alert('hello');", StandardCharsets.UTF_8.decode(first).toString());
+		// consuming one buffer doesn't affect the other one
+		assertEquals("alert('hello');", StandardCharsets.UTF_8.decode(second).toString());
+
+		// new revision of the bundle is mapped again
+		entry("app.js", "alert('bye!!');");
+		ByteBuffer updated = cache.getContent(bundle(42L, 2000L), url, 5000L, 15L);
+		assertEquals("alert('bye!!');", StandardCharsets.UTF_8.decode(updated).toString());
+		assertEquals(1, cache.getMappingCount());
+
+		cache.clear();
+		assertEquals(0, cache.getMappingCount());
+	}
+
+	@Test
+	public void sizeMismatch() throws Exception {
+		ExtractedResourceCache cache = new ExtractedResourceCache(folder.newFolder("work"), 1);
+		assertNull(cache.getFile(bundle(42L, 1000L), entry("app.js", "alert('hello');"), 5000L, 100L));
+	}
+
+	private URL entry(String path, String content) throws Exception {
+		File file = new File(folder.getRoot(), "bundle/" + path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return new URL("bundleentry", "42.fwk1", -1, "/" + path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) throws IOException {
+				return file.toURI().toURL().openConnection();
+			}
+		});
+	}
+
+	private Bundle bundle(long id, long lastModified) {
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleId()).andReturn(id).anyTimes();
+		expect(bundle.getLastModified()).andReturn(lastModified).anyTimes();
+		replay(bundle);
+		return bundle;
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MimeTypeResolverTest {
+
+	@Test
+	public void contextMappingsOverrideDefaults() {
+		Map<String, String> defaults = new HashMap<>();
+		defaults.put("js", "application/javascript");
+		defaults.put("JSON", "application/json");
+		MimeTypeResolver resolver = new MimeTypeResolver(defaults,
+				Collections.singletonMap("js", "text/javascript"));
+
+		assertEquals("text/javascript", resolver.getMimeType("/www/app.js"));
+		assertEquals("application/json", resolver.getMimeType("data.Json"));
+		assertEquals(2, resolver.getMimeTypes().size());
+	}
+
+	@Test
+	public void unknownExtensions() {
+		MimeTypeResolver resolver = new MimeTypeResolver(Collections.emptyMap(), null);
+
+		// JDK table
+		assertEquals("text/html", resolver.getMimeType("/index.html"));
+		assertNull(resolver.getMimeType("/archive.unknown-extension"));
+		assertNull(resolver.getMimeType("/archive.unknown-extension"));
+		assertNull(resolver.getMimeType("/README"));
+		assertNull(resolver.getMimeType("/www.d/README"));
+		assertNull(resolver.getMimeType("/dir."));
+	}
+
+	@Test
+	public void mappingsFromProperties() throws Exception {
+		Map<String, String> mappings = MimeTypeResolver.readMappings(new ByteArrayInputStream(
+				"css=text/css\nsvg = image/svg+xml \n".getBytes(StandardCharsets.ISO_8859_1)));
+
+		assertEquals("image/svg+xml", new MimeTypeResolver(mappings, null).getMimeType("logo.svg"));
+		assertEquals("text/css", new MimeTypeResolver(mappings, null).getMimeType("style.css"));
+	}
+
+}
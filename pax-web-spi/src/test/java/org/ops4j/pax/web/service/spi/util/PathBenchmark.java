@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+/**
+ * Compares {@link Path#normalizeResourcePath(String)} with the previous, regex based implementation. It's not
+ * run by surefire - run its {@code main()} with test classpath of this module.
+ */
+public class PathBenchmark {
+
+	private static final String[] PATHS = {
+			"/www/js/app.js",
+			"www/css/style.css",
+			"/index.html",
+			"//www//images///logo.png",
+			"/META-INF/resources/webjars/jquery/3.5.1/jquery.min.js",
+			"/"
+	};
+
+	private static final int ITERATIONS = 2_000_000;
+	private static final int ROUNDS = 5;
+
+	private PathBenchmark() {
+	}
+
+	public static void main(String[] args) {
+		for (int round = 0; round < ROUNDS; round++) {
+			long legacy = run(true);
+			long current = run(false);
+			System.out.printf("round %d: regex %.1f ns/op, single pass %.1f ns/op%n", round,
+					(double) legacy / (ITERATIONS * PATHS.length), (double) current / (ITERATIONS * PATHS.length));
+		}
+	}
+
+	private static long run(boolean legacy) {
+		int sink = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			for (String path : PATHS) {
+				String normalized = legacy ? legacyNormalizeResourcePath(path) : Path.normalizeResourcePath(path);
+				sink += normalized.length();
+			}
+		}
+		long time = System.nanoTime() - start;
+		if (sink == 42) {
+			// keeps the results alive
+			System.out.println();
+		}
+		return time;
+	}
+
+	private static String legacyNormalizeResourcePath(final String path) {
+		String normalizedPath = path.trim().replaceAll("/+", "/");
+		if (normalizedPath.startsWith("/") && normalizedPath.length() > 1) {
+			normalizedPath = normalizedPath.substring(1);
+		}
+		return normalizedPath;
+	}
+
+}
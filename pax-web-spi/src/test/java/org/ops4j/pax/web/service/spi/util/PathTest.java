@@ -17,6 +17,7 @@
 package org.ops4j.pax.web.service.spi.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -126,4 +127,49 @@ public class PathTest {
 		assertEquals("Normalized", "/", Path.normalizeResourcePath("/   "));
 	}
 
+	/**
+	 * Tests that normalization gives the same results as the previous, regex
+	 * based implementation, for all paths up to 8 characters from an alphabet
+	 * covering slashes, dot segments and whitespace.
+	 */
+	@Test
+	public void normalizeResourcePathEquivalence() {
+		char[] alphabet = {'/', '.', 'a', ' '};
+		char[] chars = new char[8];
+		for (int length = 0; length <= chars.length; length++) {
+			int combinations = 1 << (2 * length);
+			for (int n = 0; n < combinations; n++) {
+				for (int i = 0, c = n; i < length; i++, c >>= 2) {
+					chars[i] = alphabet[c & 3];
+				}
+				String path = new String(chars, 0, length);
+				String expected = legacyNormalizeResourcePath(path);
+				String normalized = Path.normalizeResourcePath(path);
+				assertEquals("Normalized \"" + path + "\"", expected, normalized);
+				if (expected.equals(path)) {
+					assertSame("Unchanged \"" + path + "\"", path, normalized);
+				}
+				assertEquals("Replaced \"" + path + "\"", path.replaceAll("/+", "/"), Path.replaceSlashes(path));
+			}
+		}
+	}
+
+	/**
+	 * Tests that dot segments and trailing slashes are kept.
+	 */
+	@Test
+	public void normalizeResourcePathDotSegments() {
+		assertEquals("Normalized", "a/../b/./c/", Path.normalizeResourcePath("//a//..//b/.///c//"));
+		String path = "www/app.js";
+		assertSame("Normalized", path, Path.normalizeResourcePath(path));
+	}
+
+	private static String legacyNormalizeResourcePath(final String path) {
+		String normalizedPath = path.trim().replaceAll("/+", "/");
+		if (normalizedPath.startsWith("/") && normalizedPath.length() > 1) {
+			normalizedPath = normalizedPath.substring(1);
+		}
+		return normalizedPath;
+	}
+
 }
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.ops4j.pax.web.service.spi.util.PrecompressedVariant.BROTLI;
+import static org.ops4j.pax.web.service.spi.util.PrecompressedVariant.GZIP;
+
+import org.junit.Test;
+
+public class PrecompressedVariantTest {
+
+	@Test
+	public void noVariantsAccepted() {
+		assertEquals(emptyList(), PrecompressedVariant.accepted(null));
+		assertEquals(emptyList(), PrecompressedVariant.accepted(""));
+		assertEquals(emptyList(), PrecompressedVariant.accepted("identity"));
+		assertEquals(emptyList(), PrecompressedVariant.accepted("deflate, gzip;q=0"));
+		assertEquals(emptyList(), PrecompressedVariant.accepted("*;q=0"));
+	}
+
+	@Test
+	public void variantsAreOrderedByQuality() {
+		assertEquals(asList(BROTLI, GZIP), PrecompressedVariant.accepted("gzip, deflate, br"));
+		assertEquals(asList(GZIP, BROTLI), PrecompressedVariant.accepted("br;q=0.5, gzip"));
+		assertEquals(asList(GZIP), PrecompressedVariant.accepted("GZip"));
+		assertEquals(asList(GZIP), PrecompressedVariant.accepted("x-gzip"));
+		assertEquals(asList(BROTLI), PrecompressedVariant.accepted("gzip; q=0, br; Q=0.1"));
+	}
+
+	@Test
+	public void wildcard() {
+		assertEquals(asList(BROTLI, GZIP), PrecompressedVariant.accepted("*"));
+		assertEquals(asList(BROTLI), PrecompressedVariant.accepted("*, gzip;q=0"));
+		assertEquals(asList(GZIP, BROTLI), PrecompressedVariant.accepted("*;q=0.2, gzip"));
+	}
+
+	@Test
+	public void variantPath() {
+		assertEquals("/js/app.js.br", BROTLI.getPath("/js/app.js"));
+		assertEquals("/js/app.js.gz", GZIP.getPath("/js/app.js"));
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.easymock.IAnswer;
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+
+public class ResourceDelegatingBundleClassLoaderTest {
+
+	@Test
+	public void onlyFoundResourcesAreCachedWithoutBundleContext() throws Exception {
+		URL url = new URL("file:/app/META-INF/services/x");
+		Bundle first = createNiceMock(Bundle.class);
+		Bundle second = createNiceMock(Bundle.class);
+		expect(first.getResource("META-INF/services/x")).andReturn(null).once();
+		expect(second.getResource("META-INF/services/x")).andReturn(url).once();
+		expect(first.getResource("missing")).andReturn(null).times(2);
+		expect(second.getResource("missing")).andReturn(null).times(2);
+		replay(first, second);
+
+		ResourceDelegatingBundleClassLoader cl = new ResourceDelegatingBundleClassLoader(Arrays.asList(first, second));
+		assertSame(url, cl.getResource("META-INF/services/x"));
+		assertSame(url, cl.getResource("META-INF/services/x"));
+		assertNull(cl.getResource("missing"));
+		assertNull(cl.getResource("missing"));
+		assertEquals(1L, cl.getCacheHits());
+		assertEquals(3L, cl.getCacheMisses());
+
+		verify(first, second);
+	}
+
+	@Test
+	public void missesAreCachedUntilBundlesAreResolved() throws Exception {
+		final AtomicReference<BundleListener> listener = new AtomicReference<>();
+		BundleContext bundleContext = createNiceMock(BundleContext.class);
+		bundleContext.addBundleListener((BundleListener) anyObject());
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			@Override
+			public Object answer() {
+				listener.set((BundleListener) getCurrentArguments()[0]);
+				return null;
+			}
+		});
+		Bundle bundle = createNiceMock(Bundle.class);
+		expect(bundle.getBundleContext()).andReturn(bundleContext).anyTimes();
+		expect(bundle.getResource("missing")).andReturn(null).times(2);
+		expect(bundle.getResources("missing")).andReturn(null).once();
+		expect(bundle.loadClass("x.Missing")).andThrow(new ClassNotFoundException("x.Missing")).times(2);
+		replay(bundleContext, bundle);
+
+		ResourceDelegatingBundleClassLoader cl = new ResourceDelegatingBundleClassLoader(
+				Collections.singletonList(bundle), null, 16);
+		assertNull(cl.getResource("missing"));
+		assertNull(cl.getResource("missing"));
+		assertEquals(0, Collections.list(cl.getResources("missing")).size());
+		assertEquals(0, Collections.list(cl.getResources("missing")).size());
+		loadMissingClass(cl);
+		loadMissingClass(cl);
+
+		// e.g. new provider of dynamically imported package
+		listener.get().bundleChanged(new BundleEvent(BundleEvent.RESOLVED, bundle));
+		assertNull(cl.getResource("missing"));
+		loadMissingClass(cl);
+
+		verify(bundleContext, bundle);
+	}
+
+	private void loadMissingClass(ClassLoader cl) {
+		try {
+			cl.loadClass("x.Missing");
+			fail("Class shouldn't be found");
+		} catch (ClassNotFoundException expected) {
+			assertEquals("x.Missing", expected.getMessage());
+		}
+	}
+
+}
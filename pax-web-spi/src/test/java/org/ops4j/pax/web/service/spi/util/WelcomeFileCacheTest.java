@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.spi.util;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class WelcomeFileCacheTest {
+
+	@Test
+	public void welcomeFileIsResolvedOnce() throws Exception {
+		WelcomeFileCache cache = new WelcomeFileCache();
+		BundleEntryIndex index = index(new Hashtable<>());
+		AtomicInteger lookups = new AtomicInteger();
+		WelcomeFileCache.Resolver resolver = directory -> {
+			lookups.incrementAndGet();
+			return "/app/".equals(directory) ? "/app/index.html" : null;
+		};
+
+		assertEquals("/app/index.html", cache.resolve(index, "/app/", resolver));
+		assertEquals("/app/index.html", cache.resolve(index, "/app/", resolver));
+		assertNull(cache.resolve(index, "/static/", resolver));
+		assertNull(cache.resolve(index, "/static/", resolver));
+		assertEquals(2, lookups.get());
+
+		// the bundle was updated
+		cache.resolve(index(new Hashtable<>()), "/app/", resolver);
+		assertEquals(3, lookups.get());
+		assertEquals(1, cache.size());
+
+		cache.clear();
+		cache.resolve(index, "/app/", resolver);
+		assertEquals(4, lookups.get());
+	}
+
+	@Test
+	public void uncoveredDirectoriesWithoutWelcomeFileAreNotRemembered() throws Exception {
+		Hashtable<String, String> headers = new Hashtable<>();
+		headers.put(Constants.BUNDLE_CLASSPATH, ".,WEB-INF/lib/resources.jar");
+		WelcomeFileCache cache = new WelcomeFileCache();
+		BundleEntryIndex index = index(headers);
+		AtomicInteger lookups = new AtomicInteger();
+		WelcomeFileCache.Resolver resolver = directory -> {
+			lookups.incrementAndGet();
+			return null;
+		};
+
+		assertNull(cache.resolve(index, "/static/", resolver));
+		assertNull(cache.resolve(index, "/static/", resolver));
+		assertNull(cache.resolve(null, "/static/", resolver));
+		assertEquals(3, lookups.get());
+		assertEquals(0, cache.size());
+	}
+
+	private BundleEntryIndex index(Hashtable<String, String> headers) {
+		Bundle bundle = createNiceMock(Bundle.class);
+		BundleWiring wiring = createNiceMock(BundleWiring.class);
+		expect(bundle.adapt(BundleWiring.class)).andReturn(wiring).anyTimes();
+		expect(bundle.getHeaders("")).andReturn(headers).anyTimes();
+		expect(wiring.getRequiredWires((String) anyObject())).andReturn(Collections.<BundleWire>emptyList()).anyTimes();
+		replay(bundle, wiring);
+		return BundleEntryIndex.build(bundle);
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.webresources.AbstractResourceSet;
+import org.apache.catalina.webresources.EmptyResource;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+
+/**
+ * <p>Read-only {@link org.apache.catalina.WebResourceSet} exposing resources of {@link WebContainerContext}
+ * (the context bundle, and for WABs also {@code /META-INF/resources} of its class space) to Tomcat's
+ * {@link WebResourceRoot}, so resources of OSGi contexts are cached by {@code StandardRoot} like resources of
+ * ordinary web applications.</p>
+ *
+ * <p>The set is used only for static resources. {@code /WEB-INF} and {@code /META-INF} are not visible, so
+ * Tomcat's class loader doesn't pick libraries and classes of the bundle - these are loaded by OSGi.</p>
+ */
+class BundleResourceSet extends AbstractResourceSet {
+
+	private static final String[] EMPTY = new String[0];
+
+	private final WebContainerContext httpContext;
+
+	BundleResourceSet(WebResourceRoot root, WebContainerContext httpContext) {
+		this.httpContext = httpContext;
+		setRoot(root);
+		setWebAppMount("/");
+		setStaticOnly(true);
+	}
+
+	@Override
+	public WebResource getResource(String path) {
+		checkPath(path);
+		if (isHidden(path)) {
+			return new EmptyResource(getRoot(), path);
+		}
+		URL url = httpContext.getResource(path);
+		if (url == null) {
+			return new EmptyResource(getRoot(), path);
+		}
+		BundleEntryIndex index = httpContext instanceof BundleEntryIndex.Provider
+				? ((BundleEntryIndex.Provider) httpContext).getBundleEntryIndex() : null;
+		return new BundleWebResource(getRoot(), path, url, index == null ? null : index.getCovered(path));
+	}
+
+	@Override
+	public String[] list(String path) {
+		Set<String> paths = listWebAppPaths(path);
+		String[] names = new String[paths.size()];
+		int i = 0;
+		for (String p : paths) {
+			String name = p.endsWith("/") ? p.substring(0, p.length() - 1) : p;
+			names[i++] = name.substring(name.lastIndexOf('/') + 1);
+		}
+		return i == 0 ? EMPTY : names;
+	}
+
+	@Override
+	public Set<String> listWebAppPaths(String path) {
+		checkPath(path);
+		if (isHidden(path)) {
+			return Collections.emptySet();
+		}
+		Set<String> paths = httpContext.getResourcePaths(path);
+		if (paths == null || paths.isEmpty()) {
+			return Collections.emptySet();
+		}
+		Set<String> result = new LinkedHashSet<>();
+		for (String p : paths) {
+			if (p == null) {
+				continue;
+			}
+			String webAppPath = p.startsWith("/") ? p : "/" + p;
+			if (!isHidden(webAppPath)) {
+				result.add(webAppPath);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean mkdir(String path) {
+		checkPath(path);
+		return false;
+	}
+
+	@Override
+	public boolean write(String path, InputStream is, boolean overwrite) {
+		checkPath(path);
+		return false;
+	}
+
+	@Override
+	public URL getBaseUrl() {
+		return null;
+	}
+
+	@Override
+	public void setReadOnly(boolean readOnly) {
+		// bundles are always read-only
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return true;
+	}
+
+	@Override
+	public void gc() {
+	}
+
+	@Override
+	protected void initInternal() {
+	}
+
+	private static boolean isHidden(String path) {
+		String p = path.toUpperCase(Locale.ENGLISH);
+		return p.equals("/WEB-INF") || p.startsWith("/WEB-INF/") || p.equals("/META-INF") || p.startsWith("/META-INF/");
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.cert.Certificate;
+import java.util.jar.Manifest;
+
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.webresources.AbstractResource;
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+
+/**
+ * {@link org.apache.catalina.WebResource} found by {@link BundleResourceSet}. Size and last modification time
+ * are taken from {@link BundleEntryIndex} if the resource is indexed, otherwise they're read once from
+ * the connection to the resource - Tomcat's cache decides how long the resource is valid.
+ */
+class BundleWebResource extends AbstractResource {
+
+	private static final Log LOG = LogFactory.getLog(BundleWebResource.class);
+
+	private final URL url;
+	private final String name;
+	private final boolean directory;
+	private final long contentLength;
+	private final long lastModified;
+
+	BundleWebResource(WebResourceRoot root, String webAppPath, URL url, BundleEntryIndex.Entry entry) {
+		super(root, webAppPath);
+		this.url = url;
+		String path = webAppPath.endsWith("/") ? webAppPath.substring(0, webAppPath.length() - 1) : webAppPath;
+		this.name = path.substring(path.lastIndexOf('/') + 1);
+
+		if (entry != null) {
+			directory = entry.isDirectory();
+			contentLength = directory ? -1L : entry.getSize();
+			lastModified = entry.getLastModified();
+			return;
+		}
+		boolean dir = url.getPath().endsWith("/");
+		long length = -1L;
+		long modified = 0L;
+		if (!dir) {
+			try {
+				URLConnection connection = url.openConnection();
+				try (InputStream in = connection.getInputStream()) {
+					length = connection.getContentLengthLong();
+					modified = connection.getLastModified();
+					// bundles return URLs of directory entries without trailing slash - just like resource
+					// servlets, entries without content are not served as files
+					dir = in.available() == 0 && length <= 0L;
+				}
+			} catch (IOException e) {
+				LOG.debug("Can't read metadata of " + url + ": " + e.getMessage());
+			}
+		}
+		directory = dir;
+		contentLength = dir ? -1L : length;
+		lastModified = modified;
+	}
+
+	@Override
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	@Override
+	public boolean exists() {
+		return true;
+	}
+
+	@Override
+	public boolean isVirtual() {
+		return false;
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	@Override
+	public boolean isFile() {
+		return !directory;
+	}
+
+	@Override
+	public boolean delete() {
+		return false;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public String getCanonicalPath() {
+		return null;
+	}
+
+	@Override
+	public boolean canRead() {
+		return true;
+	}
+
+	@Override
+	public byte[] getContent() {
+		if (directory || contentLength > Integer.MAX_VALUE) {
+			return null;
+		}
+		try (InputStream in = url.openStream()) {
+			ByteArrayOutputStream content = new ByteArrayOutputStream(contentLength < 0 ? 4096 : (int) contentLength);
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+			return content.toByteArray();
+		} catch (IOException e) {
+			LOG.debug("Can't read " + url + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public long getCreation() {
+		return lastModified;
+	}
+
+	@Override
+	public URL getURL() {
+		return url;
+	}
+
+	@Override
+	public URL getCodeBase() {
+		return null;
+	}
+
+	@Override
+	public Certificate[] getCertificates() {
+		return null;
+	}
+
+	@Override
+	public Manifest getManifest() {
+		return null;
+	}
+
+	@Override
+	protected InputStream doGetInputStream() {
+		if (directory) {
+			return null;
+		}
+		try {
+			return url.openStream();
+		} catch (IOException e) {
+			LOG.debug("Can't read " + url + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	protected Log getLog() {
+		return LOG;
+	}
+
+}
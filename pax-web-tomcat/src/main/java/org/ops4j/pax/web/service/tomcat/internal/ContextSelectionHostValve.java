@@ -16,25 +16,45 @@
 package org.ops4j.pax.web.service.tomcat.internal;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 
 import org.apache.catalina.Contained;
 import org.apache.catalina.Container;
+import org.apache.catalina.ContainerEvent;
+import org.apache.catalina.ContainerListener;
+import org.apache.catalina.Context;
 import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.Valve;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.connector.Response;
 import org.apache.catalina.mapper.Mapper;
 import org.apache.catalina.mapper.MappingData;
 import org.apache.catalina.valves.ValveBase;
+import org.apache.tomcat.util.buf.MessageBytes;
 
-public class ContextSelectionHostValve extends ValveBase {
+public class ContextSelectionHostValve extends ValveBase implements ContainerListener, LifecycleListener {
+
+	private static final String ADD_SERVLET_MAPPING_EVENT = "addServletMapping";
+	private static final String REMOVE_SERVLET_MAPPING_EVENT = "removeServletMapping";
 
 	Valve standardHostValve;
 	Mapper mapper;
 
+	/**
+	 * Context path -&gt; selection of context for the (started) contexts sharing this path. Rebuilt whenever
+	 * contexts are started/stopped or their servlet mappings change.
+	 */
+	private volatile Map<String, ContextSelection> selections = Collections.emptyMap();
+
 	public ContextSelectionHostValve(Valve standardHostValve, Mapper mapper) {
 		super(true);
 		this.standardHostValve = standardHostValve;
@@ -57,23 +77,112 @@ public class ContextSelectionHostValve extends ValveBase {
 		 * for the request URI and set the context and wrapper elements in the
 		 * mapping data accordingly. Afterwards the standard host valve is
 		 * executed with the modified request.
+		 *
+		 * The context is looked up in a precomputed selection of servlet
+		 * mappings, so only the selected context is mapped. Contexts are
+		 * tried one by one only if the selection doesn't find a context
+		 * (e.g. when welcome files are involved).
 		 */
 		MappingData md = request.getMappingData();
 		if (md.contexts != null && md.contexts.length > 1 && md.wrapper == null) {
+			MessageBytes uri = request.getDecodedRequestURIMB();
+			ContextSelection selection = selections.get(md.context.getPath());
+			Context selected = selection == null ? null : selection.select(md.contexts, uri.toString());
+			if (selected != null) {
+				md.context = selected;
+				map(selected, uri, md);
+			}
 			for (int i = 0; md.wrapper == null && i < md.contexts.length; i++) {
 				md.context = md.contexts[i];
-				mapper.map(md.context, request.getDecodedRequestURIMB(), md);
+				map(md.context, uri, md);
 			}
 		}
 		standardHostValve.invoke(request, response);
 	}
 
+	void map(Context context, MessageBytes uri, MappingData md) throws IOException {
+		mapper.map(context, uri, md);
+	}
+
 	@Override
 	public void setContainer(Container container) {
+		Container previous = getContainer();
+		if (previous != null) {
+			previous.removeContainerListener(this);
+			for (Container child : previous.findChildren()) {
+				child.removeContainerListener(this);
+				child.removeLifecycleListener(this);
+			}
+		}
 		super.setContainer(container);
 		if (standardHostValve instanceof Contained) {
 			((Contained) standardHostValve).setContainer(container);
 		}
+		if (container != null) {
+			container.addContainerListener(this);
+			for (Container child : container.findChildren()) {
+				child.addContainerListener(this);
+				child.addLifecycleListener(this);
+			}
+		}
+		rebuildSelections();
+	}
+
+	@Override
+	public void containerEvent(ContainerEvent event) {
+		if (event.getContainer() == getContainer()) {
+			if (Container.ADD_CHILD_EVENT.equals(event.getType())) {
+				Container child = (Container) event.getData();
+				child.addContainerListener(this);
+				child.addLifecycleListener(this);
+			} else if (Container.REMOVE_CHILD_EVENT.equals(event.getType())) {
+				Container child = (Container) event.getData();
+				child.removeContainerListener(this);
+				child.removeLifecycleListener(this);
+			} else {
+				return;
+			}
+		} else if (!ADD_SERVLET_MAPPING_EVENT.equals(event.getType())
+				&& !REMOVE_SERVLET_MAPPING_EVENT.equals(event.getType())) {
+			return;
+		}
+		rebuildSelections();
+	}
+
+	@Override
+	public void lifecycleEvent(LifecycleEvent event) {
+		if (Lifecycle.AFTER_START_EVENT.equals(event.getType())
+				|| Lifecycle.BEFORE_STOP_EVENT.equals(event.getType())) {
+			rebuildSelections();
+		}
+	}
+
+	/**
+	 * Groups started contexts by their path. Within a group, contexts are ordered the way Tomcat's
+	 * {@link Mapper} orders context versions.
+	 */
+	synchronized void rebuildSelections() {
+		Container host = getContainer();
+		if (host == null) {
+			selections = Collections.emptyMap();
+			return;
+		}
+		Map<String, List<Context>> contextsByPath = new HashMap<>();
+		for (Container child : host.findChildren()) {
+			if (child instanceof Context && child.getState().isAvailable()) {
+				Context context = (Context) child;
+				contextsByPath.computeIfAbsent(context.getPath(), p -> new ArrayList<>()).add(context);
+			}
+		}
+		Map<String, ContextSelection> newSelections = new HashMap<>();
+		for (Map.Entry<String, List<Context>> entry : contextsByPath.entrySet()) {
+			if (entry.getValue().size() > 1) {
+				entry.getValue().sort((c1, c2) -> String.valueOf(c1.getWebappVersion())
+						.compareTo(String.valueOf(c2.getWebappVersion())));
+				newSelections.put(entry.getKey(), new ContextSelection(entry.getKey(), entry.getValue()));
+			}
+		}
+		selections = newSelections;
 	}
 
 	@Override
@@ -91,4 +200,77 @@ public class ContextSelectionHostValve extends ValveBase {
 			((Lifecycle) standardHostValve).stop();
 		}
 	}
+
+	/**
+	 * Servlet mappings of all contexts sharing one context path. Every mapping points to the position of the
+	 * first context (in version order) declaring it, so the first context having <em>any</em> wrapper for
+	 * a request URI is found without asking the {@link Mapper} for each context.
+	 */
+	static final class ContextSelection {
+
+		private final int contextPathLength;
+		private final Context[] contexts;
+		private final Map<String, Integer> exactMappings = new HashMap<>();
+		private final Map<String, Integer> wildcardMappings = new HashMap<>();
+		private final Map<String, Integer> extensionMappings = new HashMap<>();
+		private int defaultMapping = Integer.MAX_VALUE;
+
+		ContextSelection(String contextPath, List<Context> contexts) {
+			this.contextPathLength = contextPath.length();
+			this.contexts = contexts.toArray(new Context[0]);
+			for (int i = 0; i < this.contexts.length; i++) {
+				for (String pattern : this.contexts[i].findServletMappings()) {
+					if ("/".equals(pattern)) {
+						defaultMapping = Math.min(defaultMapping, i);
+					} else if (pattern.endsWith("/*")) {
+						wildcardMappings.putIfAbsent(pattern.substring(0, pattern.length() - 2), i);
+					} else if (pattern.startsWith("*.")) {
+						extensionMappings.putIfAbsent(pattern.substring(2), i);
+					} else {
+						// "" is the context root mapping, which Tomcat treats as exact mapping of "/"
+						exactMappings.putIfAbsent(pattern.isEmpty() ? "/" : pattern, i);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Selects the context for a request URI.
+		 *
+		 * @param mappedContexts context versions as found by the {@link Mapper}
+		 * @param uri decoded request URI
+		 * @return the first context with a servlet mapping matching the URI or {@code null} if the selection
+		 * can't tell (in which case contexts have to be tried one by one)
+		 */
+		Context select(Context[] mappedContexts, String uri) {
+			if (mappedContexts.length != contexts.length || uri.length() <= contextPathLength) {
+				return null;
+			}
+			String path = uri.substring(contextPathLength);
+			if (path.charAt(path.length() - 1) == '/') {
+				// welcome files may be mapped for such path
+				return null;
+			}
+			int selected = defaultMapping;
+			selected = first(selected, exactMappings.get(path));
+			selected = first(selected, wildcardMappings.get(path));
+			int lastSlash = path.lastIndexOf('/');
+			for (int slash = lastSlash; slash >= 0 && selected > 0; slash = path.lastIndexOf('/', slash - 1)) {
+				selected = first(selected, wildcardMappings.get(path.substring(0, slash)));
+			}
+			int period = path.lastIndexOf('.');
+			if (period > lastSlash && !extensionMappings.isEmpty()) {
+				selected = first(selected, extensionMappings.get(path.substring(period + 1)));
+			}
+			if (selected == Integer.MAX_VALUE || mappedContexts[selected] != contexts[selected]) {
+				// nothing matches or the mapper doesn't know the same contexts (yet)
+				return null;
+			}
+			return contexts[selected];
+		}
+
+		private static int first(int selected, Integer candidate) {
+			return candidate == null ? selected : Math.min(selected, candidate);
+		}
+	}
 }
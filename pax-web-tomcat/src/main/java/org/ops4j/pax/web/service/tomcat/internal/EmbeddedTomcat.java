@@ -38,12 +38,14 @@ import org.apache.catalina.Host;
 import org.apache.catalina.Server;
 import org.apache.catalina.Service;
 import org.apache.catalina.Valve;
+import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.ContainerBase;
 import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.startup.Catalina;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.valves.AccessLogValve;
+import org.apache.catalina.webresources.StandardRoot;
 import org.apache.tomcat.util.digester.Digester;
 import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.spi.Configuration;
@@ -156,6 +158,12 @@ public class EmbeddedTomcat extends Tomcat {
 
 	private Boolean configurationSessionCookieHttpOnly;
 
+	private Integer configurationResourceCacheMaxEntries;
+
+	private Integer configurationResourceCacheMaxEntrySize;
+
+	private Integer configurationResourceCacheMaxSize;
+
 	private File configurationDir;
 
 	private EmbeddedTomcat() {
@@ -251,6 +259,10 @@ public class EmbeddedTomcat extends Tomcat {
 		configurationSessionCookieHttpOnly = configuration
 				.getSessionCookieHttpOnly();
 
+		configurationResourceCacheMaxEntries = configuration.getResourceCacheMaxEntries();
+		configurationResourceCacheMaxEntrySize = configuration.getResourceCacheMaxEntrySize();
+		configurationResourceCacheMaxSize = configuration.getResourceCacheMaxSize();
+
 		// NCSA Logger --> AccessLogValve
 		if (configuration.isLogNCSAFormatEnabled()) {
 			AccessLog ncsaLogger = new AccessLogValve();
@@ -507,6 +519,9 @@ public class EmbeddedTomcat extends Tomcat {
 		// new OSGi methods
 		((HttpServiceContext) ctx).setHttpContext(httpContext);
 		((HttpServiceContext) ctx).setContextAttributes(contextAttributes);
+		if (httpContext != null) {
+			ctx.setResources(createResources(ctx, httpContext));
+		}
 		// TODO: what about the AccessControlContext?
 		// TODO: the virtual host section below
 		// TODO: what about the VirtualHosts?
@@ -554,6 +569,26 @@ public class EmbeddedTomcat extends Tomcat {
 		return ctx;
 	}
 
+	/**
+	 * Creates resources of the context, where resources of the {@link WebContainerContext} take precedence
+	 * over the document base. Limits of Tomcat's resource cache are taken from
+	 * {@code org.ops4j.pax.web.server.resourceCache.*} properties.
+	 */
+	private WebResourceRoot createResources(Context context, WebContainerContext httpContext) {
+		StandardRoot resources = new StandardRoot(context);
+		resources.addPreResources(new BundleResourceSet(resources, httpContext));
+		resources.setCachingAllowed(configurationResourceCacheMaxEntries == null
+				|| configurationResourceCacheMaxEntries > 0);
+		// Tomcat's limits are in kilobytes
+		if (configurationResourceCacheMaxSize != null && configurationResourceCacheMaxSize > 0) {
+			resources.setCacheMaxSize(Math.max(1L, configurationResourceCacheMaxSize / 1024L));
+		}
+		if (configurationResourceCacheMaxEntrySize != null && configurationResourceCacheMaxEntrySize > 0) {
+			resources.setCacheObjectMaxSize(Math.max(1, configurationResourceCacheMaxEntrySize / 1024));
+		}
+		return resources;
+	}
+
 	public String generateContextName(String contextName, HttpContext httpContext) {
 		String contextId;
 		if (httpContext instanceof WebContainerContext) {
@@ -15,11 +15,14 @@
  */
 package org.ops4j.pax.web.service.tomcat.internal;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
@@ -32,7 +35,17 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.catalina.Context;
+import org.apache.catalina.Globals;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.apache.catalina.connector.RequestFacade;
 import org.apache.catalina.connector.ResponseFacade;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
+import org.ops4j.pax.web.service.spi.util.MimeTypeResolver;
+import org.ops4j.pax.web.service.spi.util.PrecompressedVariant;
+import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,12 +86,39 @@ public class TomcatResourceServlet extends HttpServlet {
 	private final String alias;
 	private final String name;
 	private final Context context;
+	private final ContentETags contentETags;
+	private final ExtractedResourceCache extractedResources;
+	private final Bundle bundle;
 	private String[] welcomes;
+	private volatile MimeTypeResolver mimeTypeResolver;
 
 	public TomcatResourceServlet(final HttpContext httpContext,
 								 final String contextName, final String alias, final String name,
 								 final Context context) {
+		this(httpContext, contextName, alias, name, context, null);
+	}
+
+	public TomcatResourceServlet(final HttpContext httpContext,
+								 final String contextName, final String alias, final String name,
+								 final Context context, final ContentETags contentETags) {
+		this(httpContext, contextName, alias, name, context, contentETags, null, null);
+	}
+
+	/**
+	 * @param contentETags       strong ETags of resources, {@code null} if ETags are based on last modification
+	 *                           time
+	 * @param extractedResources large bundle entries extracted to files, which are sent using sendfile, may be
+	 *                           {@code null}
+	 * @param bundle             bundle owning the http context
+	 */
+	public TomcatResourceServlet(final HttpContext httpContext,
+								 final String contextName, final String alias, final String name,
+								 final Context context, final ContentETags contentETags,
+								 final ExtractedResourceCache extractedResources, final Bundle bundle) {
 		this.httpContext = httpContext;
+		this.contentETags = contentETags;
+		this.extractedResources = extractedResources;
+		this.bundle = bundle;
 		this.contextName = "/" + contextName;
 		this.alias = alias;
 		if ("/".equals(name)) {
@@ -95,6 +135,26 @@ public class TomcatResourceServlet extends HttpServlet {
 	    if (welcomes == null) {
 	        welcomes = new String[]{"index.html", "index.jsp"};
 	    }
+	    mimeTypeResolver = null;
+	}
+
+	/**
+	 * Returns resolver of content types, which knows mime mappings of the context.
+	 */
+	private MimeTypeResolver mimeTypeResolver() {
+		MimeTypeResolver resolver = mimeTypeResolver;
+		if (resolver == null) {
+			Map<String, String> mappings = new HashMap<>();
+			String[] extensions = context.findMimeMappings();
+			if (extensions != null) {
+				for (String extension : extensions) {
+					mappings.put(extension, context.findMimeMapping(extension));
+				}
+			}
+			resolver = new MimeTypeResolver(mappings, null);
+			mimeTypeResolver = resolver;
+		}
+		return resolver;
 	}
 
 	@Override
@@ -135,7 +195,10 @@ public class TomcatResourceServlet extends HttpServlet {
 	    boolean endsWithSlash = (mapping == null ? request.getServletPath()
 	                : mapping).endsWith("/");
 
-		final URL url = httpContext.getResource(mapping);
+		// files are resolved through Tomcat's cache, other paths (and all of them, if caching is disabled)
+		// directly by http context
+		WebResource resource = getWebResource(mapping);
+		final URL url = resource != null ? resource.getURL() : httpContext.getResource(mapping);
 
 		if (url == null || "//".equals(mapping) && "bundleentry".equalsIgnoreCase(url.getProtocol())
 				|| "/".equals(mapping) && "bundleentry".equalsIgnoreCase(url.getProtocol())) {
@@ -149,16 +212,25 @@ public class TomcatResourceServlet extends HttpServlet {
 			return;
 		}
 
+		// metadata of bundle entries is known without opening the URL
+		BundleEntryIndex index = httpContext instanceof BundleEntryIndex.Provider
+				? ((BundleEntryIndex.Provider) httpContext).getBundleEntryIndex() : null;
+		BundleEntryIndex.Entry indexed = index == null ? null : index.getCovered(mapping);
+
 		URLConnection connection = null;
 		try {
 			boolean foundResource;
-			try {
-				// new Resource(url.openStream());
-				connection = url.openConnection();
-				connection.connect();
+			if (indexed != null || resource != null) {
 				foundResource = true;
-			} catch (IOException ioex) {
-				foundResource = false;
+			} else {
+				try {
+					// new Resource(url.openStream());
+					connection = url.openConnection();
+					connection.connect();
+					foundResource = true;
+				} catch (IOException ioex) {
+					foundResource = false;
+				}
 			}
 
 			if (!foundResource && !endsWithSlash) {
@@ -171,7 +243,9 @@ public class TomcatResourceServlet extends HttpServlet {
 			// let's check if this is maybe a directory. org.osgi.framework.Bundle.getResource()
 			// returns proper URL for directory entry and we can't tell if it's a directory or not
 			boolean possibleDirectoryBundleEntry = false;
-			if (foundResource) {
+			if (indexed != null) {
+				possibleDirectoryBundleEntry = indexed.isDirectory();
+			} else if (foundResource && resource == null) {
 				try (InputStream peek = url.openStream()) {
 					possibleDirectoryBundleEntry = peek.available() == 0;
 				}
@@ -209,18 +283,76 @@ public class TomcatResourceServlet extends HttpServlet {
 				return;
 			}
 
+			// serve precompressed variant of the resource if the client accepts it
+			URL content = url;
+			BundleEntryIndex.Entry indexedContent = indexed;
+			WebResource contentResource = resource;
+			String encoding = null;
+			if (!included) {
+				for (PrecompressedVariant variant
+						: PrecompressedVariant.accepted(request.getHeader(PrecompressedVariant.ACCEPT_ENCODING))) {
+					String variantPath = variant.getPath(mapping);
+					WebResource variantResource = getWebResource(variantPath);
+					URL variantUrl = variantResource != null ? variantResource.getURL()
+							: httpContext.getResource(variantPath);
+					if (variantUrl == null || variantUrl.getPath().endsWith("/")) {
+						continue;
+					}
+					BundleEntryIndex.Entry indexedVariant = index == null ? null : index.getCovered(variantPath);
+					URLConnection variantConnection = null;
+					if (indexedVariant != null) {
+						if (indexedVariant.isDirectory()) {
+							continue;
+						}
+					} else if (variantResource == null) {
+						try {
+							variantConnection = variantUrl.openConnection();
+							variantConnection.connect();
+						} catch (IOException ioex) {
+							continue;
+						}
+					}
+					if (connection != null) {
+						try {
+							connection.getInputStream().close();
+						} catch (IOException e) {
+							// ignore
+						}
+					}
+					connection = variantConnection;
+					indexedContent = indexedVariant;
+					contentResource = variantResource;
+					content = variantUrl;
+					encoding = variant.getEncoding();
+					break;
+				}
+			}
+			// the response depends on Accept-Encoding, even if the resource has no precompressed variants
+			response.setHeader(PrecompressedVariant.VARY, PrecompressedVariant.ACCEPT_ENCODING);
+
 			// if the request contains an etag and its the same for the
-			// resource, we deliver a NOT MODIFIED response
-			String eTag = String.valueOf(connection.getLastModified());
-			if ((request.getHeader(IF_NONE_MATCH) != null) && (eTag.equals(request.getHeader(IF_NONE_MATCH)))) {
+			// resource, we deliver a NOT MODIFIED response. Each variant has own ETag
+			long lastModified = indexedContent != null ? indexedContent.getLastModified()
+					: contentResource != null ? contentResource.getLastModified() : connection.getLastModified();
+			String eTag;
+			if (contentETags != null) {
+				eTag = contentETags.getETag(content, lastModified);
+			} else {
+				eTag = String.valueOf(lastModified);
+				if (encoding != null) {
+					eTag = eTag + "-" + encoding;
+				}
+			}
+			if (ContentETags.matches(request.getHeader(IF_NONE_MATCH), eTag)) {
 				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 				return;
 			} else if (request.getHeader(IF_MODIFIED_SINCE) != null) {
 				long ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
-				if (connection.getLastModified() > 0) {
+				if (lastModified > 0) {
 					// resource.lastModified()/1000 <= ifmsl/1000
-					if (connection.getLastModified() / SECOND <= ifModifiedSince / SECOND) {
+					if (lastModified / SECOND <= ifModifiedSince / SECOND) {
 						response.reset();
+						response.setHeader(PrecompressedVariant.VARY, PrecompressedVariant.ACCEPT_ENCODING);
 						response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
 						response.flushBuffer();
 						return;
@@ -230,7 +362,7 @@ public class TomcatResourceServlet extends HttpServlet {
 				long modifiedSince = request.getDateHeader(IF_UNMODIFIED_SINCE);
 
 				if (modifiedSince != -1) {
-					if (connection.getLastModified() / SECOND > modifiedSince / SECOND) {
+					if (lastModified / SECOND > modifiedSince / SECOND) {
 						response.sendError(HttpServletResponse.SC_PRECONDITION_FAILED);
 						return;
 					}
@@ -239,6 +371,9 @@ public class TomcatResourceServlet extends HttpServlet {
 
 			// set the etag
 			response.setHeader(ETAG, eTag);
+			if (encoding != null) {
+				response.setHeader(PrecompressedVariant.CONTENT_ENCODING, encoding);
+			}
 
 			// String mimeType = m_httpContext.getMimeType(mapping);
 			String mimeType = getServletContext().getMimeType(url.getFile());
@@ -249,16 +384,7 @@ public class TomcatResourceServlet extends HttpServlet {
 			 */
 
 			if (mimeType == null) {
-				try {
-					if (url.openConnection() != null) {
-						mimeType = url.openConnection().getContentType();
-					}
-				} catch (IOException | NullPointerException ignore) {
-					// we do not care about such an exception as the fact that
-					// we are using also the connection for
-					// finding the mime type is just a "nice to have" not an
-					// requirement
-				}
+				mimeType = mimeTypeResolver().getMimeType(mapping);
 			}
 
 			if (mimeType == null) {
@@ -270,6 +396,10 @@ public class TomcatResourceServlet extends HttpServlet {
 				response.setContentType(mimeType);
 			}
 
+			if (sendFile(request, response, content, indexedContent, lastModified, included)) {
+				return;
+			}
+
 			ServletOutputStream out = response.getOutputStream();
 			if (out != null) { // null should be just in unit testing
 				ServletResponse r = response;
@@ -280,7 +410,16 @@ public class TomcatResourceServlet extends HttpServlet {
 					((ResponseFacade) r).getContentWritten();
 				}
 
-				IOException ioException = copyRange(url.openStream(), out);
+				IOException ioException;
+				byte[] cachedContent = contentResource == null ? null : contentResource.getContent();
+				if (cachedContent != null) {
+					response.setContentLength(cachedContent.length);
+					out.write(cachedContent);
+					ioException = null;
+				} else {
+					ioException = copyRange(contentResource != null ? contentResource.getInputStream()
+							: content.openStream(), out);
+				}
 
 				if (ioException != null) {
 					response.sendError(HttpServletResponse.SC_NOT_FOUND);
@@ -297,6 +436,57 @@ public class TomcatResourceServlet extends HttpServlet {
 		}
 	}
 
+	/**
+	 * Returns a file of the context's {@link WebResourceRoot}. {@link BundleResourceSet} is mounted first, so
+	 * it's the only source of these files. Tomcat's cache keeps their metadata (revalidated after cache TTL) and
+	 * content of small files, so http context is consulted only when the cache entry is (re)loaded.
+	 *
+	 * @param path path of the resource in context
+	 * @return the file or {@code null} if resources are not cached or the root has no file with given path
+	 */
+	private WebResource getWebResource(final String path) {
+		WebResourceRoot resources = context.getResources();
+		if (resources == null || !resources.isCachingAllowed() || path == null || !path.startsWith("/")) {
+			return null;
+		}
+		try {
+			WebResource resource = resources.getResource(path);
+			return resource != null && resource.isFile() ? resource : null;
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			// invalid path or resources not started
+			return null;
+		}
+	}
+
+	/**
+	 * Lets the connector send large bundle entry using sendfile, after it's extracted to a file. Just like
+	 * Tomcat's {@code DefaultServlet}, sendfile is used only for requests and responses which are not wrapped.
+	 *
+	 * @return {@code true} if the content will be sent by the connector
+	 */
+	private boolean sendFile(final HttpServletRequest request, final HttpServletResponse response,
+			final URL content, final BundleEntryIndex.Entry indexedContent, final long lastModified,
+			final boolean included) {
+		if (extractedResources == null || indexedContent == null || bundle == null || included
+				|| !Boolean.TRUE.equals(request.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR))
+				|| !(request instanceof RequestFacade) || !(response instanceof ResponseFacade)) {
+			return false;
+		}
+		long length = indexedContent.getSize();
+		if (!extractedResources.accepts(length)) {
+			return false;
+		}
+		File file = extractedResources.getFile(bundle, content, lastModified, length);
+		if (file == null) {
+			return false;
+		}
+		response.setContentLengthLong(length);
+		request.setAttribute(Globals.SENDFILE_FILENAME_ATTR, file.getAbsolutePath());
+		request.setAttribute(Globals.SENDFILE_FILE_START_ATTR, 0L);
+		request.setAttribute(Globals.SENDFILE_FILE_END_ATTR, length);
+		return true;
+	}
+
 	/**
 	 * Finds a matching welcome file for the supplied {@link Resource}. This
 	 * will be the first entry in the list of configured {@link #_welcomes
@@ -17,6 +17,8 @@
 package org.ops4j.pax.web.service.tomcat.internal;
 
 import org.ops4j.pax.web.service.spi.Configuration;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 
 /**
  * @author Romain Gilles
@@ -29,6 +31,8 @@ public class TomcatServerFactory implements ServerFactory {
 	@Override
 	public ServerWrapper newServer(Configuration configuration) {
 		return TomcatServerWrapper.getInstance(EmbeddedTomcat
-				.newEmbeddedTomcat(configuration));
+				.newEmbeddedTomcat(configuration),
+				Boolean.TRUE.equals(configuration.isStrongETags()) ? new ContentETags() : null,
+				ExtractedResourceCache.create(configuration));
 	}
 }
\ No newline at end of file
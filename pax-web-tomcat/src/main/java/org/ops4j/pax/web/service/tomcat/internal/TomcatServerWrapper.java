@@ -104,6 +104,8 @@ import org.ops4j.pax.web.service.spi.model.Model;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 import org.ops4j.pax.web.service.spi.util.ResourceDelegatingBundleClassLoader;
 import org.ops4j.pax.web.utils.ServletContainerInitializerScanner;
 import org.osgi.framework.Bundle;
@@ -300,13 +302,18 @@ class TomcatServerWrapper implements ServerWrapper {
 	private Map<String, Object> contextAttributes;
 
 	private Bundle tomcatBundle;
+	private final ContentETags contentETags;
+	private final ExtractedResourceCache extractedResourceCache;
 	@SuppressWarnings("deprecation")
 	private ServiceTracker<PackageAdmin, PackageAdmin> packageAdminTracker;
 	
 
-	private TomcatServerWrapper(final EmbeddedTomcat server) {
+	private TomcatServerWrapper(final EmbeddedTomcat server, final ContentETags contentETags,
+								final ExtractedResourceCache extractedResourceCache) {
 		NullArgumentException.validateNotNull(server, "server");
 		this.server = server;
+		this.contentETags = contentETags;
+		this.extractedResourceCache = extractedResourceCache;
 		((ContainerBase) server.getHost()).setStartChildren(false);
 		TomcatURLStreamHandlerFactory.disable();
 
@@ -327,8 +334,15 @@ class TomcatServerWrapper implements ServerWrapper {
 		}
 	}
 
-	static ServerWrapper getInstance(final EmbeddedTomcat server) {
-		return new TomcatServerWrapper(server);
+	/**
+	 * @param contentETags strong ETags of static resources, {@code null} if ETags should be based on last
+	 *                     modification time
+	 * @param extractedResourceCache large bundle entries extracted to files, {@code null} if resources should
+	 *                     be streamed from bundles
+	 */
+	static ServerWrapper getInstance(final EmbeddedTomcat server, final ContentETags contentETags,
+									 final ExtractedResourceCache extractedResourceCache) {
+		return new TomcatServerWrapper(server, contentETags, extractedResourceCache);
 	}
 
 	@Override
@@ -810,7 +824,8 @@ class TomcatServerWrapper implements ServerWrapper {
 		LOG.debug("createResourceServlet( contextModel: {}, alias: {}, name: {})");
 		final Context context = findOrCreateContext(contextModel);
 		return new TomcatResourceServlet(contextModel.getHttpContext(),
-				contextModel.getContextName(), alias, name, context);
+				contextModel.getContextName(), alias, name, context, contentETags, extractedResourceCache,
+				contextModel.getBundle());
 	}
 
 	@Override
@@ -975,9 +990,11 @@ class TomcatServerWrapper implements ServerWrapper {
 		// Similar to the Jetty fix for PAXWEB-725
 		// Without this the el implementation is not found
         ClassLoader classLoader = contextModel.getClassLoader();
-        List<Bundle> bundles = ((ResourceDelegatingBundleClassLoader) classLoader).getBundles();
+        ResourceDelegatingBundleClassLoader webAppClassLoader = (ResourceDelegatingBundleClassLoader) classLoader;
+        List<Bundle> bundles = webAppClassLoader.getBundles();
         ClassLoader parentClassLoader = getClass().getClassLoader();
-        ResourceDelegatingBundleClassLoader containerSpecificClassLoader = new ResourceDelegatingBundleClassLoader(bundles, parentClassLoader);
+        ResourceDelegatingBundleClassLoader containerSpecificClassLoader = new ResourceDelegatingBundleClassLoader(
+                bundles, parentClassLoader, webAppClassLoader.getCacheSize());
         context.setParentClassLoader(containerSpecificClassLoader);
 
 		// support default context.xml in configurationDir or config fragment
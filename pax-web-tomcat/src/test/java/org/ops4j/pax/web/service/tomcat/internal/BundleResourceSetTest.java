@@ -0,0 +1,84 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.web.service.WebContainerContext;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BundleResourceSetTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private WebContainerContext httpContext;
+	private BundleResourceSet resources;
+
+	@Before
+	public void setUp() {
+		httpContext = mock(WebContainerContext.class);
+		resources = new BundleResourceSet(mock(WebResourceRoot.class), httpContext);
+	}
+
+	@Test
+	public void resourceOfHttpContext() throws Exception {
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		assertTrue(file.setLastModified(1500000000000L));
+		when(httpContext.getResource("/www/app.js")).thenReturn(file.toURI().toURL());
+
+		WebResource resource = resources.getResource("/www/app.js");
+		assertTrue(resource.exists());
+		assertTrue(resource.isFile());
+		assertEquals("app.js", resource.getName());
+		assertEquals("/www/app.js", resource.getWebappPath());
+		assertEquals(15L, resource.getContentLength());
+		assertEquals(1500000000000L, resource.getLastModified());
+		assertArrayEquals("alert('hello');".getBytes(StandardCharsets.UTF_8), resource.getContent());
+
+		assertFalse(resources.getResource("/www/missing.js").exists());
+	}
+
+	@Test
+	public void classSpaceIsHidden() throws Exception {
+		File file = folder.newFile("web.xml");
+		when(httpContext.getResource("/WEB-INF/web.xml")).thenReturn(file.toURI().toURL());
+		when(httpContext.getResourcePaths("/")).thenReturn(new HashSet<>(Arrays.asList("/WEB-INF/", "/www/", "index.html")));
+
+		assertFalse(resources.getResource("/WEB-INF/web.xml").exists());
+		assertEquals(new HashSet<>(Arrays.asList("/www/", "/index.html")), resources.listWebAppPaths("/"));
+		assertEquals(new HashSet<>(Arrays.asList("www", "index.html")), new HashSet<>(Arrays.asList(resources.list("/"))));
+		assertTrue(resources.isReadOnly());
+	}
+
+}
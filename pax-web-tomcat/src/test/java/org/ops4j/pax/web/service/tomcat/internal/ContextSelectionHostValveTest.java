@@ -0,0 +1,172 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.catalina.ContainerEvent;
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.Valve;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.mapper.Mapper;
+import org.apache.catalina.mapper.MappingData;
+import org.apache.catalina.mapper.WrapperMappingInfo;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContextSelectionHostValveTest {
+
+	private static final String HOST = "localhost";
+
+	private Mapper mapper;
+	private StandardHost host;
+	private ContextSelectionHostValve valve;
+	private final AtomicInteger mappings = new AtomicInteger();
+
+	@Before
+	public void setUp() {
+		mapper = new Mapper();
+		host = new StandardHost();
+		host.setName(HOST);
+		mapper.addHost(HOST, new String[0], host);
+		mapper.setDefaultHostName(HOST);
+		valve = new ContextSelectionHostValve(mock(Valve.class), mapper) {
+			@Override
+			void map(Context context, MessageBytes uri, MappingData md) throws IOException {
+				mappings.incrementAndGet();
+				super.map(context, uri, md);
+			}
+		};
+		valve.setContainer(host);
+	}
+
+	/**
+	 * Many bundles (each with own HttpContext) registering servlets under "/" - each request is mapped
+	 * only against the context owning the servlet, regardless of the number of contexts.
+	 */
+	@Test
+	public void selectionDoesNotDependOnNumberOfContexts() throws Exception {
+		List<Context> contexts = new ArrayList<>();
+		for (int i = 0; i < 96; i++) {
+			contexts.add(addContext(i, "/servlet" + i + "/*", "*.ext" + i));
+			if (i == 11 || i == 47 || i == 95) {
+				for (int j = 0; j < i; j++) {
+					mappings.set(0);
+					assertSame(contexts.get(j), invoke("/servlet" + j + "/info").context);
+					assertEquals(1, mappings.get());
+
+					mappings.set(0);
+					assertSame(contexts.get(j), invoke("/resources/file.ext" + j).context);
+					assertEquals(1, mappings.get());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void firstContextWithMatchingMappingIsSelected() throws Exception {
+		Context c0 = addContext(0, "/a/b/*");
+		Context c1 = addContext(1, "/a/*", "/exact");
+		Context c2 = addContext(2, "/exact", "*.jsp");
+		addContext(3, "/other");
+
+		assertSame(c0, invoke("/a/b/c").context);
+		assertSame(c1, invoke("/a/c").context);
+		assertSame(c1, invoke("/a").context);
+		assertSame(c1, invoke("/exact").context);
+		assertSame(c0, invoke("/a/b/page.jsp").context);
+		assertSame(c2, invoke("/page.jsp").context);
+	}
+
+	@Test
+	public void contextsAreTriedOneByOneWhenSelectionCantTell() throws Exception {
+		addContext(0, "/a/*");
+		addContext(1, "/b/*");
+		addContext(2, "/c/*");
+
+		mappings.set(0);
+		MappingData md = invoke("/unknown");
+		assertNull(md.wrapper);
+		assertEquals(3, mappings.get());
+
+		// welcome files may be mapped for directories
+		mappings.set(0);
+		invoke("/a/");
+		assertEquals(1, mappings.get());
+	}
+
+	@Test
+	public void selectionFollowsMappingChanges() throws Exception {
+		Context c0 = addContext(0, "/a/*");
+		Context c1 = addContext(1, "/b/*");
+		addContext(2, "/c/*");
+		assertSame(c1, invoke("/b/info").context);
+
+		when(c0.findServletMappings()).thenReturn(new String[] { "/a/*", "/b/*" });
+		mapper.addWrapper(HOST, "", "ctx-00", "/b/*", mock(Wrapper.class), false, false);
+		valve.containerEvent(new ContainerEvent(c0, "addServletMapping", "/b/*"));
+
+		mappings.set(0);
+		assertSame(c0, invoke("/b/info").context);
+		assertEquals(1, mappings.get());
+
+		host.removeChild(c0);
+		mapper.removeContextVersion(c0, HOST, "", "ctx-00");
+		assertSame(c1, invoke("/b/info").context);
+	}
+
+	private Context addContext(int index, String... patterns) {
+		String version = String.format("ctx-%02d", index);
+		Context context = mock(Context.class);
+		when(context.getName()).thenReturn(version);
+		when(context.getPath()).thenReturn("");
+		when(context.getWebappVersion()).thenReturn(version);
+		when(context.getState()).thenReturn(LifecycleState.STARTED);
+		when(context.findServletMappings()).thenReturn(patterns);
+		List<WrapperMappingInfo> wrappers = new ArrayList<>();
+		for (String pattern : patterns) {
+			wrappers.add(new WrapperMappingInfo(pattern, mock(Wrapper.class), false, false));
+		}
+		mapper.addContextVersion(HOST, host, "", version, context, new String[0], null, wrappers);
+		host.addChild(context);
+		return context;
+	}
+
+	private MappingData invoke(String uri) throws Exception {
+		Request request = new Request();
+		org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+		request.setCoyoteRequest(coyoteRequest);
+		coyoteRequest.serverName().setString(HOST);
+		coyoteRequest.decodedURI().setString(uri);
+		mapper.map(coyoteRequest.serverName(), coyoteRequest.decodedURI(), null, request.getMappingData());
+		valve.invoke(request, null);
+		return request.getMappingData();
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.tomcat.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.WebResource;
+import org.apache.catalina.WebResourceRoot;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.osgi.service.http.HttpContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TomcatResourceServletTest {
+
+	private static final long LAST_MODIFIED = 1500000000000L;
+
+	private final Map<String, byte[]> entries = new HashMap<>();
+
+	private HttpContext httpContext;
+	private Context context;
+	private ServletConfig config;
+	private TomcatResourceServlet servlet;
+
+	@Before
+	public void setUp() throws Exception {
+		httpContext = mock(HttpContext.class);
+		when(httpContext.getResource(anyString())).then(invocation -> {
+			String path = (String) invocation.getArguments()[0];
+			return entries.containsKey(path) ? entry(path) : null;
+		});
+
+		context = mock(Context.class);
+		when(context.findWelcomeFiles()).thenReturn(new String[0]);
+		ServletContext servletContext = mock(ServletContext.class);
+		when(servletContext.getMimeType("/app.js")).thenReturn("application/javascript");
+		config = mock(ServletConfig.class);
+		when(config.getServletContext()).thenReturn(servletContext);
+
+		servlet = new TomcatResourceServlet(httpContext, "", "/", "default", context);
+		servlet.init(config);
+
+		entries.put("/app.js", "alert('hello');".getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void resourceIsSentWhenThereAreNoVariants() throws Exception {
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		assertEquals("alert('hello');", get("gzip, br", response));
+		verify(response).setHeader("Vary", "Accept-Encoding");
+		verify(response).setHeader("ETag", String.valueOf(LAST_MODIFIED));
+		verify(response, never()).setHeader("Content-Encoding", "gzip");
+	}
+
+	@Test
+	public void mostPreferredVariantIsSent() throws Exception {
+		entries.put("/app.js.gz", "gzipped".getBytes(StandardCharsets.UTF_8));
+		entries.put("/app.js.br", "brotli".getBytes(StandardCharsets.UTF_8));
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		assertEquals("brotli", get("gzip, deflate, br", response));
+		verify(response).setContentType("application/javascript");
+		verify(response).setHeader("Content-Encoding", "br");
+		verify(response).setHeader("Vary", "Accept-Encoding");
+		verify(response).setHeader("ETag", LAST_MODIFIED + "-br");
+
+		response = mock(HttpServletResponse.class);
+		assertEquals("gzipped", get("gzip, br;q=0.5", response));
+		verify(response).setHeader("Content-Encoding", "gzip");
+		verify(response).setHeader("ETag", LAST_MODIFIED + "-gzip");
+
+		response = mock(HttpServletResponse.class);
+		assertEquals("alert('hello');", get(null, response));
+		verify(response).setHeader("Vary", "Accept-Encoding");
+		verify(response).setHeader("ETag", String.valueOf(LAST_MODIFIED));
+	}
+
+	@Test
+	public void contentETags() throws Exception {
+		entries.put("/app.js.gz", "gzipped".getBytes(StandardCharsets.UTF_8));
+		servlet = new TomcatResourceServlet(httpContext, "", "/", "default", context, new ContentETags());
+		servlet.init(config);
+		String eTag = ContentETags.getETag("alert('hello');".getBytes(StandardCharsets.UTF_8));
+		String gzETag = ContentETags.getETag("gzipped".getBytes(StandardCharsets.UTF_8));
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		assertEquals("alert('hello');", get(null, response));
+		verify(response).setHeader("ETag", eTag);
+
+		response = mock(HttpServletResponse.class);
+		assertEquals("gzipped", get("gzip", response));
+		verify(response).setHeader("ETag", gzETag);
+
+		response = mock(HttpServletResponse.class);
+		assertEquals("", get(null, eTag, response));
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+	}
+
+	@Test
+	public void cachedFileIsServedWithoutContextLookup() throws Exception {
+		WebResourceRoot resources = cachingResources();
+		WebResource cached = mock(WebResource.class);
+		when(cached.isFile()).thenReturn(true);
+		when(cached.getURL()).thenReturn(entry("/app.js"));
+		when(cached.getLastModified()).thenReturn(LAST_MODIFIED);
+		when(cached.getContent()).thenReturn("alert('hello');".getBytes(StandardCharsets.UTF_8));
+		when(resources.getResource("/app.js")).thenReturn(cached);
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		assertEquals("alert('hello');", get(null, response));
+		verify(response).setHeader("ETag", String.valueOf(LAST_MODIFIED));
+		verify(httpContext, never()).getResource("/app.js");
+	}
+
+	@Test
+	public void resourceWhichIsNotCachedFileIsResolvedByContext() throws Exception {
+		WebResourceRoot resources = cachingResources();
+		WebResource missing = mock(WebResource.class);
+		when(resources.getResource(anyString())).thenReturn(missing);
+
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		assertEquals("alert('hello');", get(null, response));
+		verify(httpContext).getResource("/app.js");
+	}
+
+	private WebResourceRoot cachingResources() {
+		WebResourceRoot resources = mock(WebResourceRoot.class);
+		when(resources.isCachingAllowed()).thenReturn(true);
+		when(context.getResources()).thenReturn(resources);
+		return resources;
+	}
+
+	private String get(String acceptEncoding, HttpServletResponse response) throws Exception {
+		return get(acceptEncoding, null, response);
+	}
+
+	private String get(String acceptEncoding, String ifNoneMatch, HttpServletResponse response) throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestURI()).thenReturn("/app.js");
+		when(request.getHeader("Accept-Encoding")).thenReturn(acceptEncoding);
+		when(request.getHeader("If-None-Match")).thenReturn(ifNoneMatch);
+		when(request.getDateHeader(anyString())).thenReturn(-1L);
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+
+			@Override
+			public void write(int b) {
+				content.write(b);
+			}
+		});
+
+		servlet.doGet(request, response);
+		return new String(content.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns URL of a bundle entry backed by {@link #entries}.
+	 */
+	private URL entry(String path) throws Exception {
+		return new URL("bundleentry", "1.fwk", -1, path, new URLStreamHandler() {
+			@Override
+			protected URLConnection openConnection(URL u) {
+				return new URLConnection(u) {
+					@Override
+					public void connect() {
+					}
+
+					@Override
+					public long getLastModified() {
+						return LAST_MODIFIED;
+					}
+
+					@Override
+					public InputStream getInputStream() {
+						return new ByteArrayInputStream(entries.get(u.getPath()));
+					}
+				};
+			}
+		});
+	}
+
+}
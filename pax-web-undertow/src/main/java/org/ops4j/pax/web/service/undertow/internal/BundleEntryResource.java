@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.net.URL;
+import java.util.Date;
+
+import io.undertow.server.handlers.resource.URLResource;
+import io.undertow.util.DateUtils;
+import io.undertow.util.ETag;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+
+/**
+ * {@link io.undertow.server.handlers.resource.Resource} of single bundle entry, which takes size and last
+ * modification time from the {@link BundleEntryIndex} instead of opening new connection each time. Serving
+ * (also ranges) is left to {@link URLResource}.
+ */
+class BundleEntryResource extends URLResource {
+
+	private final BundleEntryIndex.Entry entry;
+
+	BundleEntryResource(URL url, String path, BundleEntryIndex.Entry entry) {
+		super(url, path);
+		this.entry = entry;
+	}
+
+	@Override
+	public Date getLastModified() {
+		return new Date(entry.getLastModified());
+	}
+
+	@Override
+	public String getLastModifiedString() {
+		return DateUtils.toDateString(getLastModified());
+	}
+
+	@Override
+	public Long getContentLength() {
+		long size = entry.getSize();
+		return size < 0 ? super.getContentLength() : size;
+	}
+
+	/**
+	 * Weak ETag - bundle entries have only the last modification time of the bundle. The size distinguishes
+	 * precompressed variants of a resource.
+	 */
+	@Override
+	public ETag getETag() {
+		return new ETag(true, entry.getLastModified() + "-" + getContentLength());
+	}
+
+	/**
+	 * Bundle entry URLs are the same after bundle update - content cached by
+	 * {@link io.undertow.server.handlers.resource.CachingResourceManager} is bound to the revision.
+	 */
+	@Override
+	public String getCacheKey() {
+		return getUrl().toString() + "@" + entry.getLastModified();
+	}
+
+}
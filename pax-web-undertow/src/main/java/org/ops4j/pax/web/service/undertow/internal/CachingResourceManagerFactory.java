@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import io.undertow.server.handlers.cache.DirectBufferCache;
+import io.undertow.server.handlers.resource.CachingResourceManager;
+import io.undertow.server.handlers.resource.ResourceManager;
+import org.ops4j.pax.web.service.spi.Configuration;
+
+/**
+ * Creates Undertow's {@link CachingResourceManager resource managers} for resource servlets of single server.
+ * Metadata of resources is cached per resource servlet, content of small resources is kept in
+ * {@link DirectBufferCache} shared by the whole server. Limits are taken from
+ * {@code org.ops4j.pax.web.server.resourceCache.*} properties.
+ *
+ * Caching is enabled by default - 1024 entries per servlet and up to 16 MiB of direct buffers per server.
+ * Setting {@code org.ops4j.pax.web.server.resourceCache.maxEntries} to {@code 0} disables it.
+ */
+class CachingResourceManagerFactory {
+
+	// how often (ms) cached resources check their last modification time
+	static final int MAX_AGE = 5000;
+
+	private static final int SLICE_SIZE = 1024;
+	private static final int SLICES_PER_PAGE = 64;
+
+	private final int maxEntries;
+	private final long maxEntrySize;
+	private final DirectBufferCache dataCache;
+
+	CachingResourceManagerFactory(int maxEntries, long maxEntrySize, int maxSize) {
+		this.maxEntries = maxEntries;
+		this.maxEntrySize = maxEntrySize;
+		this.dataCache = maxSize > 0 && maxEntrySize > 0
+				? new DirectBufferCache(SLICE_SIZE, SLICES_PER_PAGE, maxSize) : null;
+	}
+
+	/**
+	 * @param config configuration of the server
+	 * @return factory or {@code null} if resources should not be cached
+	 */
+	static CachingResourceManagerFactory create(Configuration config) {
+		Integer maxEntries = config.getResourceCacheMaxEntries();
+		if (maxEntries == null || maxEntries <= 0) {
+			return null;
+		}
+		Integer maxEntrySize = config.getResourceCacheMaxEntrySize();
+		Integer maxSize = config.getResourceCacheMaxSize();
+		return new CachingResourceManagerFactory(maxEntries,
+				maxEntrySize == null ? 0L : maxEntrySize,
+				maxSize == null ? 0 : maxSize);
+	}
+
+	/**
+	 * @param resourceManager resource manager of resource servlet
+	 * @return new caching resource manager
+	 */
+	CachingResourceManager create(ResourceManager resourceManager) {
+		return new CachingResourceManager(maxEntries, dataCache == null ? 0L : maxEntrySize, dataCache,
+				resourceManager, MAX_AGE);
+	}
+
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.RangeAwareResource;
+import io.undertow.server.handlers.resource.Resource;
+import io.undertow.util.ETag;
+import io.undertow.util.MimeMappings;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link Resource} with strong ETag computed from its content. {@link io.undertow.server.handlers.resource.URLResource}
+ * has no ETag at all, so {@link io.undertow.server.handlers.resource.ResourceHandler} can only use
+ * {@code If-Modified-Since} for bundle entries.
+ */
+class ContentETagResource implements RangeAwareResource {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ContentETagResource.class);
+
+	private final Resource resource;
+	private final ContentETags contentETags;
+
+	ContentETagResource(Resource resource, ContentETags contentETags) {
+		this.resource = resource;
+		this.contentETags = contentETags;
+	}
+
+	@Override
+	public ETag getETag() {
+		Date lastModified = resource.getLastModified();
+		try {
+			String eTag = contentETags.getETag(resource.getUrl(), lastModified == null ? -1L : lastModified.getTime());
+			return new ETag(false, eTag.substring(1, eTag.length() - 1));
+		} catch (IOException e) {
+			LOG.debug("Can't compute ETag of {}: {}", resource.getUrl(), e.getMessage());
+			return resource.getETag();
+		}
+	}
+
+	@Override
+	public String getPath() {
+		return resource.getPath();
+	}
+
+	@Override
+	public Date getLastModified() {
+		return resource.getLastModified();
+	}
+
+	@Override
+	public String getLastModifiedString() {
+		return resource.getLastModifiedString();
+	}
+
+	@Override
+	public String getName() {
+		return resource.getName();
+	}
+
+	@Override
+	public boolean isDirectory() {
+		return resource.isDirectory();
+	}
+
+	@Override
+	public List<Resource> list() {
+		return resource.list();
+	}
+
+	@Override
+	public String getContentType(MimeMappings mimeMappings) {
+		return resource.getContentType(mimeMappings);
+	}
+
+	@Override
+	public void serve(Sender sender, HttpServerExchange exchange, IoCallback completionCallback) {
+		resource.serve(sender, exchange, completionCallback);
+	}
+
+	@Override
+	public void serveRange(Sender sender, HttpServerExchange exchange, long start, long end,
+						   IoCallback completionCallback) {
+		((RangeAwareResource) resource).serveRange(sender, exchange, start, end, completionCallback);
+	}
+
+	@Override
+	public boolean isRangeSupported() {
+		return resource instanceof RangeAwareResource && ((RangeAwareResource) resource).isRangeSupported();
+	}
+
+	@Override
+	public Long getContentLength() {
+		return resource.getContentLength();
+	}
+
+	@Override
+	public String getCacheKey() {
+		return resource.getCacheKey();
+	}
+
+	@Override
+	public File getFile() {
+		return resource.getFile();
+	}
+
+	@Override
+	public Path getFilePath() {
+		return resource.getFilePath();
+	}
+
+	@Override
+	public File getResourceManagerRoot() {
+		return resource.getResourceManagerRoot();
+	}
+
+	@Override
+	public Path getResourceManagerRootPath() {
+		return resource.getResourceManagerRootPath();
+	}
+
+	@Override
+	public URL getUrl() {
+		return resource.getUrl();
+	}
+
+}
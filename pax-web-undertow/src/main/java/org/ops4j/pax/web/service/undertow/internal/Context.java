@@ -52,7 +52,9 @@ import org.ops4j.pax.web.service.spi.model.ResourceModel;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
 import org.ops4j.pax.web.service.spi.util.ResourceDelegatingBundleClassLoader;
+import org.ops4j.pax.web.service.spi.util.WelcomeFileCache;
 import org.ops4j.pax.web.utils.ServletContainerInitializerScanner;
 import org.osgi.framework.*;
 import org.osgi.service.packageadmin.PackageAdmin;
@@ -72,6 +74,7 @@ import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceChangeListener;
 import io.undertow.server.handlers.resource.ResourceManager;
 import io.undertow.server.handlers.resource.URLResource;
+import io.undertow.servlet.api.Deployment;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.DeploymentManager;
 import io.undertow.servlet.api.ErrorPage;
@@ -85,6 +88,10 @@ import io.undertow.servlet.api.ServletContainerInitializerInfo;
 import io.undertow.servlet.api.ServletInfo;
 import io.undertow.servlet.api.TransportGuaranteeType;
 import io.undertow.servlet.api.WebResourceCollection;
+import io.undertow.servlet.core.DeploymentImpl;
+import io.undertow.servlet.core.ErrorPages;
+import io.undertow.servlet.core.ManagedFilter;
+import io.undertow.servlet.core.ManagedServlet;
 import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.servlet.util.ConstructorInstanceFactory;
 import io.undertow.servlet.util.ImmediateInstanceFactory;
@@ -104,10 +111,11 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 	private final ContextModel contextModel;
 	private final Set<ServletModel> servlets = new LinkedHashSet<>();
 	private final Set<WelcomeFileModel> welcomeFiles = new LinkedHashSet<>();
+	private final WelcomeFileCache welcomeFileCache = new WelcomeFileCache();
 	private final Set<ErrorPageModel> errorPages = new LinkedHashSet<>();
 	private final Set<EventListenerModel> eventListeners = new LinkedHashSet<>();
 	private final Set<SecurityConstraintMappingModel> securityConstraintMappings = new LinkedHashSet<>();
-	private final Set<FilterModel> filters = new TreeSet<>(new FilterRankComparator());
+	private final NavigableSet<FilterModel> filters = new TreeSet<>(new FilterRankComparator());
 	private final Set<ContainerInitializerModel> containerInitializers = new LinkedHashSet<>();
 	private final List<ServiceRegistration<ServletContext>> registeredServletContexts = new ArrayList<>();
 	private final ServletContainer container = ServletContainer.Factory.newInstance();
@@ -132,15 +140,17 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		this.path = path;
 		this.contextModel = contextModel;
 
+		undertowBundle = FrameworkUtil.getBundle(getClass());
+
 		ClassLoader classLoader = contextModel.getClassLoader();
 		List<Bundle> bundles = ((ResourceDelegatingBundleClassLoader) classLoader).getBundles();
-		BundleClassLoader parentClassLoader = new BundleClassLoader(FrameworkUtil.getBundle(getClass()));
+		// outside of OSGi framework (in unit tests) classes of the server come from the class path
+		ClassLoader parentClassLoader = undertowBundle == null ? getClass().getClassLoader()
+				: new BundleClassLoader(undertowBundle);
 		this.classLoader = new ResourceDelegatingBundleClassLoader(bundles, parentClassLoader);
 
 		LOG.info("registering context {}, with context path: /{}", contextModel.getHttpContext(), contextModel.getContextName());
 
-		undertowBundle = FrameworkUtil.getBundle(getClass());
-
 		if (undertowBundle != null) {
 			Filter filterPackage = null;
 			try {
@@ -263,7 +273,11 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 
 	@Override
 	public void handleRequest(HttpServerExchange exchange) throws Exception {
-		HttpHandler h = getHandler(null);
+		// once the deployment is built, the handler is read without taking the Context monitor
+		HttpHandler h = handler;
+		if (h == null) {
+			h = getHandler(null);
+		}
 		if (h != null) {
 			// Put back original request path
 			String path = exchange.getRequestPath();
@@ -281,6 +295,7 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 	/**
 	 * Creates a new HttpHandler if not already available.
 	 * Once the the ServletContext for this Context has been created, it will be applied to a given (optional) consumer.
+	 * Only the lazy creation path is synchronized - request processing reads the volatile {@link #handler} first.
 	 * The consumer is used to update a ServletContext-OSGi-service which is actually a proxy
 	 * @param consumer optional function to work with new ServletContext.
 	 * @return fully initialized HttpHandler
@@ -328,6 +343,109 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		}
 	}
 
+	/**
+	 * Applies a registration change to the running deployment, without redeploying it. Requests which already
+	 * matched a servlet chain finish with it, the following ones use path matches rebuilt after the change.
+	 * If there's no deployment, there's nothing to do - the change is picked up when the handler is (lazily)
+	 * created. If the change can't be applied to the running deployment, it is destroyed, so a burst of such
+	 * changes results in a single rebuild on next request.
+	 * @param update incremental change returning {@code false} when full redeployment is needed
+	 * @throws ServletException if the deployment can't be destroyed
+	 */
+	private synchronized void updateDeployment(DeploymentUpdate update) throws ServletException {
+		if (manager == null) {
+			return;
+		}
+		Deployment deployment = manager.getDeployment();
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		try {
+			Thread.currentThread().setContextClassLoader(classLoader);
+			// request threads rebuild invalidated path matches from DeploymentInfo, ManagedServlets and
+			// ManagedFilters while holding the ServletPathMatches monitor - holding it for the whole change
+			// means they never read these (not thread-safe) structures while they're modified
+			synchronized (deployment.getServletPaths()) {
+				if (update.apply(deployment)) {
+					deployment.getServletPaths().invalidate();
+					LOG.debug("Updated deployment of context /{}", contextModel.getContextName());
+					return;
+				}
+			}
+		} catch (ServletException | RuntimeException e) {
+			LOG.warn("Can't update deployment of context /{}, it will be recreated: {}",
+					contextModel.getContextName(), e.getMessage(), e);
+		} finally {
+			Thread.currentThread().setContextClassLoader(cl);
+		}
+		destroyHandler();
+	}
+
+	private boolean addServlet(Deployment deployment, ServletModel model) throws ServletException {
+		if (isFallbackDefaultServlet(model) || isDefaultServletMapping(model)) {
+			// the implicit "default" servlet is chosen when the deployment is created
+			return false;
+		}
+		ServletInfo info = servletInfo(model);
+		if (deployment.getServlets().getServletHandler(info.getName()) != null) {
+			return false;
+		}
+		deployment.getDeploymentInfo().addServlet(info);
+		// adding a servlet to ManagedServlets invalidates the path matches
+		ManagedServlet servlet = deployment.getServlets().addServlet(info).getManagedServlet();
+		servlet.start();
+		if (info.getLoadOnStartup() != null && info.getLoadOnStartup() >= 0) {
+			servlet.createServlet();
+		}
+		return true;
+	}
+
+	private boolean addFilter(Deployment deployment, FilterModel model) throws ServletException {
+		if (filters.last() != model || deployment.getFilters().getManagedFilter(model.getName()) != null) {
+			// filter chains follow the order of mappings, so only a filter ranked last can be appended
+			return false;
+		}
+		FilterInfo info = filterInfo(model);
+		DeploymentInfo deploymentInfo = deployment.getDeploymentInfo();
+		deploymentInfo.addFilter(info);
+		ManagedFilter filter = deployment.getFilters().addFilter(info);
+		filter.start();
+		if (deploymentInfo.isEagerFilterInit()) {
+			filter.createFilter();
+		}
+		addFilterMappings(deploymentInfo, model);
+		return true;
+	}
+
+	private boolean updateWelcomeFiles(Deployment deployment) {
+		List<String> welcomePages = welcomePages();
+		deployment.getServletPaths().setWelcomePages(welcomePages);
+		for (ServletModel servlet : servlets) {
+			if (isFallbackDefaultServlet(servlet)) {
+				((ResourceServlet) servlet.getServlet()).configureWelcomeFiles(welcomePages);
+			}
+		}
+		return true;
+	}
+
+	private boolean updateErrorPages(Deployment deployment) {
+		if (!(deployment instanceof DeploymentImpl)) {
+			return false;
+		}
+		Map<Integer, String> codes = new HashMap<>();
+		Map<Class<? extends Throwable>, String> exceptions = new HashMap<>();
+		String defaultLocation = null;
+		for (ErrorPage page : errorPageInfos()) {
+			if (page.getExceptionType() != null) {
+				exceptions.put(page.getExceptionType(), page.getLocation());
+			} else if (page.getErrorCode() != null) {
+				codes.put(page.getErrorCode(), page.getLocation());
+			} else {
+				defaultLocation = page.getLocation();
+			}
+		}
+		((DeploymentImpl) deployment).setErrorPages(new ErrorPages(codes, exceptions, defaultLocation));
+		return true;
+	}
+
 	private String getContextPathForOsgi(final ServletContext servletContext){
 		String contextPath = servletContext.getContextPath();
 		// Undertows ServletContextImpl maps "/" to "". In OSGi path must start with /
@@ -421,36 +539,18 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		boolean defaultServletAdded = false;
 		ServletModel fallbackDefaultServlet = null;
 		for (ServletModel servlet : servlets) {
-			if (servlet instanceof ResourceModel
-					&& "default".equalsIgnoreCase(servlet.getName())) {
+			if (isFallbackDefaultServlet(servlet)) {
 				// this is a default resource, so ignore it
 				fallbackDefaultServlet = servlet;
 				// we have to configure webapp-wide welcome files here
-				List<String> welcomePages = new LinkedList<>();
-				welcomeFiles.forEach(model -> welcomePages.addAll(Arrays.asList(model.getWelcomeFiles())));
+				List<String> welcomePages = welcomePages();
 				if (welcomePages.size() > 0) {
 					((ResourceServlet)servlet.getServlet()).configureWelcomeFiles(welcomePages);
 				}
 				continue;
 			}
-			ServletInfo info = new ServletInfo(
-					servlet.getName(),
-					clazz(servlet.getServletClass(), servlet.getServlet()),
-					factory(servlet.getServletClass(), servlet.getServlet())
-			);
-			for (Map.Entry<String, String> param : servlet.getInitParams().entrySet()) {
-				info.addInitParam(param.getKey(), param.getValue());
-			}
-			info.addMappings(servlet.getUrlPatterns());
-			defaultServletAdded = servlet.getUrlPatterns() != null
-					&& Arrays.stream(servlet.getUrlPatterns()).anyMatch("/"::equals);
-                        if (Boolean.valueOf(servlet.getInitParams().get("async-supported"))) {
- 			    info.setAsyncSupported(true);
- 			} else {
- 			    info.setAsyncSupported(servlet.getAsyncSupported() != null ? servlet.getAsyncSupported() : false);
- 			}
-			info.setLoadOnStartup(servlet.getLoadOnStartup() != null ? servlet.getLoadOnStartup() : -1);
-			deployment.addServlet(info);
+			defaultServletAdded = isDefaultServletMapping(servlet);
+			deployment.addServlet(servletInfo(servlet));
 		}
 		if (!defaultServletAdded && fallbackDefaultServlet != null) {
 			LOG.info("Adding implicit \"default\" servlet");
@@ -464,36 +564,7 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		for (WelcomeFileModel welcomeFile : welcomeFiles) {
 			deployment.addWelcomePages(welcomeFile.getWelcomeFiles());
 		}
-		for (ErrorPageModel errorPage : errorPages) {
-			try {
-				int error = Integer.parseInt(errorPage.getError());
-				deployment.addErrorPage(new ErrorPage(errorPage.getLocation(), error));
-			} catch (NumberFormatException nfe) {
-				// for Nxx codes, we have to loop
-				// Undertow doesn't support error code range handlers, but
-				// in the end - it's just a io.undertow.servlet.core.ErrorPages.errorCodeLocations map of code -> location
-				if ("4xx".equals(errorPage.getError())) {
-					for (int c = 400; c < 500; c++) {
-						deployment.addErrorPage(new ErrorPage(errorPage.getLocation(), c));
-					}
-				} else if ("5xx".equals(errorPage.getError())) {
-					for (int c = 500; c < 600; c++) {
-						deployment.addErrorPage(new ErrorPage(errorPage.getLocation(), c));
-					}
-				} else {
-					// must be an exception then
-					try {
-						@SuppressWarnings("unchecked")
-						Class<? extends Throwable> clazz = (Class<? extends Throwable>)
-								classLoader.loadClass(errorPage.getError());
-						deployment.addErrorPage(new ErrorPage(errorPage.getLocation(), clazz));
-					} catch (ClassNotFoundException cnfe) {
-						cnfe.addSuppressed(nfe);
-						throw new IllegalArgumentException("Unsupported error: " + errorPage.getError(), cnfe);
-					}
-				}
-			}
-		}
+		deployment.addErrorPages(errorPageInfos());
 		if (contextModel.getContextParams() != null) {
 			for (Map.Entry<String, String> entry : contextModel.getContextParams().entrySet()) {
 				deployment.addInitParameter(entry.getKey(), entry.getValue());
@@ -501,7 +572,8 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		}
 
 		Bundle bundle = contextModel.getBundle();
-		ServletContainerInitializerScanner scanner = new ServletContainerInitializerScanner(bundle, undertowBundle, packageAdminTracker.getService());
+		ServletContainerInitializerScanner scanner = new ServletContainerInitializerScanner(bundle, undertowBundle,
+				packageAdminTracker == null ? null : packageAdminTracker.getService());
 		Map<ServletContainerInitializer, Set<Class<?>>> containerInitializers = contextModel.getContainerInitializers();
 		if (containerInitializers == null) {
 			containerInitializers = new HashMap<>();
@@ -518,34 +590,8 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		}
 
 		for (FilterModel filter : filters) {
-			FilterInfo info = new FilterInfo(filter.getName(),
-					clazz(filter.getFilterClass(), filter.getFilter()),
-					factory(filter.getFilterClass(), filter.getFilter()));
-			for (Map.Entry<String, String> param : filter.getInitParams().entrySet()) {
-				info.addInitParam(param.getKey(), param.getValue());
-			}
-			info.setAsyncSupported(filter.isAsyncSupported());
-
-			deployment.addFilter(info);
-			String[] dispatchers = filter.getDispatcher();
-			if (dispatchers == null || dispatchers.length == 0) {
-				dispatchers = new String[]{"request"};
-			}
-			for (String dispatcher : dispatchers) {
-				DispatcherType dt = DispatcherType.valueOf(dispatcher.toUpperCase());
-				String[] servletNames = filter.getServletNames();
-				if (servletNames != null) {
-					for (String servletName : servletNames) {
-						deployment.addFilterServletNameMapping(filter.getName(), servletName, dt);
-					}
-				}
-				String[] urlPatterns = filter.getUrlPatterns();
-				if (urlPatterns != null) {
-					for (String urlPattern : urlPatterns) {
-						deployment.addFilterUrlMapping(filter.getName(), urlPattern, dt);
-					}
-				}
-			}
+			deployment.addFilter(filterInfo(filter));
+			addFilterMappings(deployment, filter);
 		}
 		for (SecurityConstraintMappingModel securityConstraintMapping : securityConstraintMappings) {
 			SecurityConstraint info = new SecurityConstraint();
@@ -685,6 +731,108 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		handler = manager.start();
 	}
 
+	private ServletInfo servletInfo(ServletModel servlet) throws ServletException {
+		ServletInfo info = new ServletInfo(
+				servlet.getName(),
+				clazz(servlet.getServletClass(), servlet.getServlet()),
+				factory(servlet.getServletClass(), servlet.getServlet())
+		);
+		for (Map.Entry<String, String> param : servlet.getInitParams().entrySet()) {
+			info.addInitParam(param.getKey(), param.getValue());
+		}
+		info.addMappings(servlet.getUrlPatterns());
+		if (Boolean.valueOf(servlet.getInitParams().get("async-supported"))) {
+			info.setAsyncSupported(true);
+		} else {
+			info.setAsyncSupported(servlet.getAsyncSupported() != null ? servlet.getAsyncSupported() : false);
+		}
+		info.setLoadOnStartup(servlet.getLoadOnStartup() != null ? servlet.getLoadOnStartup() : -1);
+		return info;
+	}
+
+	private static boolean isDefaultServletMapping(ServletModel servlet) {
+		return servlet.getUrlPatterns() != null
+				&& Arrays.stream(servlet.getUrlPatterns()).anyMatch("/"::equals);
+	}
+
+	private static boolean isFallbackDefaultServlet(ServletModel servlet) {
+		return servlet instanceof ResourceModel && "default".equalsIgnoreCase(servlet.getName());
+	}
+
+	private FilterInfo filterInfo(FilterModel filter) throws ServletException {
+		FilterInfo info = new FilterInfo(filter.getName(),
+				clazz(filter.getFilterClass(), filter.getFilter()),
+				factory(filter.getFilterClass(), filter.getFilter()));
+		for (Map.Entry<String, String> param : filter.getInitParams().entrySet()) {
+			info.addInitParam(param.getKey(), param.getValue());
+		}
+		info.setAsyncSupported(filter.isAsyncSupported());
+		return info;
+	}
+
+	private static void addFilterMappings(DeploymentInfo deployment, FilterModel filter) {
+		String[] dispatchers = filter.getDispatcher();
+		if (dispatchers == null || dispatchers.length == 0) {
+			dispatchers = new String[]{"request"};
+		}
+		for (String dispatcher : dispatchers) {
+			DispatcherType dt = DispatcherType.valueOf(dispatcher.toUpperCase());
+			String[] servletNames = filter.getServletNames();
+			if (servletNames != null) {
+				for (String servletName : servletNames) {
+					deployment.addFilterServletNameMapping(filter.getName(), servletName, dt);
+				}
+			}
+			String[] urlPatterns = filter.getUrlPatterns();
+			if (urlPatterns != null) {
+				for (String urlPattern : urlPatterns) {
+					deployment.addFilterUrlMapping(filter.getName(), urlPattern, dt);
+				}
+			}
+		}
+	}
+
+	private List<String> welcomePages() {
+		List<String> welcomePages = new LinkedList<>();
+		welcomeFiles.forEach(model -> welcomePages.addAll(Arrays.asList(model.getWelcomeFiles())));
+		return welcomePages;
+	}
+
+	private List<ErrorPage> errorPageInfos() {
+		List<ErrorPage> pages = new ArrayList<>();
+		for (ErrorPageModel errorPage : errorPages) {
+			try {
+				int error = Integer.parseInt(errorPage.getError());
+				pages.add(new ErrorPage(errorPage.getLocation(), error));
+			} catch (NumberFormatException nfe) {
+				// for Nxx codes, we have to loop
+				// Undertow doesn't support error code range handlers, but
+				// in the end - it's just a io.undertow.servlet.core.ErrorPages.errorCodeLocations map of code -> location
+				if ("4xx".equals(errorPage.getError())) {
+					for (int c = 400; c < 500; c++) {
+						pages.add(new ErrorPage(errorPage.getLocation(), c));
+					}
+				} else if ("5xx".equals(errorPage.getError())) {
+					for (int c = 500; c < 600; c++) {
+						pages.add(new ErrorPage(errorPage.getLocation(), c));
+					}
+				} else {
+					// must be an exception then
+					try {
+						@SuppressWarnings("unchecked")
+						Class<? extends Throwable> clazz = (Class<? extends Throwable>)
+								classLoader.loadClass(errorPage.getError());
+						pages.add(new ErrorPage(errorPage.getLocation(), clazz));
+					} catch (ClassNotFoundException cnfe) {
+						cnfe.addSuppressed(nfe);
+						throw new IllegalArgumentException("Unsupported error: " + errorPage.getError(), cnfe);
+					}
+				}
+			}
+		}
+		return pages;
+	}
+
 	private ServletExtension getAuthenticator(String method) {
 		ServiceLoader<AuthenticatorService> sl = ServiceLoader.load(AuthenticatorService.class, getClass().getClassLoader());
 		for (AuthenticatorService svc : sl) {
@@ -734,11 +882,21 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 			} else if (resource.toString().endsWith("/")) {
 				return new DirectoryResource(resource);
 			} else {
+				// metadata of bundle entries is known without opening the URL
+				BundleEntryIndex index = null;
+				if (context instanceof BundleEntryIndex.Provider) {
+					index = ((BundleEntryIndex.Provider) context).getBundleEntryIndex();
+				}
+				BundleEntryIndex.Entry indexed = index == null ? null : index.getCovered(path);
 				// let's check if this is maybe a directory. org.osgi.framework.Bundle.getResource()
 				// returns proper URL for directory entry and we can't tell if it's a directory or not
 				boolean possibleDirectoryBundleEntry = false;
-				try (InputStream peek = resource.openStream()) {
-					possibleDirectoryBundleEntry = peek.available() == 0;
+				if (indexed != null) {
+					possibleDirectoryBundleEntry = indexed.isDirectory();
+				} else {
+					try (InputStream peek = resource.openStream()) {
+						possibleDirectoryBundleEntry = peek.available() == 0;
+					}
 				}
 				if (possibleDirectoryBundleEntry) {
 				    // consult welcome files
@@ -748,19 +906,25 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 					} else {
 						realBase = path + "/";
 					}
-					final URLResource[] indexResource = new URLResource[1];
-					welcomeFiles.forEach(wfm -> {
-						for (String wf : wfm.getWelcomeFiles()) {
-							URL index = context.getResource(CanonicalPathUtils.canonicalize(realBase + wf));
-							if (index != null) {
-								indexResource[0] = new URLResource(index, path);
+					String welcomeFile = welcomeFileCache.resolve(index, realBase, directory -> {
+						for (WelcomeFileModel wfm : welcomeFiles) {
+							for (String wf : wfm.getWelcomeFiles()) {
+								String candidate = CanonicalPathUtils.canonicalize(directory + wf);
+								if (context.getResource(candidate) != null) {
+									return candidate;
+								}
 							}
 						}
+						return null;
 					});
-					if (indexResource[0] != null) {
-						return indexResource[0];
+					URL welcome = welcomeFile == null ? null : context.getResource(welcomeFile);
+					if (welcome != null) {
+						return new URLResource(welcome, path);
 					}
 				}
+				if (indexed != null && !indexed.isDirectory()) {
+					return new BundleEntryResource(resource, path, indexed);
+				}
 				return new URLResource(resource, path);
 			}
 		} else {
@@ -817,7 +981,7 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 	public synchronized void addServlet(ServletModel model) throws ServletException {
 		if (servlets.add(model)) {
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(deployment -> addServlet(deployment, model));
 				doStart(model);
 			}
 		}
@@ -834,16 +998,18 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 
 	public synchronized void addWelcomeFile(WelcomeFileModel welcomeFile) throws ServletException {
 		if (welcomeFiles.add(welcomeFile)) {
+			welcomeFileCache.clear();
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(this::updateWelcomeFiles);
 			}
 		}
 	}
 
 	public synchronized void removeWelcomeFile(WelcomeFileModel welcomeFile) throws ServletException {
 		if (welcomeFiles.remove(welcomeFile)) {
+			welcomeFileCache.clear();
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(this::updateWelcomeFiles);
 			}
 		}
 	}
@@ -851,15 +1017,15 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 	public synchronized void addErrorPage(ErrorPageModel model) throws ServletException {
 		if (errorPages.add(model)) {
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(this::updateErrorPages);
 			}
 		}
 	}
 
-	public void removeErrorPage(ErrorPageModel model) throws ServletException {
+	public synchronized void removeErrorPage(ErrorPageModel model) throws ServletException {
 		if (errorPages.remove(model)) {
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(this::updateErrorPages);
 			}
 		}
 	}
@@ -880,15 +1046,15 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		}
 	}
 
-	public void addFilter(FilterModel model) throws ServletException {
+	public synchronized void addFilter(FilterModel model) throws ServletException {
 		if (filters.add(model)) {
 			if (started.get()) {
-				destroyHandler();
+				updateDeployment(deployment -> addFilter(deployment, model));
 			}
 		}
 	}
 
-	public void removeFilter(FilterModel model) throws ServletException {
+	public synchronized void removeFilter(FilterModel model) throws ServletException {
 		if (filters.remove(model)) {
 			if (started.get()) {
 				destroyHandler();
@@ -1040,6 +1206,14 @@ public class Context implements LifeCycle, HttpHandler, ResourceManager {
 		}
 	}
 
+	/**
+	 * Change applied to a running deployment.
+	 */
+	@FunctionalInterface
+	private interface DeploymentUpdate {
+		boolean apply(Deployment deployment) throws ServletException;
+	}
+
 	private class FilterRankComparator implements Comparator<FilterModel> {
 		@Override
 		public int compare(FilterModel fm1, FilterModel fm2) {
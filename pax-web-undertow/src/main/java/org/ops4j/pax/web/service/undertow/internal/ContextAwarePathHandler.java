@@ -16,6 +16,8 @@
 package org.ops4j.pax.web.service.undertow.internal;
 
 import java.util.Dictionary;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.Servlet;
 
 import io.undertow.Handlers;
@@ -23,7 +25,6 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.server.handlers.ResponseCodeHandler;
-import io.undertow.server.handlers.cache.LRUCache;
 import org.osgi.service.http.HttpContext;
 
 /**
@@ -38,13 +39,26 @@ import org.osgi.service.http.HttpContext;
  */
 public class ContextAwarePathHandler extends PathHandler {
 
+	/**
+	 * Number of request paths, for which matches are cached, when no other size is configured.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
 	private final PathMatcher<HttpHandler> pathMatcher = new PathMatcher<>();
 
-	private final LRUCache<String, PathMatcher.PathMatch<HttpHandler>> cache;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+
+	private int cacheSize;
+
+	/**
+	 * Cached matches for the current state of {@link #pathMatcher}. Replaced (never cleared) whenever
+	 * the paths change, so a match computed concurrently with the change ends up in a discarded cache.
+	 */
+	private volatile RouteCache cache;
 
 	public ContextAwarePathHandler(final HttpHandler defaultHandler) {
-		this(0);
-		pathMatcher.addPrefixPath("/", defaultHandler);
+		this(defaultHandler, DEFAULT_CACHE_SIZE);
 	}
 
 	public ContextAwarePathHandler(final HttpHandler defaultHandler, int cacheSize) {
@@ -53,35 +67,31 @@ public class ContextAwarePathHandler extends PathHandler {
 	}
 
 	public ContextAwarePathHandler() {
-		this(0);
+		this(DEFAULT_CACHE_SIZE);
 	}
 
 	public ContextAwarePathHandler(int cacheSize) {
-		if(cacheSize > 0) {
-			cache = new LRUCache<>(cacheSize, -1, true);
-		} else {
-			cache = null;
-		}
+		setCacheSize(cacheSize);
 	}
 
 	@Override
 	public void handleRequest(HttpServerExchange exchange) throws Exception {
-		PathMatcher.PathMatch<HttpHandler> match = null;
-		boolean hit = false;
-		if(cache != null) {
-			match = cache.get(exchange.getRelativePath());
-			hit = true;
-		}
-		if(match == null) {
-			match = pathMatcher.match(exchange.getRelativePath());
+		String relativePath = exchange.getRelativePath();
+		RouteCache routes = cache;
+		PathMatcher.PathMatch<HttpHandler> match = routes == null ? null : routes.get(relativePath);
+		if (match != null) {
+			cacheHits.increment();
+		} else {
+			match = pathMatcher.match(relativePath);
+			if (routes != null) {
+				cacheMisses.increment();
+				routes.put(relativePath, match);
+			}
 		}
 		if (match.getValue() == null) {
 			ResponseCodeHandler.HANDLE_404.handleRequest(exchange);
 			return;
 		}
-		if(hit) {
-			cache.add(exchange.getRelativePath(), match);
-		}
 		exchange.setRelativePath(match.getRemaining());
 		if(exchange.getResolvedPath().isEmpty()) {
 			//first path handler, we can just use the matched part
@@ -96,6 +106,34 @@ public class ContextAwarePathHandler extends PathHandler {
 		match.getValue().handleRequest(exchange);
 	}
 
+	/**
+	 * Changes the maximum number of request paths, for which matches are cached. {@code 0} disables the cache.
+	 *
+	 * @param cacheSize maximum number of cached matches
+	 */
+	public synchronized void setCacheSize(int cacheSize) {
+		this.cacheSize = Math.max(0, cacheSize);
+		invalidateCache();
+	}
+
+	public synchronized int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return number of requests routed using a cached match
+	 */
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	/**
+	 * @return number of requests, for which a match had to be computed (only counted when the cache is enabled)
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
 	/**
 	 * Adds a path prefix and a handler for that path. If the path does not start
 	 * with a / then one will be prepended.
@@ -132,6 +170,7 @@ public class ContextAwarePathHandler extends PathHandler {
 	public synchronized PathHandler addPrefixPath(final String path, final HttpHandler handler) {
 		Handlers.handlerNotNull(handler);
 		pathMatcher.addPrefixPath(path, handler);
+		invalidateCache();
 		return this;
 	}
 
@@ -147,6 +186,7 @@ public class ContextAwarePathHandler extends PathHandler {
 	public synchronized PathHandler addExactPath(final String path, final HttpHandler handler) {
 		Handlers.handlerNotNull(handler);
 		pathMatcher.addExactPath(path, handler);
+		invalidateCache();
 		return this;
 	}
 
@@ -157,16 +197,19 @@ public class ContextAwarePathHandler extends PathHandler {
 
 	public synchronized PathHandler removePrefixPath(final String path) {
 		pathMatcher.removePrefixPath(path);
+		invalidateCache();
 		return this;
 	}
 
 	public synchronized PathHandler removeExactPath(final String path) {
 		pathMatcher.removeExactPath(path);
+		invalidateCache();
 		return this;
 	}
 
 	public synchronized PathHandler clearPaths() {
 		pathMatcher.clearPaths();
+		invalidateCache();
 		return this;
 	}
 
@@ -174,4 +217,38 @@ public class ContextAwarePathHandler extends PathHandler {
 		return pathMatcher.getDefaultHandler();
 	}
 
+	/**
+	 * Has to be called (while holding the monitor) after every change of {@link #pathMatcher}.
+	 */
+	private void invalidateCache() {
+		cache = cacheSize > 0 ? new RouteCache(cacheSize) : null;
+	}
+
+	/**
+	 * Bounded map of request paths to their matches. When full, it's simply emptied - matching is cheap
+	 * enough to not justify LRU bookkeeping (and its locking) on every hit. Concurrent misses may
+	 * exceed the size by at most the number of worker threads.
+	 */
+	private static final class RouteCache {
+
+		private final ConcurrentHashMap<String, PathMatcher.PathMatch<HttpHandler>> matches;
+		private final int maxSize;
+
+		private RouteCache(int maxSize) {
+			this.matches = new ConcurrentHashMap<>(Math.min(maxSize, 64));
+			this.maxSize = maxSize;
+		}
+
+		private PathMatcher.PathMatch<HttpHandler> get(String relativePath) {
+			return matches.get(relativePath);
+		}
+
+		private void put(String relativePath, PathMatcher.PathMatch<HttpHandler> match) {
+			if (matches.size() >= maxSize) {
+				matches.clear();
+			}
+			matches.put(relativePath, match);
+		}
+	}
+
 }
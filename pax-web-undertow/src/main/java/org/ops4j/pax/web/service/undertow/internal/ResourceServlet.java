@@ -15,22 +15,41 @@
  */
 package org.ops4j.pax.web.service.undertow.internal;
 
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceChangeListener;
+import io.undertow.server.handlers.resource.PathResource;
+import io.undertow.server.handlers.resource.PathResourceManager;
+import io.undertow.server.handlers.resource.PreCompressedResourceSupplier;
 import io.undertow.server.handlers.resource.ResourceHandler;
 import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.server.handlers.resource.ResourceSupplier;
 import io.undertow.servlet.handlers.DefaultServlet;
 import io.undertow.servlet.handlers.ServletRequestContext;
 import io.undertow.servlet.spec.HttpServletRequestImpl;
+import io.undertow.servlet.spec.ServletContextImpl;
+import io.undertow.util.MimeMappings;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
+import org.ops4j.pax.web.service.spi.util.MimeTypeResolver;
+import org.ops4j.pax.web.service.spi.util.PrecompressedVariant;
+import org.osgi.framework.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * TODO: Undertow resource handling is done not by {@link DefaultServlet} but by {@link ResourceHandler}.
@@ -40,24 +59,59 @@ import io.undertow.servlet.spec.HttpServletRequestImpl;
  */
 public class ResourceServlet extends HttpServlet implements ResourceManager {
 
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceServlet.class);
+
 	private final Context context;
 	private final HttpHandler handler;
+	// supplies precompressed variants of resources (if accepted by the client) or resources themselves
+	final ResourceSupplier resourceSupplier;
 	// alias = part of the request URL after "/<context-name>" denoting the resource servlet
 	private final String alias;
 	// name = "default" when accessing resources from the root of the bundle or "/<base-path>", when
 	// accessing resources from some path under root of the bundle
 	private final String name;
+	// strong ETags of resources, null if resources have no ETags
+	private final ContentETags contentETags;
+	// large bundle entries extracted to files, null if resources are always streamed from bundles
+	private final ExtractedResourceCache extractedResources;
+	private final PathResourceManager extractedResourceManager;
+	// creates managers caching metadata and content of resources, null if resources are not cached
+	private final CachingResourceManagerFactory cachingResourceManagerFactory;
+	private volatile CachingResourceManager cachingResourceManager;
+	// index of bundle entries, which are cached by current caching resource manager
+	private volatile BundleEntryIndex cachedIndex;
 	private List<String> welcomePages;
 
 	public ResourceServlet(final Context context, String alias, String name) {
+		this(context, alias, name, null, null, null);
+	}
+
+	public ResourceServlet(final Context context, String alias, String name, ContentETags contentETags,
+						   ExtractedResourceCache extractedResources,
+						   CachingResourceManagerFactory cachingResourceManagerFactory) {
 		this.context = context;
+		this.cachingResourceManagerFactory = cachingResourceManagerFactory;
+		if (cachingResourceManagerFactory != null) {
+			this.cachingResourceManager = cachingResourceManagerFactory.create(this);
+			this.cachedIndex = entryIndex();
+		}
+		this.contentETags = contentETags;
+		this.extractedResources = extractedResources;
+		// extracted files are sent with FileChannel.transferTo()
+		this.extractedResourceManager = extractedResources == null ? null
+				: new PathResourceManager(extractedResources.getDirectory().toPath(), 1024);
 		this.alias = alias;
 		if ("/".equals(name)) {
 			this.name = "";
 		} else {
 			this.name = name;
 		}
-		this.handler = new ResourceHandler(this, new HttpHandler() {
+		PreCompressedResourceSupplier supplier = new PreCompressedResourceSupplier(new CachedResources());
+		for (PrecompressedVariant variant : PrecompressedVariant.values()) {
+			supplier.addEncoding(variant.getEncoding(), variant.getExtension());
+		}
+		this.resourceSupplier = supplier;
+		this.handler = new ResourceHandler(resourceSupplier, new HttpHandler() {
 			@Override
 			public void handleRequest(HttpServerExchange exchange) throws Exception {
 				ServletRequestContext src = exchange.getAttachment(ServletRequestContext.ATTACHMENT_KEY);
@@ -66,12 +120,28 @@ public class ResourceServlet extends HttpServlet implements ResourceManager {
 		});
 	}
 
+	@Override
+	public void init() throws ServletException {
+		// the same table of content types as used by ServletContext.getMimeType()
+		ServletContext servletContext = getServletContext();
+		Map<String, String> mappings = null;
+		if (servletContext instanceof ServletContextImpl) {
+			mappings = ((ServletContextImpl) servletContext).getDeployment().getMimeExtensionMappings();
+		}
+		MimeTypeResolver resolver = new MimeTypeResolver(MimeMappings.DEFAULT_MIME_MAPPINGS, mappings);
+		MimeMappings.Builder builder = MimeMappings.builder(false);
+		resolver.getMimeTypes().forEach(builder::addMapping);
+		((ResourceHandler) handler).setMimeMappings(builder.build());
+	}
+
 	@Override
 	protected void service(HttpServletRequest request, HttpServletResponse resp) throws ServletException, IOException {
 		if (!(request instanceof HttpServletRequestImpl)) {
 			throw new IllegalStateException("Request is not an instance of " + HttpServletRequestImpl.class.getName());
 		}
 		HttpServerExchange exchange = ((HttpServletRequestImpl) request).getExchange();
+		// the response depends on Accept-Encoding, even if the resource has no precompressed variants
+		resp.setHeader(PrecompressedVariant.VARY, PrecompressedVariant.ACCEPT_ENCODING);
 		try {
 			handler.handleRequest(exchange);
 		} catch (IOException | ServletException e) {
@@ -81,10 +151,56 @@ public class ResourceServlet extends HttpServlet implements ResourceManager {
 		}
 	}
 
+	@Override
+	public void destroy() {
+		CachingResourceManager resourceManager = cachingResourceManager;
+		if (resourceManager != null) {
+			close(resourceManager);
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Returns caching resource manager for current revision of the bundle - resources of updated bundle have
+	 * the same paths, but different content. Manager of previous revision is closed, which releases its
+	 * content from the data cache shared by the server.
+	 *
+	 * @return the manager or {@code null} if resources are not cached
+	 */
+	CachingResourceManager getCachingResourceManager() {
+		if (cachingResourceManagerFactory == null) {
+			return null;
+		}
+		BundleEntryIndex index = entryIndex();
+		if (index != cachedIndex) {
+			synchronized (this) {
+				if (index != cachedIndex) {
+					CachingResourceManager previous = cachingResourceManager;
+					cachingResourceManager = cachingResourceManagerFactory.create(this);
+					cachedIndex = index;
+					close(previous);
+				}
+			}
+		}
+		return cachingResourceManager;
+	}
+
+	private void close(CachingResourceManager resourceManager) {
+		try {
+			resourceManager.close();
+		} catch (IOException e) {
+			LOG.debug("Can't close {}: {}", resourceManager, e.getMessage());
+		}
+	}
+
 	@Override
 	public Resource getResource(String path) throws IOException {
 		// remember - differently than in org.ops4j.pax.web.service.jetty.internal.ResourceServlet.service(),
 		// here path is already relative to context!
+		if (!path.startsWith("/")) {
+			// CachingResourceManager removes leading slash
+			path = "/" + path;
+		}
 
 		String contextName = context.getContextModel().getContextName();
 		if (contextName.isEmpty()) {
@@ -97,7 +213,42 @@ public class ResourceServlet extends HttpServlet implements ResourceManager {
 		if (!name.isEmpty() && !"default".equals(name)) {
 			mapping = name + mapping;
 		}
-		return context.getResource(mapping);
+		Resource resource = context.getResource(mapping);
+		if (extractedResources != null && resource != null && !resource.isDirectory()) {
+			resource = extracted(mapping, path, resource);
+		}
+		if (contentETags != null && resource != null && !resource.isDirectory() && resource.getUrl() != null) {
+			return new ContentETagResource(resource, contentETags);
+		}
+		return resource;
+	}
+
+	/**
+	 * Returns resource backed by extracted file, if the resource is large bundle entry.
+	 */
+	private Resource extracted(String mapping, String path, Resource resource) {
+		BundleEntryIndex index = entryIndex();
+		Bundle bundle = context.getContextModel().getBundle();
+		if (index == null || bundle == null || resource.getUrl() == null) {
+			return resource;
+		}
+		BundleEntryIndex.Entry entry = index.getCovered(mapping);
+		if (entry == null || entry.isDirectory() || !extractedResources.accepts(entry.getSize())) {
+			return resource;
+		}
+		File file = extractedResources.getFile(bundle, resource.getUrl(), entry.getLastModified(), entry.getSize());
+		return file == null ? resource : new PathResource(file.toPath(), extractedResourceManager, path);
+	}
+
+	/**
+	 * Returns the index of bundle entries, if the resources of http context come directly from the bundle.
+	 */
+	private BundleEntryIndex entryIndex() {
+		WebContainerContext httpContext = context.getContextModel().getHttpContext();
+		if (httpContext instanceof BundleEntryIndex.Provider) {
+			return ((BundleEntryIndex.Provider) httpContext).getBundleEntryIndex();
+		}
+		return null;
 	}
 
 	@Override
@@ -126,8 +277,37 @@ public class ResourceServlet extends HttpServlet implements ResourceManager {
 	 */
 	public void configureWelcomeFiles(List<String> welcomePages) {
 		this.welcomePages = welcomePages;
-		((ResourceHandler) handler).setWelcomeFiles();
-		((ResourceHandler) handler).addWelcomeFiles(welcomePages.toArray(new String[welcomePages.size()]));
+		((ResourceHandler) handler).setWelcomeFiles(welcomePages.toArray(new String[welcomePages.size()]));
+	}
+
+	/**
+	 * Resources of this servlet, passed through {@link CachingResourceManager} if resources are cached.
+	 */
+	private class CachedResources implements ResourceManager {
+
+		@Override
+		public Resource getResource(String path) throws IOException {
+			CachingResourceManager resourceManager = getCachingResourceManager();
+			return resourceManager == null ? ResourceServlet.this.getResource(path)
+					: resourceManager.getResource(path);
+		}
+
+		@Override
+		public boolean isResourceChangeListenerSupported() {
+			return false;
+		}
+
+		@Override
+		public void registerResourceChangeListener(ResourceChangeListener listener) {
+		}
+
+		@Override
+		public void removeResourceChangeListener(ResourceChangeListener listener) {
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
 	}
 
 }
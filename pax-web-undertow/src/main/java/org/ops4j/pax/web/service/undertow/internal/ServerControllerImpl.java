@@ -86,6 +86,8 @@ import org.ops4j.pax.web.service.spi.model.ResourceModel;
 import org.ops4j.pax.web.service.spi.model.SecurityConstraintMappingModel;
 import org.ops4j.pax.web.service.spi.model.ServletModel;
 import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.ops4j.pax.web.service.spi.util.ExtractedResourceCache;
 import org.ops4j.pax.web.service.undertow.internal.configuration.ResolvingContentHandler;
 import org.ops4j.pax.web.service.undertow.internal.configuration.model.IoSubsystem;
 import org.ops4j.pax.web.service.undertow.internal.configuration.model.SecurityRealm;
@@ -140,6 +142,9 @@ public class ServerControllerImpl implements ServerController, IdentityManager {
     private JAXBContext jaxb = null;
 
     private Configuration configuration;
+    private ContentETags contentETags;
+    private ExtractedResourceCache extractedResourceCache;
+    private CachingResourceManagerFactory cachingResourceManagerFactory;
 
     private final Set<ServerListener> listeners = new CopyOnWriteArraySet<>();
     private State state = State.Unconfigured;
@@ -186,6 +191,9 @@ public class ServerControllerImpl implements ServerController, IdentityManager {
             throw new IllegalArgumentException("configuration == null");
         }
         configuration = config;
+        contentETags = Boolean.TRUE.equals(config.isStrongETags()) ? new ContentETags() : null;
+        extractedResourceCache = ExtractedResourceCache.create(config);
+        cachingResourceManagerFactory = CachingResourceManagerFactory.create(config);
         switch (state) {
         case Unconfigured:
             doConfigure();
@@ -270,6 +278,8 @@ public class ServerControllerImpl implements ServerController, IdentityManager {
         // if no configuration method change root handler, simple path->HttpHandler will be used
         // where each HttpHandler is created in separate org.ops4j.pax.web.service.undertow.internal.Context
         HttpHandler rootHandler = path;
+        Integer routeCacheSize = configuration.getRouteCacheSize();
+        path.setCacheSize(routeCacheSize == null ? ContextAwarePathHandler.DEFAULT_CACHE_SIZE : routeCacheSize);
 
         URL undertowResource = detectUndertowConfiguration();
         ConfigSource source = ConfigSource.kind(undertowResource);
@@ -1212,7 +1222,8 @@ public class ServerControllerImpl implements ServerController, IdentityManager {
     @Override
     public Servlet createResourceServlet(ContextModel contextModel, String alias, String name) {
         final Context context = findOrCreateContext(contextModel);
-        return new ResourceServlet(context, alias, name);
+        return new ResourceServlet(context, alias, name, contentETags, extractedResourceCache,
+                cachingResourceManagerFactory);
     }
 
     @Override
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ContextAwarePathHandlerTest {
+
+	private final AtomicReference<HttpHandler> handled = new AtomicReference<>();
+
+	private HttpHandler root;
+	private HttpHandler app;
+
+	@Before
+	public void setUp() {
+		root = exchange -> handled.set(root);
+		app = exchange -> handled.set(app);
+	}
+
+	@Test
+	public void repeatedRequestsAreServedFromCache() throws Exception {
+		ContextAwarePathHandler handler = new ContextAwarePathHandler(root);
+		handler.addPrefixPath("/app", app);
+
+		HttpServerExchange exchange = request(handler, "/app/index.html");
+		assertSame(app, handled.get());
+		assertEquals("/app", exchange.getResolvedPath());
+		assertEquals("/index.html", exchange.getRelativePath());
+		assertEquals(0L, handler.getCacheHits());
+		assertEquals(1L, handler.getCacheMisses());
+
+		for (int i = 0; i < 10; i++) {
+			exchange = request(handler, "/app/index.html");
+			assertSame(app, handled.get());
+			assertEquals("/app", exchange.getResolvedPath());
+			assertEquals("/index.html", exchange.getRelativePath());
+		}
+		assertEquals(10L, handler.getCacheHits());
+		assertEquals(1L, handler.getCacheMisses());
+	}
+
+	@Test
+	public void cacheIsInvalidatedWhenPathsChange() throws Exception {
+		ContextAwarePathHandler handler = new ContextAwarePathHandler(root);
+		request(handler, "/app/index.html");
+		assertSame(root, handled.get());
+
+		handler.addPrefixPath("/app", app);
+		request(handler, "/app/index.html");
+		assertSame(app, handled.get());
+
+		handler.removePrefixPath("/app");
+		request(handler, "/app/index.html");
+		assertSame(root, handled.get());
+
+		handler.addExactPath("/app/index.html", app);
+		request(handler, "/app/index.html");
+		assertSame(app, handled.get());
+		assertEquals(0L, handler.getCacheHits());
+		assertEquals(4L, handler.getCacheMisses());
+	}
+
+	@Test
+	public void cacheIsBounded() throws Exception {
+		ContextAwarePathHandler handler = new ContextAwarePathHandler(root, 4);
+		for (int i = 0; i < 5; i++) {
+			request(handler, "/" + i);
+		}
+		// the cache was emptied when the 5th path was matched
+		request(handler, "/4");
+		request(handler, "/0");
+		assertEquals(1L, handler.getCacheHits());
+		assertEquals(6L, handler.getCacheMisses());
+	}
+
+	@Test
+	public void disabledCacheIsNotUsed() throws Exception {
+		ContextAwarePathHandler handler = new ContextAwarePathHandler(root, 0);
+		request(handler, "/index.html");
+		request(handler, "/index.html");
+		assertSame(root, handled.get());
+		assertEquals(0L, handler.getCacheHits());
+		assertEquals(0L, handler.getCacheMisses());
+	}
+
+	private HttpServerExchange request(ContextAwarePathHandler handler, String path) throws Exception {
+		HttpServerExchange exchange = new HttpServerExchange(null);
+		exchange.setRequestPath(path);
+		exchange.setRelativePath(path);
+		exchange.setResolvedPath("");
+		handler.handleRequest(exchange);
+		return exchange;
+	}
+
+}
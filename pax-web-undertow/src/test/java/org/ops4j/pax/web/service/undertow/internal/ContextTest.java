@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import org.junit.Before;
+import org.junit.Test;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+
+public class ContextTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ContextTest.class);
+
+	private static final int REQUESTS_PER_THREAD = 20000;
+
+	private Context context;
+	private LongAdder handled;
+
+	@Before
+	public void setUp() throws Exception {
+		ContextModel contextModel = mock(ContextModel.class);
+		when(contextModel.getContextName()).thenReturn("");
+
+		handled = new LongAdder();
+		HttpHandler deployment = exchange -> handled.increment();
+
+		// the Context constructor needs a running framework - only the request path is tested here
+		context = mock(Context.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+		setField("contextModel", contextModel);
+		setField("handler", deployment);
+	}
+
+	/**
+	 * Requests must be served while another thread holds the Context monitor (e.g. during
+	 * registration of a new web element), so worker threads never serialize on the Context.
+	 */
+	@Test
+	public void requestsDoNotContendOnContextMonitor() throws Exception {
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		CountDownLatch monitorHeld = new CountDownLatch(1);
+		CountDownLatch requestsDone = new CountDownLatch(1);
+		Thread registration = new Thread(() -> {
+			synchronized (context) {
+				monitorHeld.countDown();
+				try {
+					requestsDone.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException ignored) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		registration.start();
+		assertTrue(monitorHeld.await(10, TimeUnit.SECONDS));
+		try {
+			long nanos = serve(threads);
+			assertEquals((long) threads * REQUESTS_PER_THREAD, handled.sum());
+			LOG.info("{} requests on {} threads served in {} ms while the Context monitor was held",
+					handled.sum(), threads, TimeUnit.NANOSECONDS.toMillis(nanos));
+		} finally {
+			requestsDone.countDown();
+			registration.join();
+		}
+	}
+
+	private long serve(int threads) throws Exception {
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(workers.submit(() -> {
+					start.await();
+					for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+						HttpServerExchange exchange = new HttpServerExchange(null);
+						exchange.setRequestPath("/test");
+						context.handleRequest(exchange);
+					}
+					return null;
+				}));
+			}
+			long begin = System.nanoTime();
+			start.countDown();
+			for (Future<?> result : results) {
+				result.get(30, TimeUnit.SECONDS);
+			}
+			return System.nanoTime() - begin;
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	private void setField(String name, Object value) throws Exception {
+		Field field = Context.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(context, value);
+	}
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.ops4j.pax.web.service.undertow.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+
+import io.undertow.server.HttpHandler;
+import io.undertow.servlet.api.Deployment;
+import io.undertow.servlet.core.DeploymentImpl;
+import io.undertow.servlet.handlers.ServletPathMatch;
+import io.undertow.servlet.spec.ServletContextImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.web.service.WebContainerConstants;
+import org.ops4j.pax.web.service.WebContainerContext;
+import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.model.ErrorPageModel;
+import org.ops4j.pax.web.service.spi.model.FilterModel;
+import org.ops4j.pax.web.service.spi.model.ServletModel;
+import org.ops4j.pax.web.service.spi.model.WelcomeFileModel;
+import org.ops4j.pax.web.service.spi.util.ResourceDelegatingBundleClassLoader;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceRegistration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registrations which are applied to the running deployment of a {@link Context} without redeploying it.
+ */
+public class ContextUpdateTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private WebContainerContext httpContext;
+	private ContextModel contextModel;
+	private Context context;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		BundleContext bundleContext = mock(BundleContext.class);
+		when(bundleContext.registerService(eq(ServletContext.class), any(ServletContext.class), any(Dictionary.class)))
+				.thenReturn(mock(ServiceRegistration.class));
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.getBundleContext()).thenReturn(bundleContext);
+		when(bundle.getSymbolicName()).thenReturn("test");
+		// classes and resources of the bundle come from the class path
+		ClassLoader classPath = getClass().getClassLoader();
+		when(bundle.loadClass(anyString())).thenAnswer(
+				invocation -> classPath.loadClass((String) invocation.getArguments()[0]));
+		when(bundle.getResource(anyString())).thenAnswer(
+				invocation -> classPath.getResource((String) invocation.getArguments()[0]));
+		when(bundle.getResources(anyString())).thenAnswer(
+				invocation -> classPath.getResources((String) invocation.getArguments()[0]));
+		httpContext = mock(WebContainerContext.class);
+		when(httpContext.getContextId()).thenReturn("test");
+		when(httpContext.handleSecurity(any(), any())).thenReturn(true);
+
+		contextModel = new ContextModel(httpContext, bundle,
+				new ResourceDelegatingBundleClassLoader(Collections.singletonList(bundle), null, 0), false);
+		context = new Context(null, new ContextAwarePathHandler(), contextModel);
+		context.addServlet(servlet("first", "/first"));
+		context.addFilter(filter("b"));
+		context.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (context != null) {
+			context.stop();
+		}
+	}
+
+	@Test
+	public void servletIsAddedToRunningDeployment() throws Exception {
+		HttpHandler handler = context.getHandler(null);
+		assertEquals("default", match("/second").getServletChain().getManagedServlet().getServletInfo().getName());
+
+		context.addServlet(servlet("second", "/second"));
+
+		assertSame(handler, context.getHandler(null));
+		assertEquals("second", match("/second").getServletChain().getManagedServlet().getServletInfo().getName());
+		assertEquals("first", match("/first").getServletChain().getManagedServlet().getServletInfo().getName());
+	}
+
+	@Test
+	public void filterRankedLastIsAddedToRunningDeployment() throws Exception {
+		HttpHandler handler = context.getHandler(null);
+
+		context.addFilter(filter("c"));
+
+		assertSame(handler, context.getHandler(null));
+		assertNotNull(deployment().getFilters().getManagedFilter("c"));
+		assertEquals("c", deployment().getDeploymentInfo().getFilterMappings().get(1).getFilterName());
+	}
+
+	@Test
+	public void filterNotRankedLastRedeploys() throws Exception {
+		HttpHandler handler = context.getHandler(null);
+
+		context.addFilter(filter("a"));
+
+		HttpHandler redeployed = context.getHandler(null);
+		assertNotSame(handler, redeployed);
+		// filters are mapped in order of their ranking
+		assertEquals("a", deployment().getDeploymentInfo().getFilterMappings().get(0).getFilterName());
+		assertEquals("b", deployment().getDeploymentInfo().getFilterMappings().get(1).getFilterName());
+	}
+
+	@Test
+	public void welcomeFileIsAddedToRunningDeployment() throws Exception {
+		File index = folder.newFile("index.html");
+		Files.write(index.toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+		when(httpContext.isDefaultOrSharedContext()).thenReturn(true);
+		when(httpContext.getResource("/")).thenReturn(folder.getRoot().toURI().toURL());
+		when(httpContext.getResource("/index.html")).thenReturn(index.toURI().toURL());
+		HttpHandler handler = context.getHandler(null);
+		assertNull(match("/").getRewriteLocation());
+
+		context.addWelcomeFile(new WelcomeFileModel(contextModel, new String[] { "index.html" }));
+
+		assertSame(handler, context.getHandler(null));
+		assertEquals("/index.html", match("/").getRewriteLocation());
+	}
+
+	@Test
+	public void errorPageIsAddedToRunningDeployment() throws Exception {
+		HttpHandler handler = context.getHandler(null);
+		assertNull(((DeploymentImpl) deployment()).getErrorPages().getErrorLocation(404));
+
+		context.addErrorPage(new ErrorPageModel(contextModel, "404", "/404.html"));
+		context.addErrorPage(new ErrorPageModel(contextModel, IOException.class.getName(), "/io.html"));
+
+		assertSame(handler, context.getHandler(null));
+		assertEquals("/404.html", ((DeploymentImpl) deployment()).getErrorPages().getErrorLocation(404));
+		assertEquals("/io.html", ((DeploymentImpl) deployment()).getErrorPages().getErrorLocation(new IOException()));
+	}
+
+	private ServletPathMatch match(String path) throws Exception {
+		return deployment().getServletPaths().getServletHandlerByPath(path);
+	}
+
+	private Deployment deployment() throws Exception {
+		AtomicReference<ServletContext> servletContext = new AtomicReference<>();
+		context.getHandler(servletContext::set);
+		return ((ServletContextImpl) servletContext.get()).getDeployment();
+	}
+
+	private ServletModel servlet(String name, String pattern) {
+		return new ServletModel(contextModel, new HttpServlet() {
+		}, name, new String[] { pattern }, null, new Hashtable<String, Object>(), -1, false, null);
+	}
+
+	private FilterModel filter(String name) {
+		Hashtable<String, Object> initParams = new Hashtable<>();
+		initParams.put(WebContainerConstants.FILTER_NAME, name);
+		return new FilterModel(contextModel, new TestFilter(), new String[] { "/*" }, null, initParams, false);
+	}
+
+	private static class TestFilter implements Filter {
+
+		@Override
+		public void init(FilterConfig filterConfig) {
+		}
+
+		@Override
+		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) {
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+
+}
@@ -16,21 +16,44 @@
  */
 package org.ops4j.pax.web.service.undertow.internal;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.servlet.ServletException;
 
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.handlers.resource.CachingResourceManager;
 import io.undertow.server.handlers.resource.Resource;
 import io.undertow.server.handlers.resource.ResourceManager;
+import io.undertow.server.handlers.resource.URLResource;
+import io.undertow.util.Headers;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ops4j.pax.web.service.WebContainerContext;
 import org.ops4j.pax.web.service.spi.model.ContextModel;
+import org.ops4j.pax.web.service.spi.util.BundleEntryIndex;
+import org.ops4j.pax.web.service.spi.util.ContentETags;
+import org.osgi.framework.Bundle;
 
 import static org.easymock.classextension.EasyMock.createMock;
+import static org.easymock.classextension.EasyMock.createNiceMock;
 import static org.easymock.classextension.EasyMock.expect;
 import static org.easymock.classextension.EasyMock.replay;
 import static org.easymock.classextension.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class ResourceServletTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private ResourceManager resourceManager;
 	private Context context;
 	private ContextModel contextModel;
@@ -145,6 +168,120 @@ public class ResourceServletTest {
 				"/fudd/bugs/x.gif", "tmp/y.gif");
 	}
 
+	@Test
+	public void precompressedVariantIsSupplied() throws IOException {
+		setUp();
+		Resource resource = createMock(Resource.class);
+		Resource gzipped = createMock(Resource.class);
+		expect(context.getContextModel()).andReturn(contextModel).anyTimes();
+		expect(contextModel.getContextName()).andReturn("").anyTimes();
+		expect(context.getResource("/app.js")).andReturn(resource).anyTimes();
+		expect(context.getResource("/app.js.br")).andReturn(null).anyTimes();
+		expect(context.getResource("/app.js.gz")).andReturn(gzipped).anyTimes();
+		expect(resource.isDirectory()).andReturn(false).anyTimes();
+		expect(gzipped.isDirectory()).andReturn(false).anyTimes();
+		expect(gzipped.getPath()).andReturn("/app.js.gz").anyTimes();
+		replay(context, contextModel, resource, gzipped);
+
+		ResourceServlet servlet = new ResourceServlet(context, "/", "default");
+
+		HttpServerExchange exchange = new HttpServerExchange(null);
+		exchange.getRequestHeaders().put(Headers.ACCEPT_ENCODING, "br, gzip");
+		assertEquals("/app.js.gz", servlet.resourceSupplier.getResource(exchange, "/app.js").getPath());
+
+		exchange = new HttpServerExchange(null);
+		assertSame(resource, servlet.resourceSupplier.getResource(exchange, "/app.js"));
+
+		// ranges are served from the resource itself
+		exchange = new HttpServerExchange(null);
+		exchange.getRequestHeaders().put(Headers.ACCEPT_ENCODING, "gzip");
+		exchange.getRequestHeaders().put(Headers.RANGE, "bytes=0-1");
+		assertSame(resource, servlet.resourceSupplier.getResource(exchange, "/app.js"));
+	}
+
+	@Test
+	public void contentETag() throws Exception {
+		setUp();
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		expect(context.getContextModel()).andReturn(contextModel).anyTimes();
+		expect(contextModel.getContextName()).andReturn("").anyTimes();
+		expect(context.getResource("/app.js")).andReturn(new URLResource(file.toURI().toURL(), "/app.js")).anyTimes();
+		replay(context, contextModel);
+
+		assertNull(new ResourceServlet(context, "/", "default").getResource("/app.js").getETag());
+
+		Resource resource = new ResourceServlet(context, "/", "default", new ContentETags(), null, null).getResource("/app.js");
+		assertEquals(ContentETags.getETag("alert('hello');".getBytes(StandardCharsets.UTF_8)),
+				resource.getETag().toString());
+		assertFalse(resource.getETag().isWeak());
+	}
+
+	@Test
+	public void resourcesAreCached() throws Exception {
+		setUp();
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		expect(context.getContextModel()).andReturn(contextModel).anyTimes();
+		expect(contextModel.getContextName()).andReturn("").anyTimes();
+		expect(context.getResource("/app.js")).andReturn(new URLResource(file.toURI().toURL(), "/app.js")).once();
+		expect(context.getResource("/missing.js")).andReturn(null).once();
+		expect(contextModel.getHttpContext()).andReturn(null).anyTimes();
+		replay(context, contextModel);
+
+		ResourceServlet servlet = new ResourceServlet(context, "/", "default", null, null,
+				new CachingResourceManagerFactory(16, 1024L, 65536));
+		HttpServerExchange exchange = new HttpServerExchange(null);
+		Resource resource = servlet.resourceSupplier.getResource(exchange, "/app.js");
+		assertEquals(Long.valueOf(15L), resource.getContentLength());
+		assertEquals(Long.valueOf(15L), servlet.resourceSupplier.getResource(exchange, "/app.js").getContentLength());
+		assertNull(servlet.resourceSupplier.getResource(exchange, "/missing.js"));
+		assertNull(servlet.resourceSupplier.getResource(exchange, "/missing.js"));
+
+		verify(context, contextModel);
+	}
+
+	@Test
+	public void resourcesOfUpdatedBundleAreCachedAgain() throws Exception {
+		setUp();
+		File file = folder.newFile("app.js");
+		Files.write(file.toPath(), "alert('hello');".getBytes(StandardCharsets.UTF_8));
+		Bundle bundle = createNiceMock(Bundle.class);
+		replay(bundle);
+		BundleEntryIndex revision1 = BundleEntryIndex.build(bundle);
+		BundleEntryIndex revision2 = BundleEntryIndex.build(bundle);
+		IndexedContext httpContext = createMock(IndexedContext.class);
+		AtomicReference<BundleEntryIndex> revision = new AtomicReference<>(revision1);
+		expect(httpContext.getBundleEntryIndex()).andAnswer(revision::get).anyTimes();
+		expect(context.getContextModel()).andReturn(contextModel).anyTimes();
+		expect(contextModel.getContextName()).andReturn("").anyTimes();
+		expect(contextModel.getHttpContext()).andReturn(httpContext).anyTimes();
+		// once for each revision of the bundle
+		expect(context.getResource("/app.js")).andReturn(new URLResource(file.toURI().toURL(), "/app.js")).times(2);
+		replay(context, contextModel, httpContext);
+
+		ResourceServlet servlet = new ResourceServlet(context, "/", "default", null, null,
+				new CachingResourceManagerFactory(16, 1024L, 65536));
+		HttpServerExchange exchange = new HttpServerExchange(null);
+		CachingResourceManager manager = servlet.getCachingResourceManager();
+		assertEquals(Long.valueOf(15L), servlet.resourceSupplier.getResource(exchange, "/app.js").getContentLength());
+		assertSame(manager, servlet.getCachingResourceManager());
+		assertEquals(Long.valueOf(15L), servlet.resourceSupplier.getResource(exchange, "/app.js").getContentLength());
+
+		// bundle is updated
+		revision.set(revision2);
+		CachingResourceManager updated = servlet.getCachingResourceManager();
+		assertNotSame(manager, updated);
+		assertSame(updated, servlet.getCachingResourceManager());
+		assertEquals(Long.valueOf(15L), servlet.resourceSupplier.getResource(exchange, "/app.js").getContentLength());
+		assertEquals(Long.valueOf(15L), servlet.resourceSupplier.getResource(exchange, "/app.js").getContentLength());
+
+		verify(context, contextModel, httpContext);
+	}
+
+	private interface IndexedContext extends WebContainerContext, BundleEntryIndex.Provider {
+	}
+
 	private class MockContext extends Context {
 		private ResourceManager manager = null;
 